@@ -48,9 +48,15 @@ public class AuthProxyClientConfig {
         this.responseTopic = responseTopicPrefix + UUID.randomUUID();
     }
 
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
     }
 
     @Bean
@@ -101,14 +101,21 @@ public class AuthRpcClientConfig {
     @Value("${rpc.client.response-consumer.threads:3}")
     private int responseConsumerThreads;
 
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
     }
 
     @Bean
     public Producer<String, Request> kafkaRequestProducer(Gson gson) {
-        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new RequestSerializer(gson));
+        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(),
+                new RequestSerializer(gson, kafkaRpcConfig.getWireFormat()));
     }
 
     @Profile("!test")
@@ -139,7 +146,7 @@ public class AuthRpcClientConfig {
         ExecutorService executor = Executors.newFixedThreadPool(responseConsumerThreads);
         Properties consumerProps = kafkaRpcConfig.clientConsumerProps();
         return new ServerResponseListener(RESPONSE_TOPIC, responseConsumerThreads,
-                responseMatcher, consumerProps, executor, new ResponseSerializer(gson));
+                responseMatcher, consumerProps, executor, new ResponseSerializer(gson, kafkaRpcConfig.getWireFormat()));
     }
 
 }
@@ -25,6 +25,7 @@ import com.devicehive.json.GsonFactory;
 import com.devicehive.model.eventbus.FilterRegistry;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.google.gson.Gson;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
@@ -32,6 +33,12 @@ import org.springframework.context.annotation.DependsOn;
 @Configuration
 public class BackendConfig {
 
+    @Value("${devicehive.eventbus.batched-fanout:false}")
+    private boolean batchedFanOut;
+
+    @Value("${devicehive.eventbus.batched-fanout.topic-prefix:response_topic_}")
+    private String batchedTopicPrefix;
+
     @Bean
     public Gson gson() {
         return GsonFactory.createGson();
@@ -40,6 +47,6 @@ public class BackendConfig {
     @Bean
     @DependsOn("filterRegistry")
     public EventBus eventBus(MessageDispatcher dispatcher, FilterRegistry filterRegistry) {
-        return new EventBus(dispatcher, filterRegistry);
+        return new EventBus(dispatcher, filterRegistry, batchedFanOut, batchedTopicPrefix);
     }
 }
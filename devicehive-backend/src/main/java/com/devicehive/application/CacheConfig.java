@@ -0,0 +1,93 @@
+package com.devicehive.application;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.configuration.Constants;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.service.cache.DeviceHistoryCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${devicehive.cache.notifications.ttl.seconds}")
+    private long notificationsTtl;
+
+    @Value("${devicehive.cache.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+
+    @Value("${devicehive.cache.write-behind.queue-size:8192}")
+    private int writeBehindQueueSize;
+
+    @Value("${devicehive.cache.write-behind.batch-size:256}")
+    private int writeBehindBatchSize;
+
+    @Value("${devicehive.cache.write-behind.flush-interval.ms:5}")
+    private long writeBehindFlushIntervalMs;
+
+    @Value("${devicehive.cache.history.backfill.enabled:true}")
+    private boolean historyBackfillEnabled;
+
+    @Value("${devicehive.cache.l1.enabled:true}")
+    private boolean l1Enabled;
+
+    @Value("${devicehive.cache.l1.partitions:16}")
+    private int l1Partitions;
+
+    @Value("${devicehive.cache.l1.memory-budget.mb:64}")
+    private long l1MemoryBudgetMb;
+
+    @Bean
+    public DeviceHistoryCache<DeviceNotification> notificationHistoryCache() {
+        return new DeviceHistoryCache<>(Constants.NOTIFICATIONS, l1Enabled, notificationsTtl, l1Partitions,
+                l1MemoryBudgetMb * 1024 * 1024,
+                DeviceNotification::getDeviceId, DeviceNotification::getNotification, DeviceNotification::getTimestamp,
+                notification -> DeviceHistoryCache.weigh(notification.getNotification(), notification.getDeviceId(),
+                        jsonString(notification.getParameters())));
+    }
+
+    public boolean isHistoryBackfillEnabled() {
+        return historyBackfillEnabled;
+    }
+
+    public boolean isWriteBehindEnabled() {
+        return writeBehindEnabled;
+    }
+
+    public int getWriteBehindQueueSize() {
+        return writeBehindQueueSize;
+    }
+
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    public long getWriteBehindFlushIntervalMs() {
+        return writeBehindFlushIntervalMs;
+    }
+
+    private static String jsonString(JsonStringWrapper wrapper) {
+        return wrapper != null ? wrapper.getJsonString() : null;
+    }
+}
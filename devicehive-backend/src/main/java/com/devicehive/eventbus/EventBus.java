@@ -28,6 +28,13 @@ import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.devicehive.vo.DeviceVO;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 /**
  * Central class for interaction with devicehive-backend subscription mechanism.
  * Provides basic interfaces and operations for subscription, unsubscription and publishing of events.
@@ -36,14 +43,30 @@ public class EventBus {
 
     private final FilterRegistry registry;
     private final MessageDispatcher dispatcher;
+    private final boolean batchedFanOut;
+    private final String batchedTopicPrefix;
 
     /**
      * Creates new instance of EventBus
      * @param dispatcher - interface, that controls message delivery strategy
      */
     public EventBus(MessageDispatcher dispatcher, FilterRegistry registry) {
+        this(dispatcher, registry, false, null);
+    }
+
+    /**
+     * Creates new instance of EventBus
+     * @param dispatcher - interface, that controls message delivery strategy
+     * @param batchedFanOut - if true, event is sent once per reply topic with correlation ids of all matched
+     *                      subscribers of that topic, otherwise separate response is sent to every subscriber
+     * @param batchedTopicPrefix - prefix of RPC client response topics, only replies to them are batched,
+     *                           as other consumers, such as plugins, do not read batched responses
+     */
+    public EventBus(MessageDispatcher dispatcher, FilterRegistry registry, boolean batchedFanOut, String batchedTopicPrefix) {
         this.dispatcher = dispatcher;
         this.registry = registry;
+        this.batchedFanOut = batchedFanOut;
+        this.batchedTopicPrefix = batchedTopicPrefix;
     }
 
     public void subscribe(Filter filter, Subscriber subscriber) {
@@ -54,18 +77,57 @@ public class EventBus {
         registry.unregister(subscriber);
     }
 
+    public void unsubscribe(Collection<Long> subscriptionIds) {
+        registry.unregister(subscriptionIds);
+    }
+
     public void publish(Event event) {
-        event.getApplicableFilters()
-                .stream()
-                .flatMap(filter -> registry.getSubscribers(filter).stream())
-                .forEach(subscriber -> {
-                    Response response = Response.newBuilder()
-                            .withBody(event)
-                            .withCorrelationId(subscriber.getCorrelationId())
-                            .withLast(false)
-                            .buildSuccess();
-                    dispatcher.send(subscriber.getReplyTo(), response);
-                });
+        if (batchedFanOut) {
+            publishBatched(event);
+            return;
+        }
+        for (Filter filter : event.getApplicableFilters()) {
+            registry.forEachSubscriber(filter, subscriber -> send(event, subscriber));
+        }
+    }
+
+    private void publishBatched(Event event) {
+        // subscription registered with several filters may match more than one of them, it gets the event once
+        Map<String, Map<Long, Subscriber>> subscribersByReplyTo = new HashMap<>();
+        for (Filter filter : event.getApplicableFilters()) {
+            registry.forEachSubscriber(filter, subscriber -> subscribersByReplyTo
+                    .computeIfAbsent(subscriber.getReplyTo(), replyTo -> new LinkedHashMap<>())
+                    .putIfAbsent(subscriber.getId(), subscriber));
+        }
+        subscribersByReplyTo.forEach((replyTo, subscribers) -> {
+            // single subscriber of the topic gets plain response, so non-batching consumers are not affected
+            if (subscribers.size() == 1 || !isBatchedTopic(replyTo)) {
+                subscribers.values().forEach(subscriber -> send(event, subscriber));
+                return;
+            }
+            List<String> correlationIds = subscribers.values().stream()
+                    .map(Subscriber::getCorrelationId)
+                    .collect(Collectors.toList());
+            Response response = Response.<Event>newBuilder()
+                    .withBody(event)
+                    .withCorrelationIds(correlationIds)
+                    .withLast(false)
+                    .buildSuccess();
+            dispatcher.send(replyTo, response);
+        });
+    }
+
+    private boolean isBatchedTopic(String replyTo) {
+        return replyTo != null && batchedTopicPrefix != null && replyTo.startsWith(batchedTopicPrefix);
+    }
+
+    private void send(Event event, Subscriber subscriber) {
+        Response response = Response.newBuilder()
+                .withBody(event)
+                .withCorrelationId(subscriber.getCorrelationId())
+                .withLast(false)
+                .buildSuccess();
+        dispatcher.send(subscriber.getReplyTo(), response);
     }
 
     public void unsubscribeDevice(DeviceVO device) {
@@ -21,7 +21,6 @@ package com.devicehive.messages.handler.command;
  */
 
 import com.devicehive.eventbus.EventBus;
-import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.rpc.CommandUnsubscribeRequest;
 import com.devicehive.model.rpc.CommandUnsubscribeResponse;
 import com.devicehive.shim.api.Request;
@@ -47,10 +46,7 @@ public class CommandUnsubscribeRequestHandler implements RequestHandler {
         validate(body);
 
         if (body.getSubscriptionIds() != null) {
-            for (Long subId : body.getSubscriptionIds()) {
-                Subscriber subscriber = new Subscriber(subId, request.getReplyTo(), request.getCorrelationId());
-                eventBus.unsubscribe(subscriber);
-            }
+            eventBus.unsubscribe(body.getSubscriptionIds());
 
             CommandUnsubscribeResponse unsubscribeResponse = new CommandUnsubscribeResponse(body.getSubscriptionIds());
 
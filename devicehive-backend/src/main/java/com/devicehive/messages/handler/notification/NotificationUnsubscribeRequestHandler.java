@@ -21,7 +21,6 @@ package com.devicehive.messages.handler.notification;
  */
 
 import com.devicehive.eventbus.EventBus;
-import com.devicehive.model.eventbus.Subscriber;
 import com.devicehive.model.rpc.*;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
@@ -46,10 +45,7 @@ public class NotificationUnsubscribeRequestHandler implements RequestHandler {
         validate(body);
 
         if (body.getSubscriptionIds() != null) {
-            for (Long subId : body.getSubscriptionIds()) {
-                Subscriber subscriber = new Subscriber(subId, request.getReplyTo(), request.getCorrelationId());
-                eventBus.unsubscribe(subscriber);
-            }
+            eventBus.unsubscribe(body.getSubscriptionIds());
 
             NotificationUnsubscribeResponse unsubscribeResponse =
                     new NotificationUnsubscribeResponse(body.getSubscriptionIds());
@@ -22,6 +22,7 @@ package com.devicehive.service.cache;
 
 import com.devicehive.model.CacheEntity;
 
+import java.util.Collection;
 import java.util.Optional;
 
 public interface CacheService<T extends CacheEntity> {
@@ -29,4 +30,8 @@ public interface CacheService<T extends CacheEntity> {
     Optional<T> find(Long id, String deviceId);
 
     void store(final T entity);
+
+    default void store(final Collection<T> entities) {
+        entities.forEach(this::store);
+    }
 }
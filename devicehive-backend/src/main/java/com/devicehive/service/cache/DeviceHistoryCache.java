@@ -0,0 +1,365 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.CacheEntity;
+import com.devicehive.shim.api.server.PartitionAssignmentListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-heap cache of recent device history, consulted before {@link DeviceHistoryIndex}.
+ * Only immutable entities may be cached: notification inserts are partitioned by deviceId, so the node which stores
+ * an entity is the one which is asked for it. Once request partitions are reassigned, another node may have stored
+ * entities of this node's devices, so the cache is cleared.
+ * Entities are kept per device for TTL since their store, devices are spread over partitions, each with its own lock
+ * and an equal share of the memory budget. When a partition is over budget, least recently used devices are evicted
+ * as a whole, so a cached device history never has gaps.
+ * History of a device is complete only when it has been tracked for TTL, because older entities may still be in Redis;
+ * until then queries for it are misses. Devices whose history has expired completely are swept on store.
+ */
+public class DeviceHistoryCache<T extends CacheEntity> implements MeterBinder, PartitionAssignmentListener {
+
+    /**
+     * Estimated heap size of a device history and of an entity without its strings.
+     */
+    private static final long HISTORY_OVERHEAD = 256;
+    private static final long ENTITY_OVERHEAD = 256;
+
+    /**
+     * Least recently used histories checked for expiry on every store.
+     */
+    private static final int SWEEP_SIZE = 2;
+
+    private final String name;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Function<T, String> deviceIdGetter;
+    private final Function<T, String> nameGetter;
+    private final Function<T, Date> timestampGetter;
+    private final ToLongFunction<T> weigher;
+    private final LongSupplier clock;
+    private final List<Partition> partitions;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DeviceHistoryCache(String name, boolean enabled, long ttlSeconds, int partitionCount, long memoryBudget,
+                              Function<T, String> deviceIdGetter, Function<T, String> nameGetter,
+                              Function<T, Date> timestampGetter, ToLongFunction<T> weigher) {
+        this(name, enabled, ttlSeconds, partitionCount, memoryBudget, deviceIdGetter, nameGetter, timestampGetter, weigher,
+                System::currentTimeMillis);
+    }
+
+    DeviceHistoryCache(String name, boolean enabled, long ttlSeconds, int partitionCount, long memoryBudget,
+                       Function<T, String> deviceIdGetter, Function<T, String> nameGetter,
+                       Function<T, Date> timestampGetter, ToLongFunction<T> weigher, LongSupplier clock) {
+        this.name = name;
+        this.enabled = enabled;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.deviceIdGetter = deviceIdGetter;
+        this.nameGetter = nameGetter;
+        this.timestampGetter = timestampGetter;
+        this.weigher = weigher;
+        this.clock = clock;
+
+        final int count = Math.max(1, partitionCount);
+        this.partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new Partition(memoryBudget / count));
+        }
+    }
+
+    /**
+     * Estimates heap size of an entity with given string fields.
+     */
+    public static long weigh(String... values) {
+        long weight = ENTITY_OVERHEAD;
+        for (String value : values) {
+            if (value != null) {
+                weight += 40 + 2L * value.length();
+            }
+        }
+        return weight;
+    }
+
+    public void store(T entity) {
+        final String deviceId = deviceIdGetter.apply(entity);
+        if (!enabled || deviceId == null) {
+            return;
+        }
+        getPartition(deviceId).store(deviceId, entity, clock.getAsLong());
+    }
+
+    /**
+     * Finds entity by its cache key, empty result is a miss and has to be resolved by Redis.
+     */
+    public Optional<T> find(String deviceId, String cacheKey) {
+        if (!enabled || deviceId == null) {
+            return Optional.empty();
+        }
+        final T entity = getPartition(deviceId).find(deviceId, cacheKey, clock.getAsLong());
+        (entity != null ? hits : misses).increment();
+        return Optional.ofNullable(entity);
+    }
+
+    /**
+     * Finds entities of given devices the same way as {@link DeviceHistoryIndex#find}.
+     * Returns empty result if history of any of the devices is not cached completely.
+     */
+    public Optional<List<T>> find(Collection<String> deviceIds, Collection<String> names, Date timestampFrom,
+                                  Date timestampTo, Integer limit, boolean newestFirst) {
+        if (!enabled || CollectionUtils.isEmpty(deviceIds)) {
+            return Optional.empty();
+        }
+
+        final long now = clock.getAsLong();
+        final List<Entry> found = new ArrayList<>();
+        for (String deviceId : new HashSet<>(deviceIds)) {
+            if (deviceId == null) {
+                continue;
+            }
+            if (!getPartition(deviceId).collect(deviceId, names, timestampFrom, timestampTo, now, found)) {
+                misses.increment();
+                return Optional.empty();
+            }
+        }
+        hits.increment();
+
+        final Comparator<Entry> comparator = Comparator.comparingLong(entry -> entry.score);
+        return Optional.of(found.stream()
+                .sorted(newestFirst ? comparator.reversed() : comparator)
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .map(entry -> entry.entity)
+                .toList());
+    }
+
+    /**
+     * Drops all cached histories, they have to be tracked for TTL again before queries are served.
+     */
+    public void clear() {
+        partitions.forEach(Partition::clear);
+    }
+
+    @Override
+    public void onPartitionsAssigned() {
+        clear();
+    }
+
+    public int getDeviceCount() {
+        return partitions.stream().mapToInt(Partition::getDeviceCount).sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getWeight() {
+        return partitions.stream().mapToLong(Partition::getWeight).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("devicehive.cache.l1.hits", this, DeviceHistoryCache::getHitCount)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("devicehive.cache.l1.misses", this, DeviceHistoryCache::getMissCount)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("devicehive.cache.l1.evictions", this, DeviceHistoryCache::getEvictionCount)
+                .tag("cache", name).register(registry);
+        Gauge.builder("devicehive.cache.l1.size", this, DeviceHistoryCache::getWeight)
+                .tag("cache", name).baseUnit("bytes").register(registry);
+    }
+
+    private Partition getPartition(String deviceId) {
+        return partitions.get(Math.floorMod(deviceId.hashCode(), partitions.size()));
+    }
+
+    private long score(T entity, long now) {
+        final Date timestamp = timestampGetter.apply(entity);
+        return timestamp != null ? timestamp.getTime() : now;
+    }
+
+    private final class Partition {
+
+        private final long budget;
+        private final LinkedHashMap<String, History> histories = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        Partition(long budget) {
+            this.budget = budget;
+        }
+
+        synchronized void store(String deviceId, T entity, long now) {
+            History history = histories.get(deviceId);
+            if (history == null) {
+                history = new History(now);
+                histories.put(deviceId, history);
+                weight += HISTORY_OVERHEAD;
+            }
+            weight += history.expire(now);
+
+            final Entry entry = new Entry(entity, score(entity, now), now, weigher.applyAsLong(entity));
+            final Entry replaced = history.entries.remove(entity.getCacheKey());
+            if (replaced != null) {
+                weight -= replaced.weight;
+            }
+            history.entries.put(entity.getCacheKey(), entry);
+            weight += entry.weight;
+
+            sweep(now);
+            final Iterator<History> eldest = histories.values().iterator();
+            while (weight > budget && eldest.hasNext()) {
+                final History evicted = eldest.next();
+                eldest.remove();
+                weight -= HISTORY_OVERHEAD + evicted.getWeight();
+                evictions.add(evicted.entries.size());
+            }
+        }
+
+        synchronized T find(String deviceId, String cacheKey, long now) {
+            final History history = histories.get(deviceId);
+            if (history == null) {
+                return null;
+            }
+            weight += history.expire(now);
+            final Entry entry = history.entries.get(cacheKey);
+            return entry != null ? entry.entity : null;
+        }
+
+        synchronized boolean collect(String deviceId, Collection<String> names, Date timestampFrom, Date timestampTo,
+                                     long now, List<Entry> found) {
+            final History history = histories.get(deviceId);
+            if (history == null || now - history.trackedSince < ttlMillis) {
+                return false;
+            }
+            weight += history.expire(now);
+            for (Entry entry : history.entries.values()) {
+                if ((CollectionUtils.isEmpty(names) || names.contains(nameGetter.apply(entry.entity)))
+                        && (timestampFrom == null || entry.score >= timestampFrom.getTime())
+                        && (timestampTo == null || entry.score <= timestampTo.getTime())) {
+                    found.add(entry);
+                }
+            }
+            return true;
+        }
+
+        synchronized void clear() {
+            histories.clear();
+            weight = 0;
+        }
+
+        synchronized long getWeight() {
+            return weight;
+        }
+
+        synchronized int getDeviceCount() {
+            return histories.size();
+        }
+
+        /**
+         * Expires the least recently used histories and removes the ones left empty.
+         */
+        private void sweep(long now) {
+            final Iterator<History> eldest = histories.values().iterator();
+            for (int i = 0; i < SWEEP_SIZE && eldest.hasNext(); i++) {
+                final History history = eldest.next();
+                weight += history.expire(now);
+                if (history.entries.isEmpty()) {
+                    eldest.remove();
+                    weight -= HISTORY_OVERHEAD;
+                }
+            }
+        }
+    }
+
+    private final class History {
+
+        private final long trackedSince;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+        History(long trackedSince) {
+            this.trackedSince = trackedSince;
+        }
+
+        /**
+         * Removes entities stored more than TTL ago and returns weight delta.
+         */
+        long expire(long now) {
+            long removed = 0;
+            final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next().getValue();
+                if (now - entry.storedAt < ttlMillis) {
+                    break;
+                }
+                iterator.remove();
+                removed += entry.weight;
+            }
+            return -removed;
+        }
+
+        long getWeight() {
+            return entries.values().stream().mapToLong(entry -> entry.weight).sum();
+        }
+    }
+
+    private final class Entry {
+
+        private final T entity;
+        private final long score;
+        private final long storedAt;
+        private final long weight;
+
+        Entry(T entity, long score, long storedAt, long weight) {
+            this.entity = entity;
+            this.score = score;
+            this.storedAt = storedAt;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.CacheEntity;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.RedisZSetCommands.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Redis storage of device history entities, i.e. notifications and commands.
+ * Every entity is kept under its own cache key with TTL and is indexed in per-device and per-device-and-name
+ * sorted sets scored by entity timestamp, so range, name and limit queries are answered by Redis
+ * without scanning the keyspace. Index entries older than TTL relative to the newest entry are trimmed on write,
+ * entries which values have already expired are removed on read, and a limited query which hit them is repeated.
+ * <p>
+ * Entities stored before the index was introduced have no index entries. With backfill enabled, the first query
+ * of a device within TTL scans the keys of its entities and indexes them, so history survives the upgrade; once
+ * a TTL has passed since the upgrade there is nothing left to backfill and it may be disabled to save the scans.
+ */
+public class DeviceHistoryIndex<T extends CacheEntity> {
+
+    /**
+     * Maximum number of times a limited query is run, as every run may hit entries expired since the previous one.
+     */
+    private static final int MAX_QUERY_ROUNDS = 4;
+
+    private static final int BACKFILL_SCAN_COUNT = 1000;
+    private static final byte[] BACKFILL_MARKER = {'1'};
+
+    private final String prefix;
+    private final long ttlSeconds;
+    private final RedisTemplate<String, T> redisTemplate;
+    private final RedisSerializer<String> keySerializer;
+    private final RedisSerializer<T> valueSerializer;
+    private final Function<T, String> deviceIdGetter;
+    private final Function<T, String> nameGetter;
+    private final Function<T, Date> timestampGetter;
+    private final boolean backfill;
+
+    public DeviceHistoryIndex(String prefix, long ttlSeconds, RedisTemplate<String, T> redisTemplate,
+                              RedisSerializer<String> keySerializer, RedisSerializer<T> valueSerializer,
+                              Function<T, String> deviceIdGetter, Function<T, String> nameGetter,
+                              Function<T, Date> timestampGetter) {
+        this(prefix, ttlSeconds, redisTemplate, keySerializer, valueSerializer, deviceIdGetter, nameGetter,
+                timestampGetter, false);
+    }
+
+    public DeviceHistoryIndex(String prefix, long ttlSeconds, RedisTemplate<String, T> redisTemplate,
+                              RedisSerializer<String> keySerializer, RedisSerializer<T> valueSerializer,
+                              Function<T, String> deviceIdGetter, Function<T, String> nameGetter,
+                              Function<T, Date> timestampGetter, boolean backfill) {
+        this.prefix = prefix;
+        this.ttlSeconds = ttlSeconds;
+        this.redisTemplate = redisTemplate;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.deviceIdGetter = deviceIdGetter;
+        this.nameGetter = nameGetter;
+        this.timestampGetter = timestampGetter;
+        this.backfill = backfill;
+    }
+
+    /**
+     * Stores entity and its index entries in a single pipeline.
+     */
+    public void store(T entity) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            store(connection, entity);
+            return null;
+        });
+    }
+
+    /**
+     * Stores entities and their index entries in a single pipeline.
+     */
+    public void store(Collection<T> entities) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            entities.forEach(entity -> store(connection, entity));
+            return null;
+        });
+    }
+
+    /**
+     * Issues commands storing entity and its index entries on given connection, which is expected to be pipelined.
+     */
+    public void store(RedisConnection connection, T entity) {
+        final byte[] member = keySerializer.serialize(entity.getCacheKey());
+        connection.stringCommands().set(member, valueSerializer.serialize(entity),
+                Expiration.seconds(ttlSeconds), SetOption.upsert());
+        addIndexEntries(connection, entity, member);
+    }
+
+    /**
+     * Finds entities of given devices, ordered by timestamp.
+     *
+     * @param names         names of entities to return, all names if empty
+     * @param timestampFrom inclusive lower bound of timestamp, unbounded if null
+     * @param timestampTo   inclusive upper bound of timestamp, unbounded if null
+     * @param limit         maximum number of entities to return, unlimited if null
+     * @param newestFirst   whether entities are ordered from the newest to the oldest one
+     */
+    public List<T> find(Collection<String> deviceIds, Collection<String> names, Date timestampFrom, Date timestampTo,
+                        Integer limit, boolean newestFirst) {
+        if (backfill) {
+            deviceIds.stream().filter(Objects::nonNull).forEach(this::backfill);
+        }
+        for (int round = 1; ; round++) {
+            final List<String> keys = redisTemplate.execute((RedisCallback<List<String>>) connection ->
+                    findKeys(connection, deviceIds, names, timestampFrom, timestampTo, limit, newestFirst));
+            if (CollectionUtils.isEmpty(keys)) {
+                return Collections.emptyList();
+            }
+
+            final List<T> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return Collections.emptyList();
+            }
+
+            final List<T> entities = new ArrayList<>(values.size());
+            final List<String> expiredKeys = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                final T value = values.get(i);
+                if (value != null) {
+                    entities.add(value);
+                } else {
+                    expiredKeys.add(keys.get(i));
+                }
+            }
+            if (expiredKeys.isEmpty()) {
+                return entities;
+            }
+            removeIndexEntries(deviceIds, names, expiredKeys);
+            // expired entries took places of the limit, query again now that they are removed
+            if (limit == null || entities.size() >= limit || round == MAX_QUERY_ROUNDS) {
+                return entities;
+            }
+        }
+    }
+
+    private List<String> findKeys(RedisConnection connection, Collection<String> deviceIds, Collection<String> names,
+                                  Date timestampFrom, Date timestampTo, Integer limit, boolean newestFirst) {
+        final Range range = Range.range();
+        if (timestampFrom != null) {
+            range.gte(timestampFrom.getTime());
+        }
+        if (timestampTo != null) {
+            range.lte(timestampTo.getTime());
+        }
+        final Limit rangeLimit = limit != null ? Limit.limit().count(limit) : Limit.unlimited();
+
+        final List<Tuple> entries = new ArrayList<>();
+        for (String indexKey : getIndexKeys(deviceIds, names)) {
+            final byte[] key = keySerializer.serialize(indexKey);
+            final Collection<Tuple> found = newestFirst
+                    ? connection.zSetCommands().zRevRangeByScoreWithScores(key, range, rangeLimit)
+                    : connection.zSetCommands().zRangeByScoreWithScores(key, range, rangeLimit);
+            if (found != null) {
+                entries.addAll(found);
+            }
+        }
+
+        Comparator<Tuple> comparator = Comparator.comparingDouble(Tuple::getScore);
+        entries.sort(newestFirst ? comparator.reversed() : comparator);
+
+        return entries.stream()
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .map(entry -> keySerializer.deserialize(entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Indexes entities of the device stored without index entries, once per TTL across all nodes.
+     */
+    private void backfill(String deviceId) {
+        final Boolean first = redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(keySerializer.serialize(getBackfillKey(deviceId)), BACKFILL_MARKER,
+                        Expiration.seconds(ttlSeconds), SetOption.ifAbsent()));
+        if (!Boolean.TRUE.equals(first)) {
+            return;
+        }
+
+        final String keyPrefix = String.format("%s_%s_", prefix, deviceId);
+        final List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions()
+                .match(keyPrefix + "*").count(BACKFILL_SCAN_COUNT).build())) {
+            while (cursor.hasNext()) {
+                final String key = cursor.next();
+                // other devices, which ids start with this one and an underscore, match the pattern as well
+                if (isEntityId(key.substring(keyPrefix.length()))) {
+                    keys.add(key);
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        final List<T> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (T entity : values) {
+                if (entity != null && deviceId.equals(deviceIdGetter.apply(entity))) {
+                    addIndexEntries(connection, entity, keySerializer.serialize(entity.getCacheKey()));
+                }
+            }
+            return null;
+        });
+    }
+
+    private static boolean isEntityId(String id) {
+        return !id.isEmpty() && id.chars().allMatch(Character::isDigit);
+    }
+
+    private void addIndexEntries(RedisConnection connection, T entity, byte[] member) {
+        final Date timestamp = timestampGetter.apply(entity);
+        final double score = timestamp != null ? timestamp.getTime() : System.currentTimeMillis();
+        final String deviceId = deviceIdGetter.apply(entity);
+        addIndexEntry(connection, getIndexKey(deviceId), member, score);
+
+        final String name = nameGetter.apply(entity);
+        if (name != null) {
+            addIndexEntry(connection, getIndexKey(deviceId, name), member, score);
+        }
+    }
+
+    private void addIndexEntry(RedisConnection connection, String indexKey, byte[] member, double score) {
+        final byte[] key = keySerializer.serialize(indexKey);
+        connection.zSetCommands().zAdd(key, score, member);
+        connection.zSetCommands().zRemRangeByScore(key, Range.range().lt(score - ttlSeconds * 1000));
+        connection.keyCommands().expire(key, ttlSeconds);
+    }
+
+    private void removeIndexEntries(Collection<String> deviceIds, Collection<String> names, List<String> expiredKeys) {
+        final byte[][] members = expiredKeys.stream()
+                .map(keySerializer::serialize)
+                .toArray(byte[][]::new);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            getIndexKeys(deviceIds, names).forEach(indexKey ->
+                    connection.zSetCommands().zRem(keySerializer.serialize(indexKey), members));
+            return null;
+        });
+    }
+
+    private List<String> getIndexKeys(Collection<String> deviceIds, Collection<String> names) {
+        final List<String> indexKeys = new ArrayList<>();
+        deviceIds.stream().filter(Objects::nonNull).forEach(deviceId -> {
+            if (CollectionUtils.isEmpty(names)) {
+                indexKeys.add(getIndexKey(deviceId));
+            } else {
+                names.forEach(name -> indexKeys.add(getIndexKey(deviceId, name)));
+            }
+        });
+        return indexKeys;
+    }
+
+    private String getIndexKey(String deviceId) {
+        return String.format("%s_index_{%s}", prefix, deviceId);
+    }
+
+    private String getIndexKey(String deviceId, String name) {
+        return String.format("%s_index_{%s}_%s", prefix, deviceId, name);
+    }
+
+    private String getBackfillKey(String deviceId) {
+        return String.format("%s_backfill_{%s}", prefix, deviceId);
+    }
+}
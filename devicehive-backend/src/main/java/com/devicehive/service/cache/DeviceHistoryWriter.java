@@ -0,0 +1,230 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.application.CacheConfig;
+import com.devicehive.model.CacheEntity;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind stage in front of {@link DeviceHistoryIndex}.
+ * Stores from all request handler threads are queued and written by a single flusher thread in pipelined batches,
+ * a batch is flushed when it is full or when flush interval since its first entity has elapsed.
+ * Callers block while the queue is full, which propagates backpressure to the request ring buffer.
+ * Entities stay available through {@link #getPending(String)} until their batch is written.
+ * Failed batch is retried a few times, entities of a batch which still fails are counted as lost.
+ * Stores made after {@link #stop()} are written synchronously.
+ */
+public class DeviceHistoryWriter<T extends CacheEntity> implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceHistoryWriter.class);
+
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private final String name;
+    private final DeviceHistoryIndex<T> historyIndex;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<T> queue;
+    private final Map<String, T> pendingWrites = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public DeviceHistoryWriter(String name, DeviceHistoryIndex<T> historyIndex, CacheConfig cacheConfig) {
+        this.name = name;
+        this.historyIndex = historyIndex;
+        this.enabled = cacheConfig.isWriteBehindEnabled();
+        this.batchSize = Math.max(1, cacheConfig.getWriteBehindBatchSize());
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(cacheConfig.getWriteBehindFlushIntervalMs());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, cacheConfig.getWriteBehindQueueSize()));
+        this.flusher = new Thread(this::run, name + "-cache-writer");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            flusher.start();
+        }
+    }
+
+    public void store(T entity) {
+        if (!enabled || !running) {
+            historyIndex.store(entity);
+            return;
+        }
+        pendingWrites.put(entity.getCacheKey(), entity);
+        try {
+            queue.put(entity);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendingWrites.remove(entity.getCacheKey(), entity);
+            historyIndex.store(entity);
+            return;
+        }
+        if (!running) {
+            // flusher may have exited before the entity was queued
+            writeRemaining();
+        }
+    }
+
+    /**
+     * Stores entities in order, written in one pipelined batch when write-behind is disabled.
+     */
+    public void store(Collection<T> entities) {
+        if (!enabled) {
+            historyIndex.store(entities);
+            return;
+        }
+        entities.forEach(this::store);
+    }
+
+    public long getRetriedCount() {
+        return retried.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns entity with given cache key, which is queued but not yet written to Redis.
+     */
+    public Optional<T> getPending(String cacheKey) {
+        return Optional.ofNullable(pendingWrites.get(cacheKey));
+    }
+
+    /**
+     * Stops accepting new batches and waits for the queued entities to be written.
+     */
+    public void stop() {
+        running = false;
+        if (enabled) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeRemaining();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("devicehive.cache.write-behind.queued", queue, BlockingQueue::size)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("devicehive.cache.write-behind.retried", this, DeviceHistoryWriter::getRetriedCount)
+                .tag("cache", name).register(registry);
+        FunctionCounter.builder("devicehive.cache.write-behind.failed", this, DeviceHistoryWriter::getFailedCount)
+                .tag("cache", name).register(registry);
+    }
+
+    private void run() {
+        final List<T> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + flushIntervalNanos);
+                write(batch);
+            } catch (InterruptedException e) {
+                logger.warn("Cache writer was interrupted, {} queued entities are written synchronously", queue.size());
+                queue.drainTo(batch);
+                write(batch);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void fill(List<T> batch, long deadline) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            final T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeRemaining() {
+        final List<T> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        write(batch);
+    }
+
+    private void write(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    historyIndex.store(batch);
+                    return;
+                } catch (Exception e) {
+                    if (attempt == MAX_WRITE_ATTEMPTS) {
+                        failed.add(batch.size());
+                        logger.error("Failed to write batch of {} entities into cache, they are lost", batch.size(), e);
+                        return;
+                    }
+                    retried.increment();
+                    logger.warn("Failed to write batch of {} entities into cache, attempt {} of {}",
+                            batch.size(), attempt, MAX_WRITE_ATTEMPTS, e);
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                }
+            }
+        } catch (InterruptedException e) {
+            failed.add(batch.size());
+            logger.error("Cache writer was interrupted while retrying batch of {} entities, they are lost", batch.size());
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.forEach(entity -> pendingWrites.remove(entity.getCacheKey(), entity));
+        }
+    }
+}
@@ -20,40 +20,62 @@ package com.devicehive.service.cache.command;
  * #L%
  */
 
+import com.devicehive.application.CacheConfig;
 import com.devicehive.configuration.Constants;
 import com.devicehive.model.DeviceCommand;
+import com.devicehive.service.cache.DeviceHistoryIndex;
+import com.devicehive.service.cache.DeviceHistoryWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
-import java.time.Duration;
+import javax.annotation.PreDestroy;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 @Service
-public class CommandRedisCacheService implements CommandCacheService {
+public class CommandRedisCacheService implements CommandCacheService, MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(CommandRedisCacheService.class);
 
-    private final long cacheTtl;
     private final ValueOperations<String, DeviceCommand> valueOperations;
+    private final DeviceHistoryIndex<DeviceCommand> historyIndex;
+    private final DeviceHistoryWriter<DeviceCommand> historyWriter;
 
     public CommandRedisCacheService(
             @Value("${devicehive.cache.commands.ttl.seconds}") long cacheTtl,
-            final RedisTemplate<String, DeviceCommand> redisTemplate) {
-        this.cacheTtl = cacheTtl;
+            final RedisTemplate<String, DeviceCommand> redisTemplate,
+            final RedisSerializer<String> stringRedisSerializer,
+            final RedisSerializer<DeviceCommand> deviceCommandRedisSerializer,
+            final CacheConfig cacheConfig) {
         this.valueOperations = redisTemplate.opsForValue();
+        this.historyIndex = new DeviceHistoryIndex<>(Constants.COMMANDS, cacheTtl, redisTemplate,
+                stringRedisSerializer, deviceCommandRedisSerializer,
+                DeviceCommand::getDeviceId, DeviceCommand::getCommand, DeviceCommand::getTimestamp,
+                cacheConfig.isHistoryBackfillEnabled());
+        this.historyWriter = new DeviceHistoryWriter<>(Constants.COMMANDS, historyIndex, cacheConfig);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        historyWriter.stop();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        historyWriter.bindTo(registry);
     }
 
     @Override
@@ -66,9 +88,8 @@ public class CommandRedisCacheService implements CommandCacheService {
     public Optional<DeviceCommand> find(final Long commandId, final String deviceId, final boolean returnUpdated) {
         log.debug("Searching DeviceCommand by id={}, deviceId={}, updated={}", commandId, deviceId, returnUpdated);
         final String cacheKey = getCacheKey(commandId, deviceId);
-        final Optional<DeviceCommand> deviceCommand = Optional.ofNullable(
-                valueOperations.get(cacheKey)
-        );
+        final Optional<DeviceCommand> deviceCommand = historyWriter.getPending(cacheKey)
+                .or(() -> Optional.ofNullable(valueOperations.get(cacheKey)));
 
         if (returnUpdated) {
             return deviceCommand.filter(command -> Boolean.TRUE.equals(command.getIsUpdated()));
@@ -84,19 +105,9 @@ public class CommandRedisCacheService implements CommandCacheService {
         log.debug("Searching DeviceCommand by deviceIds={}, commands={}, from={}, to={}, updated={}, status={}",
                 deviceIds, commands, timestampFrom, timestampTo, returnUpdated, status);
 
-        final List<String> cacheKeys = deviceIds.stream().flatMap(deviceId -> getCacheKeys(deviceId).stream()).toList();
-        Stream<DeviceCommand> commandsStream = Optional.ofNullable(valueOperations.multiGet(cacheKeys))
-                                                       .stream()
-                                                       .flatMap(Collection::stream);
-        commandsStream = filterByCommands(commandsStream, commands);
-        commandsStream = filterByTimestampFrom(commandsStream, timestampFrom);
-
-        if (Objects.nonNull(timestampTo)) {
-            commandsStream = commandsStream.filter(command -> {
-                final Date timestamp = command.getTimestamp();
-                return timestamp.equals(timestampTo) || timestamp.before(timestampTo);
-            });
-        }
+        final boolean filtered = returnUpdated || StringUtils.isNotBlank(status);
+        Stream<DeviceCommand> commandsStream = findHistory(deviceIds, commands, timestampFrom, timestampTo,
+                filtered ? null : take, true).stream();
 
         commandsStream = filterByUpdated(commandsStream, returnUpdated);
 
@@ -116,10 +127,10 @@ public class CommandRedisCacheService implements CommandCacheService {
         log.debug("Searching DeviceCommand by deviceId={}, networkIds={}, deviceTypeIds={}, commands={}, from={}, updated={}",
                 deviceId, networkIds, deviceTypeIds, commands, timestampFrom, returnUpdated);
 
-        final Collection<String> cacheKeys = getCacheKeys(deviceId);
-        Stream<DeviceCommand> commandsStream = Optional.ofNullable(valueOperations.multiGet(cacheKeys))
-                                                       .stream()
-                                                       .flatMap(Collection::stream);
+        final boolean filtered = returnUpdated || !CollectionUtils.isEmpty(networkIds) || !CollectionUtils.isEmpty(deviceTypeIds);
+        Stream<DeviceCommand> commandsStream = findHistory(Collections.singleton(deviceId), commands,
+                timestampFrom, null, filtered ? null : take, false).stream();
+
         if (!CollectionUtils.isEmpty(networkIds)) {
             commandsStream = commandsStream.filter(command -> networkIds.contains(command.getNetworkId()));
         }
@@ -128,8 +139,6 @@ public class CommandRedisCacheService implements CommandCacheService {
             commandsStream = commandsStream.filter(command -> deviceTypeIds.contains(command.getDeviceTypeId()));
         }
 
-        commandsStream = filterByCommands(commandsStream, commands);
-        commandsStream = filterByTimestampFrom(commandsStream, timestampFrom);
         commandsStream = filterByUpdated(commandsStream, returnUpdated);
 
         return commandsStream
@@ -140,47 +149,17 @@ public class CommandRedisCacheService implements CommandCacheService {
     @Override
     public void store(final DeviceCommand entity) {
         log.debug("Saving DeviceCommand into Redis: {}", entity);
-        valueOperations.set(
-                entity.getCacheKey(),
-                entity,
-                Duration.ofSeconds(cacheTtl)
-        );
+        historyWriter.store(entity);
     }
 
-    private String getCacheKey(final Long commandId, final String deviceId) {
-        final String id = Objects.isNull(commandId) ? "*" : commandId.toString();
-        return String.format("%s_%s_%s", Constants.COMMANDS, deviceId, id);
-    }
-
-    private Collection<String> getCacheKeys(final String deviceId) {
-        final ScanOptions scanOptions = ScanOptions.scanOptions()
-                                                   .match(getCacheKey(null, deviceId))
-                                                   .build();
-        try (
-                final Cursor<String> cursor = valueOperations.getOperations().scan(scanOptions)
-        ) {
-            return cursor.stream().toList();
-        }
+    private List<DeviceCommand> findHistory(final Collection<String> deviceIds, final Collection<String> names,
+                                            final Date timestampFrom, final Date timestampTo, final Integer take,
+                                            final boolean newestFirst) {
+        return historyIndex.find(deviceIds, names, timestampFrom, timestampTo, take, newestFirst);
     }
 
-    private Stream<DeviceCommand> filterByCommands(final Stream<DeviceCommand> stream, final Collection<String> commands) {
-        if (!CollectionUtils.isEmpty(commands)) {
-            return stream.filter(command -> commands.contains(command.getCommand()));
-        } else {
-            return stream;
-        }
-    }
-
-    private Stream<DeviceCommand> filterByTimestampFrom(final Stream<DeviceCommand> stream, final Date timestampFrom) {
-        if (Objects.nonNull(timestampFrom)) {
-            return stream.filter(command -> {
-                final Date timestamp = command.getTimestamp();
-                return timestamp.equals(timestampFrom) || timestamp.after(timestampFrom);
-            });
-        } else {
-            return stream;
-        }
-
+    private String getCacheKey(final Long commandId, final String deviceId) {
+        return String.format("%s_%s_%s", Constants.COMMANDS, deviceId, commandId);
     }
 
     private Stream<DeviceCommand> filterByUpdated(final Stream<DeviceCommand> stream, boolean updated) {
@@ -20,48 +20,74 @@ package com.devicehive.service.cache.notification;
  * #L%
  */
 
+import com.devicehive.application.CacheConfig;
 import com.devicehive.configuration.Constants;
 import com.devicehive.model.DeviceNotification;
+import com.devicehive.service.cache.DeviceHistoryCache;
+import com.devicehive.service.cache.DeviceHistoryIndex;
+import com.devicehive.service.cache.DeviceHistoryWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
-import java.time.Duration;
+import javax.annotation.PreDestroy;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 @Service
-public class NotificationRedisCacheService implements NotificationCacheService {
+public class NotificationRedisCacheService implements NotificationCacheService, MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(NotificationRedisCacheService.class);
 
-    private final long cacheTtl;
     private final ValueOperations<String, DeviceNotification> valueOperations;
+    private final DeviceHistoryIndex<DeviceNotification> historyIndex;
+    private final DeviceHistoryWriter<DeviceNotification> historyWriter;
+    private final DeviceHistoryCache<DeviceNotification> historyCache;
 
     public NotificationRedisCacheService(
             @Value("${devicehive.cache.notifications.ttl.seconds}") long cacheTtl,
-            final RedisTemplate<String, DeviceNotification> redisTemplate) {
-        this.cacheTtl = cacheTtl;
+            final RedisTemplate<String, DeviceNotification> redisTemplate,
+            final RedisSerializer<String> stringRedisSerializer,
+            final RedisSerializer<DeviceNotification> deviceNotificationRedisSerializer,
+            final CacheConfig cacheConfig,
+            final DeviceHistoryCache<DeviceNotification> notificationHistoryCache) {
         this.valueOperations = redisTemplate.opsForValue();
+        this.historyIndex = new DeviceHistoryIndex<>(Constants.NOTIFICATIONS, cacheTtl, redisTemplate,
+                stringRedisSerializer, deviceNotificationRedisSerializer,
+                DeviceNotification::getDeviceId, DeviceNotification::getNotification, DeviceNotification::getTimestamp,
+                cacheConfig.isHistoryBackfillEnabled());
+        this.historyWriter = new DeviceHistoryWriter<>(Constants.NOTIFICATIONS, historyIndex, cacheConfig);
+        this.historyCache = notificationHistoryCache;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        historyWriter.stop();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        historyWriter.bindTo(registry);
     }
 
     @Override
     public Optional<DeviceNotification> find(final Long notificationId, final String deviceId) {
         log.debug("Searching DeviceNotification by id={} and deviceId={}", notificationId, deviceId);
         final String cacheKey = getCacheKey(notificationId, deviceId);
-        return Optional.ofNullable(
-                valueOperations.get(cacheKey)
-        );
+        return historyCache.find(deviceId, cacheKey)
+                .or(() -> historyWriter.getPending(cacheKey))
+                .or(() -> Optional.ofNullable(valueOperations.get(cacheKey)));
     }
 
     @Override
@@ -70,24 +96,7 @@ public class NotificationRedisCacheService implements NotificationCacheService {
         log.debug("Searching DeviceNotification by deviceIds={}, notifications={}, from={}, to={}",
                 deviceIds, notifications, timestampFrom, timestampTo);
 
-        final List<String> cacheKeys = deviceIds.stream().flatMap(deviceId -> getCacheKeys(deviceId).stream()).toList();
-        Stream<DeviceNotification> notificationsStream = Optional.ofNullable(valueOperations.multiGet(cacheKeys))
-                                                                 .stream()
-                                                                 .flatMap(Collection::stream);
-
-        notificationsStream = filterByNotifications(notificationsStream, notifications);
-        notificationsStream = filterByTimestampFrom(notificationsStream, timestampFrom);
-
-        if (Objects.nonNull(timestampTo)) {
-            notificationsStream = notificationsStream.filter(notification -> {
-                final Date timestamp = notification.getTimestamp();
-                return timestamp.equals(timestampTo) || timestamp.before(timestampTo);
-            });
-        }
-
-        return notificationsStream
-                .limit(take)
-                .toList();
+        return findHistory(deviceIds, notifications, timestampFrom, timestampTo, take, true);
     }
 
     @Override
@@ -97,10 +106,9 @@ public class NotificationRedisCacheService implements NotificationCacheService {
         log.debug("Searching DeviceNotification by deviceId={}, networkIds={}, deviceTypeIds={}, notifications={}, from={}",
                 deviceId, networkIds, deviceTypeIds, notifications, timestampFrom);
 
-        final Collection<String> cacheKeys = getCacheKeys(deviceId);
-        Stream<DeviceNotification> notificationStream = Optional.ofNullable(valueOperations.multiGet(cacheKeys))
-                                                                .stream()
-                                                                .flatMap(Collection::stream);
+        final boolean filtered = !CollectionUtils.isEmpty(networkIds) || !CollectionUtils.isEmpty(deviceTypeIds);
+        Stream<DeviceNotification> notificationStream = findHistory(Collections.singleton(deviceId), notifications,
+                timestampFrom, null, filtered ? null : take, false).stream();
 
         if (!CollectionUtils.isEmpty(networkIds)) {
             notificationStream = notificationStream.filter(notification -> networkIds.contains(notification.getNetworkId()));
@@ -110,9 +118,6 @@ public class NotificationRedisCacheService implements NotificationCacheService {
             notificationStream = notificationStream.filter(notification -> deviceTypeIds.contains(notification.getDeviceTypeId()));
         }
 
-        notificationStream = filterByNotifications(notificationStream, notifications);
-        notificationStream = filterByTimestampFrom(notificationStream, timestampFrom);
-
         return notificationStream
                 .limit(take)
                 .toList();
@@ -121,45 +126,25 @@ public class NotificationRedisCacheService implements NotificationCacheService {
     @Override
     public void store(final DeviceNotification entity) {
         log.debug("Saving DeviceNotification into Redis: {}", entity);
-        valueOperations.set(
-                entity.getCacheKey(),
-                entity,
-                Duration.ofSeconds(cacheTtl)
-        );
-    }
-
-    private String getCacheKey(final Long notificationId, final String deviceId) {
-        final String id = Objects.isNull(notificationId) ? "*" : notificationId.toString();
-        return String.format("%s_%s_%s", Constants.NOTIFICATIONS, deviceId, id);
+        historyCache.store(entity);
+        historyWriter.store(entity);
     }
 
-    private Collection<String> getCacheKeys(final String deviceId) {
-        final ScanOptions scanOptions = ScanOptions.scanOptions()
-                                                   .match(getCacheKey(null, deviceId))
-                                                   .build();
-        try (
-                final Cursor<String> cursor = valueOperations.getOperations().scan(scanOptions)
-        ) {
-            return cursor.stream().toList();
-        }
+    @Override
+    public void store(final Collection<DeviceNotification> entities) {
+        log.debug("Saving {} DeviceNotifications into Redis", entities.size());
+        entities.forEach(historyCache::store);
+        historyWriter.store(entities);
     }
 
-    private Stream<DeviceNotification> filterByNotifications(final Stream<DeviceNotification> stream, final Collection<String> notifications) {
-        if (!CollectionUtils.isEmpty(notifications)) {
-            return stream.filter(notification -> notifications.contains(notification.getNotification()));
-        } else {
-            return stream;
-        }
+    private List<DeviceNotification> findHistory(final Collection<String> deviceIds, final Collection<String> names,
+                                                 final Date timestampFrom, final Date timestampTo, final Integer take,
+                                                 final boolean newestFirst) {
+        return historyCache.find(deviceIds, names, timestampFrom, timestampTo, take, newestFirst)
+                .orElseGet(() -> historyIndex.find(deviceIds, names, timestampFrom, timestampTo, take, newestFirst));
     }
 
-    private Stream<DeviceNotification> filterByTimestampFrom(final Stream<DeviceNotification> stream, final Date timestampFrom) {
-        if (Objects.nonNull(timestampFrom)) {
-            return stream.filter(notification -> {
-                final Date timestamp = notification.getTimestamp();
-                return timestamp.equals(timestampFrom) || timestamp.after(timestampFrom);
-            });
-        } else {
-            return stream;
-        }
+    private String getCacheKey(final Long notificationId, final String deviceId) {
+        return String.format("%s_%s_%s", Constants.NOTIFICATIONS, deviceId, notificationId);
     }
 }
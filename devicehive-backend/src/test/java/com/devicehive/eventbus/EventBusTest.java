@@ -0,0 +1,113 @@
+package com.devicehive.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.eventbus.Filter;
+import com.devicehive.model.eventbus.FilterRegistry;
+import com.devicehive.model.eventbus.Subscriber;
+import com.devicehive.model.eventbus.events.NotificationEvent;
+import com.devicehive.shim.api.Action;
+import com.devicehive.shim.api.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EventBusTest {
+
+    private static final String EVENT = Action.NOTIFICATION_EVENT.name();
+
+    private final List<String> topics = new ArrayList<>();
+    private final List<Response> responses = new ArrayList<>();
+    private final FilterRegistry registry = new FilterRegistry() {
+        @Override
+        public void register(Filter filter, Subscriber subscriber) {
+            processRegister(filter, subscriber);
+        }
+
+        @Override
+        public void unregister(Subscriber subscriber) {
+            processUnregister(subscriber);
+        }
+
+        @Override
+        public void unregister(Collection<Long> subscriptionIds) {
+            processUnregister(subscriptionIds);
+        }
+    };
+    private final EventBus eventBus = new EventBus((to, response) -> {
+        topics.add(to);
+        responses.add(response);
+    }, registry, true, "response_topic_");
+
+    @Test
+    public void shouldBatchSubscribersOfResponseTopic() {
+        eventBus.subscribe(new Filter(1L, null, "device", EVENT, null), new Subscriber(1L, "response_topic_a", "c1"));
+        eventBus.subscribe(new Filter(1L, null, null, EVENT, null), new Subscriber(2L, "response_topic_a", "c2"));
+
+        eventBus.publish(notificationEvent());
+
+        assertEquals(Arrays.asList("response_topic_a"), topics);
+        assertNull(responses.get(0).getCorrelationId());
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2")), new HashSet<>(responses.get(0).getCorrelationIds()));
+    }
+
+    @Test
+    public void shouldSendOnceToSubscriberMatchedByEveryFilter() {
+        Subscriber subscriber = new Subscriber(1L, "response_topic_a", "c1");
+        eventBus.subscribe(new Filter(1L, null, "device", EVENT, null), subscriber);
+        eventBus.subscribe(new Filter(1L, null, "device", EVENT, "temperature"), subscriber);
+        eventBus.subscribe(new Filter(null, null, null, EVENT, null), subscriber);
+
+        eventBus.publish(notificationEvent());
+
+        assertEquals(1, responses.size());
+        assertEquals("c1", responses.get(0).getCorrelationId());
+        assertNull(responses.get(0).getCorrelationIds());
+    }
+
+    @Test
+    public void shouldNotBatchPluginTopic() {
+        eventBus.subscribe(new Filter(1L, null, "device", EVENT, null), new Subscriber(1L, "plugin_topic_a", null));
+        eventBus.subscribe(new Filter(1L, null, "device", EVENT, "temperature"), new Subscriber(1L, "plugin_topic_a", null));
+        eventBus.subscribe(new Filter(1L, null, null, EVENT, null), new Subscriber(2L, "plugin_topic_a", null));
+
+        eventBus.publish(notificationEvent());
+
+        assertEquals(Arrays.asList("plugin_topic_a", "plugin_topic_a"), topics);
+        responses.forEach(response -> assertNull(response.getCorrelationIds()));
+    }
+
+    private static NotificationEvent notificationEvent() {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setNetworkId(1L);
+        notification.setDeviceId("device");
+        notification.setNotification("temperature");
+        return new NotificationEvent(notification);
+    }
+}
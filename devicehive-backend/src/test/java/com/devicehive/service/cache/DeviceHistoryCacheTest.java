@@ -0,0 +1,157 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeviceHistoryCacheTest {
+
+    private static final long TTL_SECONDS = 10;
+    private static final long TTL = TTL_SECONDS * 1000;
+
+    private long now;
+    private DeviceHistoryCache<DeviceNotification> cache;
+
+    @BeforeEach
+    public void setUp() {
+        now = 1_000_000;
+        cache = create(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldMissRangeUntilHistoryIsTrackedForTtl() {
+        cache.store(notification("device", 1));
+        assertFalse(find("device").isPresent());
+
+        now += TTL - 1;
+        assertFalse(find("device").isPresent());
+        assertTrue(cache.find("device", notification("device", 1).getCacheKey()).isPresent());
+    }
+
+    @Test
+    public void shouldServeStoredEntitiesNewestFirst() {
+        cache.store(notification("device", 1));
+        now += TTL / 2;
+        cache.store(notification("device", 2));
+        now += TTL / 2;
+
+        List<DeviceNotification> found = find("device").orElseThrow();
+        assertEquals(1, found.size());
+        assertEquals(2L, found.get(0).getId());
+
+        cache.store(notification("device", 3));
+        found = find("device").orElseThrow();
+        assertEquals(2, found.size());
+        assertEquals(3L, found.get(0).getId());
+        assertEquals(2L, found.get(1).getId());
+    }
+
+    @Test
+    public void shouldMissRangeOfAnyUntrackedDevice() {
+        cache.store(notification("device", 1));
+        now += TTL / 2;
+        cache.store(notification("device", 2));
+        now += TTL / 2;
+        cache.store(notification("other", 3));
+
+        assertTrue(find("device").isPresent());
+        assertFalse(cache.find(List.of("device", "other"), null, null, null, null, true).isPresent());
+    }
+
+    @Test
+    public void shouldMissEverythingAfterPartitionsAreAssigned() {
+        cache.store(notification("device", 1));
+        now += TTL / 2;
+        cache.onPartitionsAssigned();
+
+        assertFalse(cache.find("device", notification("device", 1).getCacheKey()).isPresent());
+        assertEquals(0, cache.getWeight());
+
+        cache.store(notification("device", 2));
+        now += TTL - 1;
+        cache.store(notification("device", 3));
+        assertFalse(find("device").isPresent());
+        now += 1;
+        assertEquals(1, find("device").orElseThrow().size());
+    }
+
+    @Test
+    public void shouldSweepExpiredDevices() {
+        for (int i = 0; i < 10; i++) {
+            cache.store(notification("device" + i, i));
+        }
+        assertEquals(10, cache.getDeviceCount());
+
+        now += TTL;
+        for (int i = 0; i < 10; i++) {
+            cache.store(notification("active", 100 + i));
+        }
+        assertEquals(1, cache.getDeviceCount());
+        assertEquals(256 + 10 * DeviceHistoryCache.weigh("name", "active"), cache.getWeight());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedDevicesOverBudget() {
+        final long entityWeight = DeviceHistoryCache.weigh("name", "device0");
+        cache = create(2 * (256 + entityWeight));
+
+        cache.store(notification("device0", 1));
+        cache.store(notification("device1", 2));
+        cache.find("device0", notification("device0", 1).getCacheKey());
+        cache.store(notification("device2", 3));
+
+        assertEquals(2, cache.getDeviceCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.find("device0", notification("device0", 1).getCacheKey()).isPresent());
+        assertFalse(cache.find("device1", notification("device1", 2).getCacheKey()).isPresent());
+    }
+
+    private DeviceHistoryCache<DeviceNotification> create(long budget) {
+        return new DeviceHistoryCache<>("notifications", true, TTL_SECONDS, 1, budget,
+                DeviceNotification::getDeviceId, DeviceNotification::getNotification, DeviceNotification::getTimestamp,
+                notification -> DeviceHistoryCache.weigh(notification.getNotification(), notification.getDeviceId()),
+                () -> now);
+    }
+
+    private Optional<List<DeviceNotification>> find(String deviceId) {
+        return cache.find(Collections.singleton(deviceId), null, null, null, null, true);
+    }
+
+    private DeviceNotification notification(String deviceId, long id) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId(deviceId);
+        notification.setNotification("name");
+        notification.setTimestamp(new Date(now));
+        return notification;
+    }
+}
@@ -0,0 +1,239 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultTuple;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the index against an in-memory stand-in of a Redis sorted set and values.
+ */
+public class DeviceHistoryIndexTest {
+
+    private static final String DEVICE_ID = "device";
+
+    private final StringRedisSerializer serializer = new StringRedisSerializer();
+    private final TreeMap<Double, String> sortedSet = new TreeMap<>();
+    private final Map<String, DeviceNotification> values = new HashMap<>();
+    private final Set<String> markers = new HashSet<>();
+    private final List<String> scans = new ArrayList<>();
+
+    private RedisTemplate<String, DeviceNotification> redisTemplate;
+    private DeviceHistoryIndex<DeviceNotification> index;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        RedisZSetCommands zSetCommands = mock(RedisZSetCommands.class);
+        when(zSetCommands.zRangeByScoreWithScores(any(byte[].class), any(), any()))
+                .thenAnswer(invocation -> range(sortedSet.entrySet(), invocation.getArgument(2)));
+        when(zSetCommands.zRevRangeByScoreWithScores(any(byte[].class), any(), any()))
+                .thenAnswer(invocation -> range(sortedSet.descendingMap().entrySet(), invocation.getArgument(2)));
+        when(zSetCommands.zRem(any(byte[].class), any())).thenAnswer(invocation -> {
+            List<byte[]> members = new ArrayList<>();
+            for (Object argument : Arrays.copyOfRange(invocation.getArguments(), 1, invocation.getArguments().length)) {
+                if (argument instanceof byte[][]) {
+                    members.addAll(Arrays.asList((byte[][]) argument));
+                } else {
+                    members.add((byte[]) argument);
+                }
+            }
+            members.forEach(member -> sortedSet.values().remove(serializer.deserialize(member)));
+            return (long) members.size();
+        });
+        when(zSetCommands.zAdd(any(byte[].class), anyDouble(), any(byte[].class))).thenAnswer(invocation -> {
+            if (serializer.deserialize((byte[]) invocation.getArgument(0)).equals("notifications_index_{" + DEVICE_ID + "}")) {
+                sortedSet.put(invocation.getArgument(1), serializer.deserialize((byte[]) invocation.getArgument(2)));
+            }
+            return true;
+        });
+        RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+        when(stringCommands.set(any(byte[].class), any(byte[].class), any(), any()))
+                .thenAnswer(invocation -> markers.add(serializer.deserialize((byte[]) invocation.getArgument(0))));
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(connection.keyCommands()).thenReturn(mock(RedisKeyCommands.class));
+
+        ValueOperations<String, DeviceNotification> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.multiGet(anyList())).thenAnswer(invocation -> ((List<String>) invocation.getArgument(0))
+                .stream().map(values::get).collect(Collectors.toList()));
+
+        redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.scan(any())).thenAnswer(invocation -> {
+            scans.add(DEVICE_ID);
+            Iterator<String> keys = new ArrayList<>(values.keySet()).iterator();
+            Cursor<String> cursor = mock(Cursor.class);
+            when(cursor.hasNext()).thenAnswer(hasNext -> keys.hasNext());
+            when(cursor.next()).thenAnswer(next -> keys.next());
+            return cursor;
+        });
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection);
+            return Collections.emptyList();
+        });
+
+        index = new DeviceHistoryIndex<>("notifications", 120, redisTemplate, serializer, null,
+                DeviceNotification::getDeviceId, DeviceNotification::getNotification, DeviceNotification::getTimestamp);
+    }
+
+    @Test
+    public void shouldFillLimitWhenOldestEntriesExpired() {
+        for (long id = 1; id <= 5; id++) {
+            add(id, id > 2);
+        }
+
+        List<DeviceNotification> found = index.find(Collections.singleton(DEVICE_ID), null, null, null, 2, false);
+
+        assertEquals(Arrays.asList(3L, 4L), ids(found));
+        assertEquals(3, sortedSet.size());
+    }
+
+    @Test
+    public void shouldReturnNewestFirst() {
+        for (long id = 1; id <= 5; id++) {
+            add(id, id != 5);
+        }
+
+        List<DeviceNotification> found = index.find(Collections.singleton(DEVICE_ID), null, null, null, 3, true);
+
+        assertEquals(Arrays.asList(4L, 3L, 2L), ids(found));
+    }
+
+    @Test
+    public void shouldReturnEverythingLeftWithoutLimit() {
+        for (long id = 1; id <= 4; id++) {
+            add(id, id % 2 == 0);
+        }
+
+        List<DeviceNotification> found = index.find(Collections.singleton(DEVICE_ID), null, null, null, null, false);
+
+        assertEquals(Arrays.asList(2L, 4L), ids(found));
+        assertEquals(2, sortedSet.size());
+    }
+
+    @Test
+    public void shouldReturnFewerWhenEverythingExpired() {
+        for (long id = 1; id <= 3; id++) {
+            add(id, false);
+        }
+
+        assertEquals(Collections.emptyList(), index.find(Collections.singleton(DEVICE_ID), null, null, null, 2, false));
+        assertEquals(0, sortedSet.size());
+    }
+
+    @Test
+    public void shouldBackfillEntitiesStoredWithoutIndexOnce() {
+        index = new DeviceHistoryIndex<>("notifications", 120, redisTemplate, serializer, null,
+                DeviceNotification::getDeviceId, DeviceNotification::getNotification, DeviceNotification::getTimestamp,
+                true);
+        for (long id = 1; id <= 3; id++) {
+            values.put(notification(id, DEVICE_ID).getCacheKey(), notification(id, DEVICE_ID));
+        }
+        // device which id starts with the id of the queried one matches the scan pattern
+        DeviceNotification other = notification(4, DEVICE_ID + "_4");
+        values.put(other.getCacheKey(), other);
+
+        List<DeviceNotification> found = index.find(Collections.singleton(DEVICE_ID), null, null, null, 10, false);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(found));
+        assertEquals(Collections.singleton("notifications_backfill_{" + DEVICE_ID + "}"), markers);
+
+        index.find(Collections.singleton(DEVICE_ID), null, null, null, 10, false);
+        assertEquals(1, scans.size());
+    }
+
+    @Test
+    public void shouldNotBackfillWhenDisabled() {
+        values.put(notification(1, DEVICE_ID).getCacheKey(), notification(1, DEVICE_ID));
+
+        assertEquals(Collections.emptyList(), index.find(Collections.singleton(DEVICE_ID), null, null, null, 10, false));
+        assertEquals(0, scans.size());
+    }
+
+    private static DeviceNotification notification(long id, String deviceId) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId(deviceId);
+        notification.setTimestamp(new Date(1000 * id));
+        return notification;
+    }
+
+    private void add(long id, boolean alive) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId(DEVICE_ID);
+        notification.setTimestamp(new Date(1000 * id));
+        sortedSet.put((double) notification.getTimestamp().getTime(), notification.getCacheKey());
+        if (alive) {
+            values.put(notification.getCacheKey(), notification);
+        }
+    }
+
+    private Set<Tuple> range(Collection<Map.Entry<Double, String>> entries, Limit limit) {
+        return entries.stream()
+                .limit(limit.isUnlimited() ? Long.MAX_VALUE : limit.getCount())
+                .map(entry -> new DefaultTuple(serializer.serialize(entry.getValue()), entry.getKey()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static List<Long> ids(List<DeviceNotification> notifications) {
+        return notifications.stream().map(DeviceNotification::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.devicehive.service.cache;
+
+/*
+ * #%L
+ * DeviceHive Backend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.application.CacheConfig;
+import com.devicehive.model.DeviceNotification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeviceHistoryWriterTest {
+
+    private DeviceHistoryIndex<DeviceNotification> historyIndex;
+    private DeviceHistoryWriter<DeviceNotification> writer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        historyIndex = mock(DeviceHistoryIndex.class);
+        CacheConfig cacheConfig = mock(CacheConfig.class);
+        when(cacheConfig.isWriteBehindEnabled()).thenReturn(true);
+        when(cacheConfig.getWriteBehindQueueSize()).thenReturn(16);
+        when(cacheConfig.getWriteBehindBatchSize()).thenReturn(16);
+        when(cacheConfig.getWriteBehindFlushIntervalMs()).thenReturn(1L);
+        writer = new DeviceHistoryWriter<>("test", historyIndex, cacheConfig);
+    }
+
+    @Test
+    public void shouldRetryFailedBatch() {
+        doThrow(new IllegalStateException("redis is down"))
+                .doThrow(new IllegalStateException("redis is down"))
+                .doNothing()
+                .when(historyIndex).store(anyCollection());
+
+        writer.store(notification(1));
+        writer.stop();
+
+        verify(historyIndex, times(3)).store(anyCollection());
+        assertEquals(2, writer.getRetriedCount());
+        assertEquals(0, writer.getFailedCount());
+        assertFalse(writer.getPending(notification(1).getCacheKey()).isPresent());
+    }
+
+    @Test
+    public void shouldCountLostEntitiesWhenRetriesAreExhausted() {
+        doThrow(new IllegalStateException("redis is down")).when(historyIndex).store(anyCollection());
+
+        writer.store(notification(1));
+        writer.stop();
+
+        assertEquals(1, writer.getFailedCount());
+        assertFalse(writer.getPending(notification(1).getCacheKey()).isPresent());
+    }
+
+    @Test
+    public void shouldWriteSynchronouslyAfterStop() {
+        doNothing().when(historyIndex).store(anyCollection());
+        writer.stop();
+
+        DeviceNotification notification = notification(1);
+        writer.store(notification);
+
+        verify(historyIndex).store(notification);
+        verify(historyIndex, never()).store(ArgumentMatchers.<Collection<DeviceNotification>>any());
+    }
+
+    private static DeviceNotification notification(long id) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setDeviceId("device");
+        return notification;
+    }
+}
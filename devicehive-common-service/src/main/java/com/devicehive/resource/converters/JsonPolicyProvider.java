@@ -25,7 +25,6 @@ import com.devicehive.json.GsonFactory;
 import com.devicehive.json.strategies.JsonPolicyApply;
 import com.devicehive.json.strategies.JsonPolicyDef;
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonIOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,11 +67,10 @@ public abstract class JsonPolicyProvider<T> implements MessageBodyWriter<T>, Mes
             throws WebApplicationException {
         try {
             Gson gson = createGson(annotations);
-            JsonElement jsonElement = gson.toJsonTree(entity);
             Writer writer = null;
             try {
                 writer = new OutputStreamWriter(entityStream, Charset.forName(UTF8));
-                gson.toJson(jsonElement, writer);
+                gson.toJson(entity, entity.getClass(), gson.newJsonWriter(writer));
             } finally {
                 if (writer != null) {
                     writer.flush();
@@ -0,0 +1,146 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.devicehive.shim.api.Action;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.client.RpcClient;
+import com.google.gson.Gson;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Single-flight layer in front of {@link RpcClient} for read requests.
+ * Concurrent calls with equal request bodies, principal included, share one request to the server and its response.
+ * Successful responses may be reused for a short TTL after they are received, zero TTL disables it.
+ * Responses are shared between callers, so they must not be modified.
+ */
+public class CoalescingRpcClient implements RpcClient, MeterBinder {
+
+    private static final Set<Action> READ_ACTIONS = EnumSet.of(
+            Action.LIST_DEVICE_REQUEST, Action.COUNT_DEVICE_REQUEST,
+            Action.LIST_NETWORK_REQUEST, Action.COUNT_NETWORK_REQUEST,
+            Action.LIST_DEVICE_TYPE_REQUEST, Action.COUNT_DEVICE_TYPE_REQUEST,
+            Action.LIST_USER_REQUEST, Action.COUNT_USER_REQUEST,
+            Action.LIST_PLUGIN_REQUEST, Action.COUNT_PLUGIN_REQUEST,
+            Action.NOTIFICATION_SEARCH_REQUEST, Action.COMMAND_SEARCH_REQUEST);
+
+    private final RpcClient delegate;
+    private final Gson gson;
+    private final long cacheTtlMillis;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CoalescingRpcClient(RpcClient delegate, Gson gson, long cacheTtlMillis) {
+        this.delegate = delegate;
+        this.gson = gson;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    @Override
+    public void call(Request request, Consumer<Response> callback) {
+        if (!request.isSingleReplyExpected() || !READ_ACTIONS.contains(request.getBody().getAction())) {
+            delegate.call(request, callback);
+            return;
+        }
+
+        final String key = request.getBody().getAction() + gson.toJson(request.getBody());
+        final Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(key, flight);
+        while (existing != null && existing.isExpired()) {
+            existing = flights.replace(key, existing, flight) ? null : flights.putIfAbsent(key, flight);
+        }
+        if (existing != null) {
+            coalesced.increment();
+            existing.response.thenAccept(callback);
+            return;
+        }
+
+        flight.response.thenAccept(callback);
+        flight.response.thenAccept(response -> {
+            if (response.isFailed() || cacheTtlMillis <= 0) {
+                flights.remove(key, flight);
+            } else {
+                flight.expiresAt = System.currentTimeMillis() + cacheTtlMillis;
+                CompletableFuture.delayedExecutor(cacheTtlMillis, TimeUnit.MILLISECONDS)
+                        .execute(() -> flights.remove(key, flight));
+            }
+        });
+        try {
+            delegate.call(request, flight.response::complete);
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            throw e;
+        }
+    }
+
+    @Override
+    public void push(Request request) {
+        delegate.push(request);
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate.isReady();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("devicehive.rpc.client.coalesced", this, CoalescingRpcClient::getCoalescedCount)
+                .register(registry);
+    }
+
+    private static final class Flight {
+
+        private final CompletableFuture<Response> response = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
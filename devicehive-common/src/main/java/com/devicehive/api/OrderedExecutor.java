@@ -0,0 +1,77 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed set of single-threaded lanes, tasks with the same key are hashed onto the same lane
+ * and therefore run one at a time in submission order.
+ */
+final class OrderedExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderedExecutor.class);
+
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+
+    OrderedExecutor(String name, int laneCount) {
+        this.name = name;
+        this.lanes = new ThreadPoolExecutor[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            final String threadName = name + "-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    void execute(String key, Runnable task) {
+        lanes[Math.floorMod(key.hashCode(), lanes.length)].execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Task failed on {}", Thread.currentThread().getName(), e);
+            }
+        });
+    }
+
+    void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < lanes.length; i++) {
+            final ThreadPoolExecutor lane = lanes[i];
+            final String laneTag = String.valueOf(i);
+            Gauge.builder("devicehive.rpc.callback.queue.depth", lane, executor -> executor.getQueue().size())
+                    .tag("executor", name).tag("lane", laneTag).register(registry);
+            FunctionCounter.builder("devicehive.rpc.callback.completed", lane, ThreadPoolExecutor::getCompletedTaskCount)
+                    .tag("executor", name).tag("lane", laneTag).register(registry);
+        }
+    }
+}
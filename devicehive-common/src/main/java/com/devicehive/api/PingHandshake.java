@@ -0,0 +1,116 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Ping handshake with RPC server, run in background so that client startup does not block on it.
+ * Pings are sent with exponentially growing interval until the first successful response, every ping has its own
+ * correlation id, so a late response to any of them completes the handshake.
+ */
+public class PingHandshake {
+
+    private static final Logger logger = LoggerFactory.getLogger(PingHandshake.class);
+
+    private static final long INITIAL_INTERVAL = 100;
+    private static final long MAX_INTERVAL = 3000;
+
+    private final String serverName;
+    private final RequestResponseMatcher requestResponseMatcher;
+    private final Consumer<Request> sender;
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    private int attempt;
+
+    /**
+     * @param sender sets reply topic of the ping request and sends it to the server
+     */
+    public PingHandshake(String serverName, RequestResponseMatcher requestResponseMatcher, Consumer<Request> sender) {
+        this.serverName = serverName;
+        this.requestResponseMatcher = requestResponseMatcher;
+        this.sender = sender;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ping-handshake");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<Void> start() {
+        scheduler.execute(() -> ping(INITIAL_INTERVAL));
+        return connected;
+    }
+
+    public boolean isConnected() {
+        return connected.isDone();
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        pending.forEach(requestResponseMatcher::removeRequestCallback);
+        pending.clear();
+    }
+
+    private void ping(long interval) {
+        if (connected.isDone()) {
+            return;
+        }
+        Request request = Request.newBuilder().build();
+        request.setType(RequestType.ping);
+        pending.add(request.getCorrelationId());
+        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), response -> {
+            if (!response.isFailed() && connected.complete(null)) {
+                logger.info("Successfully connected to {}", serverName);
+                stop();
+            }
+        });
+
+        logger.info("Ping {} attempt {}", serverName, ++attempt);
+        try {
+            sender.accept(request);
+        } catch (Exception e) {
+            logger.warn("Unable to send ping to {}", serverName, e);
+        }
+        if (!connected.isDone()) {
+            try {
+                scheduler.schedule(() -> ping(Math.min(interval * 2, MAX_INTERVAL)), interval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Ping handshake with {} stopped", serverName);
+            }
+        }
+    }
+}
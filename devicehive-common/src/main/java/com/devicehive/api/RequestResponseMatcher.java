@@ -20,43 +20,149 @@ package com.devicehive.api;
  * #L%
  */
 
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.SubscriptionRequest;
+import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
-public class RequestResponseMatcher {
+/**
+ * Matches responses to callbacks of requests by correlation id.
+ * Every callback has a deadline: single reply requests expire after request timeout, subscriptions expire
+ * after subscription timeout unless kept alive by {@link #heartbeat(Long)}. Expired callback is completed
+ * with failed response with {@link HttpServletResponse#SC_GATEWAY_TIMEOUT} code and evicted.
+ * Callbacks of subscriptions are run on ordered lanes hashed by subscription id, so events of a subscription are
+ * delivered one at a time in the order they were received, even if the subscription has several filters.
+ * Callbacks of single reply requests need no ordering and may block on other requests, so they are run on a shared
+ * pool of up to {@link #REQUEST_CALLBACK_THREADS} threads. When its queue is full, the callback is evicted and
+ * completed with failed response with {@link HttpServletResponse#SC_SERVICE_UNAVAILABLE} code on a separate
+ * fallback thread, so the thread which offers responses never runs callbacks. Every callback is rejected at most once,
+ * so the fallback queue is bounded by the number of pending callbacks.
+ */
+public class RequestResponseMatcher implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(RequestResponseMatcher.class);
 
-    private final ConcurrentHashMap<String, Consumer<Response>> correlationMap = new ConcurrentHashMap<>();
+    public static final long DEFAULT_REQUEST_TIMEOUT = 30 * 1000;
+    public static final long DEFAULT_SUBSCRIPTION_TIMEOUT = 10 * 60 * 1000;
+
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 512;
+    private static final int REQUEST_CALLBACK_THREADS = 64;
+    private static final int REQUEST_CALLBACK_QUEUE_SIZE = 4096;
+
+    private final ConcurrentHashMap<String, Callback> correlationMap = new ConcurrentHashMap<>();
     private final SetMultimap<Long, String> subscriptionMap = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+    private final TimingWheel timingWheel = new TimingWheel("request-deadlines", TICK_MILLIS, WHEEL_SIZE);
+    private final long requestTimeout;
+    private final long subscriptionTimeout;
+
+    private final OrderedExecutor subscriptionExecutor =
+            new OrderedExecutor("subscription-callback", Runtime.getRuntime().availableProcessors());
+    private final ThreadPoolExecutor requestExecutor;
+    private final ExecutorService rejectedExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "request-callback-rejected");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong rejectedCount = new AtomicLong();
 
-    //TODO [rafa] we do not really need FJP, but rather some other pool implementation. Though FJP looks good, it might be over kill for our use case.
-    private final ForkJoinPool executionPool = new ForkJoinPool();
+    public RequestResponseMatcher() {
+        this(DEFAULT_REQUEST_TIMEOUT, DEFAULT_SUBSCRIPTION_TIMEOUT);
+    }
+
+    public RequestResponseMatcher(long requestTimeout, long subscriptionTimeout) {
+        this(requestTimeout, subscriptionTimeout, REQUEST_CALLBACK_THREADS, REQUEST_CALLBACK_QUEUE_SIZE);
+    }
+
+    public RequestResponseMatcher(long requestTimeout, long subscriptionTimeout,
+                                  int requestCallbackThreads, int requestCallbackQueueSize) {
+        this.requestTimeout = requestTimeout;
+        this.subscriptionTimeout = subscriptionTimeout;
+        this.requestExecutor = new ThreadPoolExecutor(
+                requestCallbackThreads, requestCallbackThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(requestCallbackQueueSize), task -> {
+                    Thread thread = new Thread(task, "request-callback");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, executor) -> reject((RequestTask) task));
+        this.requestExecutor.allowCoreThreadTimeOut(true);
+    }
 
     public void addRequestCallback(String correlationId, Consumer<Response> callback) {
-        correlationMap.put(correlationId, callback);
+        addRequestCallback(correlationId, true, callback);
+    }
+
+    public void addRequestCallback(String correlationId, boolean singleReplyExpected, Consumer<Response> callback) {
+        addRequestCallback(correlationId, singleReplyExpected, correlationId, callback);
+    }
+
+    /**
+     * Adds callback of given request, events of subscription requests are ordered by subscription id.
+     */
+    public void addRequestCallback(Request request, Consumer<Response> callback) {
+        String lane = request.getCorrelationId();
+        if (request.getBody() instanceof SubscriptionRequest) {
+            Long subscriptionId = ((SubscriptionRequest) request.getBody()).getSubscriptionId();
+            if (subscriptionId != null) {
+                lane = subscriptionId.toString();
+            }
+        }
+        addRequestCallback(request.getCorrelationId(), request.isSingleReplyExpected(), lane, callback);
+    }
+
+    private void addRequestCallback(String correlationId, boolean singleReplyExpected, String lane,
+                                    Consumer<Response> callback) {
+        TimingWheel.Timeout timeout = timingWheel.schedule(singleReplyExpected ? requestTimeout : subscriptionTimeout,
+                () -> expire(correlationId));
+        Callback previous = correlationMap.put(correlationId, new Callback(callback, singleReplyExpected, lane, timeout));
+        if (previous != null) {
+            previous.timeout.cancel();
+        }
     }
 
     public void removeRequestCallback(String correlationId) {
-        correlationMap.remove(correlationId);
+        Callback callback = correlationMap.remove(correlationId);
+        if (callback != null) {
+            callback.timeout.cancel();
+        }
     }
 
     public void offerResponse(Response response) {
-        Consumer<Response> callback = correlationMap.get(response.getCorrelationId());
+        List<String> correlationIds = response.getCorrelationIds();
+        if (correlationIds != null) {
+            correlationIds.forEach(correlationId -> offerResponse(response.forCorrelationId(correlationId)));
+            return;
+        }
+        Callback callback = correlationMap.get(response.getCorrelationId());
         if (callback != null) {
-            executionPool.execute(() -> {
+            execute(response.getCorrelationId(), callback, () -> {
                 try {
-                    callback.accept(response);
+                    callback.consumer.accept(response);
                 } finally {
-                    if (response.isLast()) {
-                        correlationMap.remove(response.getCorrelationId());
+                    if (response.isLast() && correlationMap.remove(response.getCorrelationId(), callback)) {
+                        callback.timeout.cancel();
                     }
                 }
             });
@@ -69,7 +175,117 @@ public class RequestResponseMatcher {
        subscriptionMap.put(subscriptionId, correlationId);
     }
 
+    /**
+     * Removes subscription together with callbacks of its subscribe requests.
+     */
     public void removeSubscription(Long subscriptionId) {
-        subscriptionMap.removeAll(subscriptionId);
+        subscriptionMap.removeAll(subscriptionId).forEach(this::removeRequestCallback);
+    }
+
+    /**
+     * Keeps callbacks of given subscription alive for another subscription timeout.
+     */
+    public void heartbeat(Long subscriptionId) {
+        Set<String> correlationIds;
+        synchronized (subscriptionMap) {
+            correlationIds = new HashSet<>(subscriptionMap.get(subscriptionId));
+        }
+        correlationIds.forEach(correlationId -> {
+            Callback callback = correlationMap.get(correlationId);
+            if (callback != null) {
+                callback.timeout.extend(subscriptionTimeout);
+            }
+        });
+    }
+
+    private void expire(String correlationId) {
+        Callback callback = correlationMap.remove(correlationId);
+        if (callback == null) {
+            return;
+        }
+        synchronized (subscriptionMap) {
+            subscriptionMap.values().remove(correlationId);
+        }
+        logger.warn("Callback for {} expired without final response", correlationId);
+        Response response = Response.newBuilder()
+                .withBody(new ErrorResponse("Request timed out"))
+                .withCorrelationId(correlationId)
+                .buildFailed(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+        execute(correlationId, callback, () -> callback.consumer.accept(response));
+    }
+
+    private void execute(String correlationId, Callback callback, Runnable task) {
+        if (callback.singleReply) {
+            requestExecutor.execute(new RequestTask(correlationId, callback, task));
+        } else {
+            subscriptionExecutor.execute(callback.lane, task);
+        }
+    }
+
+    private void reject(RequestTask task) {
+        Callback callback = task.callback;
+        if (correlationMap.remove(task.correlationId, callback)) {
+            callback.timeout.cancel();
+        }
+        if (!callback.rejected.compareAndSet(false, true)) {
+            return;
+        }
+        rejectedCount.incrementAndGet();
+        logger.warn("Callback for {} rejected, {} callbacks are queued", task.correlationId,
+                requestExecutor.getQueue().size());
+        Response response = Response.newBuilder()
+                .withBody(new ErrorResponse("Too many pending responses"))
+                .withCorrelationId(task.correlationId)
+                .buildFailed(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        rejectedExecutor.execute(() -> callback.consumer.accept(response));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        subscriptionExecutor.bindTo(registry);
+        Gauge.builder("devicehive.rpc.request.callback.queue.depth", requestExecutor, executor -> executor.getQueue().size())
+                .register(registry);
+        Gauge.builder("devicehive.rpc.request.callback.active", requestExecutor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+        FunctionCounter.builder("devicehive.rpc.request.callback.completed", requestExecutor,
+                ThreadPoolExecutor::getCompletedTaskCount).register(registry);
+        FunctionCounter.builder("devicehive.rpc.request.callback.rejected", rejectedCount, AtomicLong::get)
+                .register(registry);
+    }
+
+    private static final class Callback {
+
+        private final Consumer<Response> consumer;
+        private final boolean singleReply;
+        private final String lane;
+        private final TimingWheel.Timeout timeout;
+        private final AtomicBoolean rejected = new AtomicBoolean();
+
+        private Callback(Consumer<Response> consumer, boolean singleReply, String lane, TimingWheel.Timeout timeout) {
+            this.consumer = consumer;
+            this.singleReply = singleReply;
+            this.lane = lane;
+            this.timeout = timeout;
+        }
+    }
+
+    private static final class RequestTask implements Runnable {
+
+        private final String correlationId;
+        private final Callback callback;
+        private final Runnable task;
+
+        private RequestTask(String correlationId, Callback callback, Runnable task) {
+            this.correlationId = correlationId;
+            this.callback = callback;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!callback.rejected.get()) {
+                task.run();
+            }
+        }
     }
 }
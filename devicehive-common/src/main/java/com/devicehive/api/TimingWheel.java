@@ -0,0 +1,156 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel of deadlines with fixed tick, driven by a single daemon thread.
+ * Scheduling, cancelling and extending a deadline are O(1) and lock-free: new timeouts are queued and put into buckets
+ * by the wheel thread, which owns the buckets, so a timeout is never put into a bucket which has already been passed.
+ * A timeout is put into the bucket of the first tick at or after its deadline. Extended deadline is not moved eagerly:
+ * when its bucket is reached, the timeout is found not to be due and is re-hashed into the bucket of its new deadline.
+ * Tasks are run on the wheel thread and are expected to be short.
+ */
+final class TimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMillis;
+    private final List<Set<Timeout>> buckets;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+
+    TimingWheel(String name, long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        final int size = Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1);
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    Timeout schedule(long delayMillis, Runnable task) {
+        final Timeout timeout = new Timeout(System.currentTimeMillis() + delayMillis, task);
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    void stop() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = System.currentTimeMillis() / tickMillis;
+        while (!Thread.currentThread().isInterrupted()) {
+            final long now = System.currentTimeMillis();
+            final long nowTick = now / tickMillis;
+            tick = Math.max(tick, nowTick - buckets.size());
+            while (tick < nowTick) {
+                tick++;
+                transferScheduled(tick);
+                expire(tick, now);
+            }
+            try {
+                Thread.sleep(tickMillis - System.currentTimeMillis() % tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void transferScheduled(long tick) {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (!timeout.cancelled) {
+                add(timeout, tick);
+            }
+        }
+    }
+
+    /**
+     * Puts timeout into the bucket of its deadline, but not earlier than given tick.
+     */
+    private void add(Timeout timeout, long tick) {
+        final long deadlineTick = (timeout.deadline + tickMillis - 1) / tickMillis;
+        buckets.get((int) (Math.max(deadlineTick, tick) & mask)).add(timeout);
+    }
+
+    private void expire(long tick, long now) {
+        final Set<Timeout> bucket = buckets.get((int) (tick & mask));
+        final List<Timeout> postponed = new ArrayList<>();
+        final Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            final Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.deadline <= now) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    logger.error("Timeout task failed", e);
+                }
+            } else {
+                iterator.remove();
+                postponed.add(timeout);
+            }
+        }
+        postponed.forEach(timeout -> add(timeout, tick + 1));
+    }
+
+    static final class Timeout {
+
+        private final Runnable task;
+        private volatile long deadline;
+        private volatile boolean cancelled;
+
+        private Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * Moves deadline to given delay from now.
+         */
+        void extend(long delayMillis) {
+            deadline = System.currentTimeMillis() + delayMillis;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -130,6 +130,7 @@ public class Messages {
     public static final String FORBIDDEN_INSERT_USER = BidBundle.get("FORBIDDEN_INSERT_USER");
     public static final String FORBIDDEN_INSERT_SPECIAL_NOTIFICATION = BidBundle.get("FORBIDDEN_INSERT_SPECIAL_NOTIFICATION");
     public static final String NOTIFICATION_INSERT_FAILED = BidBundle.get("NOTIFICATION_INSERT_FAILED");
+    public static final String NOTIFICATION_BATCH_TOO_LARGE = BidBundle.get("NOTIFICATION_BATCH_TOO_LARGE");
     public static final String PAYLOAD_NOT_FOUND = BidBundle.get("PAYLOAD_NOT_FOUND");
     public static final String SUBSCRIPTION_NOT_FOUND = BidBundle.get("SUBSCRIPTION_NOT_FOUND");
     public static final String DEVICE_ID_CONTAINS_INVALID_CHARACTERS = BidBundle.get("DEVICE_ID_CONTAINS_INVALID_CHARACTERS");
@@ -35,36 +35,35 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy;
 
 public class GsonFactory {
 
-    private static Map<Policy, Gson> cache = new ConcurrentHashMap<>();
+    private static final RuntimeTypeAdapterFactory<Body> bodyTypes = createBodyTypes();
+
     private static Gson gson = createGsonBuilder().create();
+    private static final Map<Policy, Gson> policyGsons = createPolicyGsons();
 
     public static Gson createGson() {
         return gson;
     }
 
     public static Gson createGson(Policy policy) {
-        Gson gson = cache.get(policy);
-        if (gson != null) {
-            return gson;
-        }
-        gson = createGsonBuilder()
-                .addDeserializationExclusionStrategy(new AnnotatedStrategy(policy))
-                .addSerializationExclusionStrategy(new AnnotatedStrategy(policy))
-                .create();
-        cache.put(policy, gson);
-        return gson;
+        return policyGsons.get(policy);
     }
 
+    /**
+     * Returns concrete body class registered for given action ordinal, or null if there is none.
+     */
+    public static Class<? extends Body> getBodyClass(int action) {
+        return bodyTypes.getSubtype(action);
+    }
 
-    private static GsonBuilder createGsonBuilder() {
-        RuntimeTypeAdapterFactory<Body> req = RuntimeTypeAdapterFactory.of(Body.class, "a")
+    private static RuntimeTypeAdapterFactory<Body> createBodyTypes() {
+        return RuntimeTypeAdapterFactory.of(Body.class, "a")
                 .registerSubtype(ErrorResponse.class, Action.ERROR_RESPONSE.ordinal())
 
                 .registerSubtype(CommandInsertRequest.class, Action.COMMAND_INSERT_REQUEST.ordinal())
@@ -84,6 +83,8 @@ public class GsonFactory {
                 .registerSubtype(NotificationSearchResponse.class, Action.NOTIFICATION_SEARCH_RESPONSE.ordinal())
                 .registerSubtype(NotificationInsertRequest.class, Action.NOTIFICATION_INSERT_REQUEST.ordinal())
                 .registerSubtype(NotificationInsertResponse.class, Action.NOTIFICATION_INSERT_RESPONSE.ordinal())
+                .registerSubtype(NotificationBatchInsertRequest.class, Action.NOTIFICATION_BATCH_INSERT_REQUEST.ordinal())
+                .registerSubtype(NotificationBatchInsertResponse.class, Action.NOTIFICATION_BATCH_INSERT_RESPONSE.ordinal())
                 .registerSubtype(NotificationSubscribeRequest.class, Action.NOTIFICATION_SUBSCRIBE_REQUEST.ordinal())
                 .registerSubtype(NotificationSubscribeResponse.class, Action.NOTIFICATION_SUBSCRIBE_RESPONSE.ordinal())
                 .registerSubtype(NotificationUnsubscribeRequest.class, Action.NOTIFICATION_UNSUBSCRIBE_REQUEST.ordinal())
@@ -123,7 +124,24 @@ public class GsonFactory {
                 .registerSubtype(DeviceDeleteResponse.class, Action.DEVICE_DELETE_RESPONSE.ordinal())
 
                 .registerSubtype(CountResponse.class, Action.COUNT_RESPONSE.ordinal());
+    }
 
+    /**
+     * One instance per policy, created upfront, so type adapters of each policy are built once and reused.
+     */
+    private static Map<Policy, Gson> createPolicyGsons() {
+        final Map<Policy, Gson> gsons = new EnumMap<>(Policy.class);
+        for (Policy policy : Policy.values()) {
+            final AnnotatedStrategy strategy = new AnnotatedStrategy(policy);
+            gsons.put(policy, createGsonBuilder()
+                    .addDeserializationExclusionStrategy(strategy)
+                    .addSerializationExclusionStrategy(strategy)
+                    .create());
+        }
+        return gsons;
+    }
+
+    private static GsonBuilder createGsonBuilder() {
         return new GsonBuilder()
                 .disableHtmlEscaping()
                 .serializeNulls()
@@ -132,7 +150,7 @@ public class GsonFactory {
                 .registerTypeAdapter(Date.class, new TimestampAdapter())
                 .registerTypeAdapter(UserRole.class, new UserRoleAdapter())
                 .registerTypeAdapter(UserStatus.class, new UserStatusAdapter())
-                .registerTypeAdapterFactory(req);
+                .registerTypeAdapterFactory(bodyTypes);
     }
 
 }
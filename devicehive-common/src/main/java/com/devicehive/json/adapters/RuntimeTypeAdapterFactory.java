@@ -42,7 +42,6 @@ import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.TypeAdapter;
@@ -193,6 +192,14 @@ public final class RuntimeTypeAdapterFactory<T> implements TypeAdapterFactory {
         return this;
     }
 
+    /**
+     * Returns subtype registered with given label, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends T> getSubtype(Integer label) {
+        return (Class<? extends T>) labelToSubtype.get(label);
+    }
+
     public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> type) {
         if (type.getRawType() != baseType) {
             return null;
@@ -235,8 +242,7 @@ public final class RuntimeTypeAdapterFactory<T> implements TypeAdapterFactory {
                     throw new JsonParseException("cannot serialize " + srcType.getName()
                             + "; did you forget to register a subtype?");
                 }
-                JsonObject jsonObject = delegate.toJsonTree(value).getAsJsonObject();
-                Streams.write(jsonObject, out);
+                delegate.write(out, value);
             }
         }.nullSafe();
     }
@@ -25,9 +25,34 @@ import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 
 import javax.validation.constraints.NotNull;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class AnnotatedStrategy implements ExclusionStrategy {
 
+    /**
+     * Policies of each declared field, resolved once per class and shared by strategies of all policies.
+     * Fields without policy annotation are absent and therefore skipped.
+     */
+    private static final ClassValue<Map<String, Set<JsonPolicyDef.Policy>>> fieldPolicies = new ClassValue<>() {
+        @Override
+        protected Map<String, Set<JsonPolicyDef.Policy>> computeValue(Class<?> type) {
+            final Map<String, Set<JsonPolicyDef.Policy>> policies = new HashMap<>();
+            for (Field field : type.getDeclaredFields()) {
+                final JsonPolicyDef policyAnnotation = field.getAnnotation(JsonPolicyDef.class);
+                if (policyAnnotation != null && policyAnnotation.value().length > 0) {
+                    policies.put(field.getName(), EnumSet.copyOf(Arrays.asList(policyAnnotation.value())));
+                }
+            }
+            return Collections.unmodifiableMap(policies);
+        }
+    };
+
     private final JsonPolicyDef.Policy policy;
 
     public AnnotatedStrategy(@NotNull JsonPolicyDef.Policy policy) {
@@ -36,18 +61,8 @@ public class AnnotatedStrategy implements ExclusionStrategy {
 
     @Override
     public boolean shouldSkipField(FieldAttributes f) {
-        JsonPolicyDef policyAnnotation = f.getAnnotation(JsonPolicyDef.class);
-        if (policyAnnotation == null) {
-            // no policy annotation - filed should be skipped
-            return true;
-        }
-        for (JsonPolicyDef.Policy definedPolicy : policyAnnotation.value()) {
-            if (definedPolicy == policy) {
-                // policy is found - field is to be included
-                return false;
-            }
-        }
-        return true;
+        final Set<JsonPolicyDef.Policy> policies = fieldPolicies.get(f.getDeclaringClass()).get(f.getName());
+        return policies == null || !policies.contains(policy);
     }
 
     @Override
@@ -22,9 +22,11 @@ package com.devicehive.model;
 
 import com.devicehive.configuration.Messages;
 import com.devicehive.exceptions.HiveException;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import javax.persistence.Embeddable;
+import java.io.StringReader;
 import java.util.Objects;
 
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
@@ -42,19 +44,43 @@ public class JsonStringWrapper implements HiveEntity {
         setJsonString(jsonString);
     }
 
+    /**
+     * Creates wrapper of string, which is already known to be JSON object, without validating it once again.
+     */
+    public static JsonStringWrapper fromValidJson(String jsonString) {
+        JsonStringWrapper wrapper = new JsonStringWrapper();
+        wrapper.jsonString = jsonString;
+        return wrapper;
+    }
+
     public String getJsonString() {
         return jsonString;
     }
 
     public void setJsonString(String jsonString) {
-        try {
-            new JsonParser().parse(jsonString).getAsJsonObject();
-        } catch (Exception e) {
+        if (!isJsonObject(jsonString)) {
             throw new HiveException(Messages.PARAMS_NOT_JSON, BAD_REQUEST.getStatusCode());
         }
         this.jsonString = jsonString;
     }
 
+    /**
+     * Checks that string is a single JSON object in one streaming pass, leniently as {@link com.google.gson.JsonParser} does.
+     */
+    private static boolean isJsonObject(String jsonString) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(jsonString));
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return false;
+            }
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
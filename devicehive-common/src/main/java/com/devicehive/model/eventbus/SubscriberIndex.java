@@ -0,0 +1,388 @@
+package com.devicehive.model.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Index of subscribers, structured as a tree with levels for networkId, deviceTypeId, deviceId, eventName and name.
+ * Absent filter component is stored in a dedicated wildcard branch of its level instead of a "*" key.
+ * Lookups are lock-free and do not allocate, modifications must be serialized by the caller.
+ * Reverse index from subscription id to its filters lets removal touch only affected buckets,
+ * branches left empty after removal are pruned.
+ */
+final class SubscriberIndex {
+
+    private final LongLevel<LongLevel<StringLevel<StringLevel<StringLevel<Bucket>>>>> networks = new LongLevel<>();
+
+    /**
+     * Filters every subscription id is registered with. Accessed by writers only.
+     */
+    private final Map<Long, Set<Filter>> filtersBySubscription = new HashMap<>();
+
+    void add(Filter filter, Subscriber subscriber) {
+        networks.getOrCreate(filter.getNetworkId(), LongLevel::new)
+                .getOrCreate(filter.getDeviceTypeId(), StringLevel::new)
+                .getOrCreate(filter.getDeviceId(), StringLevel::new)
+                .getOrCreate(filter.getEventName(), StringLevel::new)
+                .getOrCreate(filter.getName(), Bucket::new)
+                .add(subscriber);
+        filtersBySubscription.computeIfAbsent(subscriber.getId(), id -> new HashSet<>()).add(filter);
+    }
+
+    /**
+     * Visits subscribers of global, device ignored and device specific filters, matching given filter
+     * with the same eventName and name.
+     */
+    void forEach(Filter filter, Consumer<Subscriber> action) {
+        Long networkId = filter.getNetworkId();
+        Long deviceTypeId = filter.getDeviceTypeId();
+        String deviceId = filter.getDeviceId();
+        String eventName = filter.getEventName();
+        String name = filter.getName();
+
+        visit(find(null, null, null, eventName, name), action);
+        if (networkId != null || deviceTypeId != null) {
+            visit(find(networkId, deviceTypeId, null, eventName, name), action);
+        }
+        if (deviceId != null) {
+            visit(find(networkId, deviceTypeId, deviceId, eventName, name), action);
+        }
+    }
+
+    void remove(Long subscriptionId) {
+        Set<Filter> filters = filtersBySubscription.remove(subscriptionId);
+        if (filters != null) {
+            filters.forEach(filter -> remove(filter, subscriptionId));
+        }
+    }
+
+    void removeDevice(Long networkId, Long deviceTypeId, String deviceId) {
+        LongLevel<StringLevel<StringLevel<StringLevel<Bucket>>>> deviceTypes = networks.get(networkId);
+        StringLevel<StringLevel<StringLevel<Bucket>>> devices = deviceTypes != null ? deviceTypes.get(deviceTypeId) : null;
+        StringLevel<StringLevel<Bucket>> events = devices != null ? devices.get(deviceId) : null;
+        if (events == null) {
+            return;
+        }
+        events.forEach(names -> names.forEach(bucket -> {
+            for (Subscriber subscriber : bucket.subscribers) {
+                Set<Filter> filters = filtersBySubscription.get(subscriber.getId());
+                if (filters == null) {
+                    continue;
+                }
+                filters.removeIf(filter -> Objects.equals(filter.getNetworkId(), networkId)
+                        && Objects.equals(filter.getDeviceTypeId(), deviceTypeId)
+                        && Objects.equals(filter.getDeviceId(), deviceId));
+                if (filters.isEmpty()) {
+                    filtersBySubscription.remove(subscriber.getId());
+                }
+            }
+        }));
+        devices.remove(deviceId);
+        if (devices.isEmpty()) {
+            deviceTypes.remove(deviceTypeId);
+            if (deviceTypes.isEmpty()) {
+                networks.remove(networkId);
+            }
+        }
+    }
+
+    private void remove(Filter filter, Long subscriptionId) {
+        LongLevel<StringLevel<StringLevel<StringLevel<Bucket>>>> deviceTypes = networks.get(filter.getNetworkId());
+        StringLevel<StringLevel<StringLevel<Bucket>>> devices = deviceTypes != null ? deviceTypes.get(filter.getDeviceTypeId()) : null;
+        StringLevel<StringLevel<Bucket>> events = devices != null ? devices.get(filter.getDeviceId()) : null;
+        StringLevel<Bucket> names = events != null ? events.get(filter.getEventName()) : null;
+        Bucket bucket = names != null ? names.get(filter.getName()) : null;
+        if (bucket == null || !bucket.remove(subscriptionId) || !bucket.isEmpty()) {
+            return;
+        }
+        names.remove(filter.getName());
+        if (!names.isEmpty()) {
+            return;
+        }
+        events.remove(filter.getEventName());
+        if (!events.isEmpty()) {
+            return;
+        }
+        devices.remove(filter.getDeviceId());
+        if (!devices.isEmpty()) {
+            return;
+        }
+        deviceTypes.remove(filter.getDeviceTypeId());
+        if (deviceTypes.isEmpty()) {
+            networks.remove(filter.getNetworkId());
+        }
+    }
+
+    private Bucket find(Long networkId, Long deviceTypeId, String deviceId, String eventName, String name) {
+        LongLevel<StringLevel<StringLevel<StringLevel<Bucket>>>> deviceTypes = networks.get(networkId);
+        if (deviceTypes == null) {
+            return null;
+        }
+        StringLevel<StringLevel<StringLevel<Bucket>>> devices = deviceTypes.get(deviceTypeId);
+        if (devices == null) {
+            return null;
+        }
+        StringLevel<StringLevel<Bucket>> events = devices.get(deviceId);
+        if (events == null) {
+            return null;
+        }
+        StringLevel<Bucket> names = events.get(eventName);
+        return names != null ? names.get(name) : null;
+    }
+
+    private static void visit(Bucket bucket, Consumer<Subscriber> action) {
+        if (bucket != null) {
+            for (Subscriber subscriber : bucket.subscribers) {
+                action.accept(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Level keyed by primitive long, children are held in immutable open addressing table replaced on write.
+     */
+    private static final class LongLevel<V> {
+
+        private volatile V wildcard;
+        private volatile LongTable<V> table = LongTable.empty();
+
+        V get(Long key) {
+            return key == null ? wildcard : table.get(key);
+        }
+
+        V getOrCreate(Long key, Supplier<V> factory) {
+            V child = get(key);
+            if (child == null) {
+                child = factory.get();
+                if (key == null) {
+                    wildcard = child;
+                } else {
+                    table = table.with(key, child);
+                }
+            }
+            return child;
+        }
+
+        void remove(Long key) {
+            if (key == null) {
+                wildcard = null;
+            } else {
+                table = table.without(key);
+            }
+        }
+
+        boolean isEmpty() {
+            return wildcard == null && table.size == 0;
+        }
+
+        void forEach(Consumer<V> action) {
+            V child = wildcard;
+            if (child != null) {
+                action.accept(child);
+            }
+            table.forEach(action);
+        }
+    }
+
+    /**
+     * Level keyed by string.
+     */
+    private static final class StringLevel<V> {
+
+        private volatile V wildcard;
+        private final Map<String, V> children = new ConcurrentHashMap<>();
+
+        V get(String key) {
+            return key == null ? wildcard : children.get(key);
+        }
+
+        V getOrCreate(String key, Supplier<V> factory) {
+            V child = get(key);
+            if (child == null) {
+                child = factory.get();
+                if (key == null) {
+                    wildcard = child;
+                } else {
+                    children.put(key, child);
+                }
+            }
+            return child;
+        }
+
+        void remove(String key) {
+            if (key == null) {
+                wildcard = null;
+            } else {
+                children.remove(key);
+            }
+        }
+
+        boolean isEmpty() {
+            return wildcard == null && children.isEmpty();
+        }
+
+        void forEach(Consumer<V> action) {
+            V child = wildcard;
+            if (child != null) {
+                action.accept(child);
+            }
+            children.values().forEach(action);
+        }
+    }
+
+    /**
+     * Leaf of the index, subscribers array is copied on write.
+     */
+    private static final class Bucket {
+
+        private static final Subscriber[] EMPTY = new Subscriber[0];
+
+        private volatile Subscriber[] subscribers = EMPTY;
+
+        void add(Subscriber subscriber) {
+            Subscriber[] current = subscribers;
+            for (Subscriber existing : current) {
+                if (existing.equals(subscriber)) {
+                    return;
+                }
+            }
+            Subscriber[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscriber;
+            subscribers = updated;
+        }
+
+        boolean remove(Long subscriptionId) {
+            Subscriber[] current = subscribers;
+            for (int i = 0; i < current.length; i++) {
+                if (Objects.equals(current[i].getId(), subscriptionId)) {
+                    Subscriber[] updated = new Subscriber[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    subscribers = updated;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return subscribers.length == 0;
+        }
+    }
+
+    /**
+     * Immutable long-keyed hash table with linear probing.
+     */
+    private static final class LongTable<V> {
+
+        private static final LongTable<?> EMPTY = new LongTable<>(new long[1], new Object[1], 0);
+
+        private final long[] keys;
+        private final Object[] values;
+        private final int size;
+
+        private LongTable(long[] keys, Object[] values, int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> LongTable<V> empty() {
+            return (LongTable<V>) EMPTY;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key) {
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        LongTable<V> with(long key, V value) {
+            int capacity = Integer.highestOneBit((size + 1) * 4 - 1);
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null && keys[i] != key) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            insert(newKeys, newValues, key, value);
+            return new LongTable<>(newKeys, newValues, get(key) == null ? size + 1 : size);
+        }
+
+        LongTable<V> without(long key) {
+            if (get(key) == null) {
+                return this;
+            }
+            if (size == 1) {
+                return empty();
+            }
+            int capacity = Integer.highestOneBit((size - 1) * 4 - 1);
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null && keys[i] != key) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            return new LongTable<>(newKeys, newValues, size - 1);
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(Consumer<V> action) {
+            for (Object value : values) {
+                if (value != null) {
+                    action.accept((V) value);
+                }
+            }
+        }
+
+        private static void insert(long[] keys, Object[] values, long key, Object value) {
+            int mask = keys.length - 1;
+            int i = index(key, mask);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static int index(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
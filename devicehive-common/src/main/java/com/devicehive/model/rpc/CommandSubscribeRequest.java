@@ -27,7 +27,7 @@ import java.util.Date;
 import java.util.Objects;
 import java.util.Set;
 
-public class CommandSubscribeRequest extends Body {
+public class CommandSubscribeRequest extends Body implements SubscriptionRequest {
 
     private Long subscriptionId;
     private Filter filter;
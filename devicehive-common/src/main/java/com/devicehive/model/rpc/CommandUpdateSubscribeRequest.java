@@ -24,7 +24,7 @@ import com.devicehive.model.eventbus.Filter;
 import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Body;
 
-public class CommandUpdateSubscribeRequest extends Body {
+public class CommandUpdateSubscribeRequest extends Body implements SubscriptionRequest {
 
     private long commandId;
     private String deviceId;
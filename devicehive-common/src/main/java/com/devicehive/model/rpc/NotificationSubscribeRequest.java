@@ -28,7 +28,7 @@ import java.util.Date;
 import java.util.Objects;
 import java.util.Set;
 
-public class NotificationSubscribeRequest extends Body {
+public class NotificationSubscribeRequest extends Body implements SubscriptionRequest {
 
     private Long subscriptionId;
     private Filter filter;
@@ -0,0 +1,191 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.rpc.DeviceDeleteRequest;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.ListDeviceRequest;
+import com.devicehive.model.rpc.ListDeviceResponse;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.client.RpcClient;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CoalescingRpcClientTest {
+
+    private final RecordingRpcClient delegate = new RecordingRpcClient();
+
+    @Test
+    public void shouldShareInFlightRequest() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 0);
+        List<Response> received = new ArrayList<>();
+
+        client.call(listRequest(1L), received::add);
+        client.call(listRequest(1L), received::add);
+        assertEquals(1, delegate.callbacks.size());
+        assertEquals(0, received.size());
+
+        Response response = success();
+        delegate.reply(0, response);
+        assertEquals(2, received.size());
+        assertSame(response, received.get(0));
+        assertSame(response, received.get(1));
+        assertEquals(1, client.getCoalescedCount());
+    }
+
+    @Test
+    public void shouldNotShareRequestsWithDifferentBodies() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 0);
+
+        client.call(listRequest(1L), response -> {});
+        client.call(listRequest(2L), response -> {});
+
+        assertEquals(2, delegate.callbacks.size());
+        assertEquals(0, client.getCoalescedCount());
+    }
+
+    @Test
+    public void shouldPassThroughWriteAndMultiReplyRequests() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 60_000);
+
+        client.call(request(new DeviceDeleteRequest(null), true), response -> {});
+        client.call(request(new DeviceDeleteRequest(null), true), response -> {});
+        client.call(request(new ListDeviceRequest(1L), false), response -> {});
+        client.call(request(new ListDeviceRequest(1L), false), response -> {});
+
+        assertEquals(4, delegate.callbacks.size());
+        assertEquals(0, client.getCoalescedCount());
+    }
+
+    @Test
+    public void shouldSendAgainAfterCompletionWithoutTtl() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 0);
+
+        client.call(listRequest(1L), response -> {});
+        delegate.reply(0, success());
+        client.call(listRequest(1L), response -> {});
+
+        assertEquals(2, delegate.callbacks.size());
+    }
+
+    @Test
+    public void shouldReuseSuccessfulResponseWithinTtl() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 60_000);
+        List<Response> received = new ArrayList<>();
+
+        client.call(listRequest(1L), received::add);
+        Response response = success();
+        delegate.reply(0, response);
+        client.call(listRequest(1L), received::add);
+
+        assertEquals(1, delegate.callbacks.size());
+        assertEquals(2, received.size());
+        assertSame(response, received.get(1));
+    }
+
+    @Test
+    public void shouldSendAgainAfterTtlExpires() throws InterruptedException {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 20);
+
+        client.call(listRequest(1L), response -> {});
+        delegate.reply(0, success());
+        Thread.sleep(50);
+        client.call(listRequest(1L), response -> {});
+
+        assertEquals(2, delegate.callbacks.size());
+    }
+
+    @Test
+    public void shouldNotCacheFailedResponse() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 60_000);
+        List<Response> received = new ArrayList<>();
+
+        client.call(listRequest(1L), received::add);
+        delegate.reply(0, Response.newBuilder().withBody(new ErrorResponse("failed")).buildFailed(500));
+        client.call(listRequest(1L), received::add);
+
+        assertEquals(2, delegate.callbacks.size());
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void shouldForgetRequestWhenDelegateThrows() {
+        CoalescingRpcClient client = new CoalescingRpcClient(delegate, new Gson(), 60_000);
+        delegate.failure = new IllegalStateException("not ready");
+
+        assertThrows(IllegalStateException.class, () -> client.call(listRequest(1L), response -> {}));
+
+        delegate.failure = null;
+        client.call(listRequest(1L), response -> {});
+        assertEquals(1, delegate.callbacks.size());
+        assertEquals(0, client.getCoalescedCount());
+    }
+
+    private static Request listRequest(Long networkId) {
+        return request(new ListDeviceRequest(networkId), true);
+    }
+
+    private static Request request(Body body, boolean singleReply) {
+        return Request.newBuilder()
+                .withBody(body)
+                .withSingleReply(singleReply)
+                .build();
+    }
+
+    private static Response success() {
+        return Response.newBuilder()
+                .withBody(new ListDeviceResponse(Collections.emptyList()))
+                .buildSuccess();
+    }
+
+    private static class RecordingRpcClient implements RpcClient {
+
+        private final List<Consumer<Response>> callbacks = new ArrayList<>();
+        private RuntimeException failure;
+
+        void reply(int index, Response response) {
+            callbacks.get(index).accept(response);
+        }
+
+        @Override
+        public void call(Request request, Consumer<Response> callback) {
+            if (failure != null) {
+                throw failure;
+            }
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void push(Request request) {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.shim.api.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestResponseMatcherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void shouldFailRejectedCallbackWhenPoolIsSaturated() throws Exception {
+        RequestResponseMatcher matcher = new RequestResponseMatcher(60000, 60000, 1, 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        matcher.addRequestCallback("blocking", response -> {
+            blocked.countDown();
+            await(release);
+        });
+        List<Response> queued = new CopyOnWriteArrayList<>();
+        matcher.addRequestCallback("queued", queued::add);
+        List<Response> rejected = new CopyOnWriteArrayList<>();
+        List<Thread> rejectedThreads = new CopyOnWriteArrayList<>();
+        CountDownLatch rejectedLatch = new CountDownLatch(1);
+        matcher.addRequestCallback("rejected", response -> {
+            rejected.add(response);
+            rejectedThreads.add(Thread.currentThread());
+            rejectedLatch.countDown();
+        });
+
+        matcher.offerResponse(success("blocking"));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        matcher.offerResponse(success("queued"));
+        matcher.offerResponse(success("rejected"));
+
+        assertTrue(rejectedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).isFailed());
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rejected.get(0).getErrorCode());
+        assertEquals("rejected", rejected.get(0).getCorrelationId());
+        assertNotEquals(Thread.currentThread(), rejectedThreads.get(0));
+
+        matcher.offerResponse(success("rejected"));
+        release.countDown();
+        waitFor(() -> queued.size() == 1);
+        assertFalse(queued.get(0).isFailed());
+        assertEquals(1, rejected.size());
+    }
+
+    @Test
+    public void shouldNeverRunCallbacksOnDeliveringThread() throws Exception {
+        RequestResponseMatcher matcher = new RequestResponseMatcher(60000, 60000, 2, 2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        matcher.bindTo(registry);
+        int count = 100;
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            matcher.addRequestCallback("request-" + i, response -> {
+                threads.add(Thread.currentThread());
+                if (!response.isFailed()) {
+                    await(release);
+                }
+                done.countDown();
+            });
+        }
+
+        for (int i = 0; i < count; i++) {
+            matcher.offerResponse(success("request-" + i));
+        }
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(count, threads.size());
+        assertTrue(threads.stream().noneMatch(thread -> thread == Thread.currentThread()));
+        assertEquals(count - 4, registry.get("devicehive.rpc.request.callback.rejected").functionCounter().count());
+    }
+
+    private static Response success(String correlationId) {
+        return Response.newBuilder()
+                .withBody(new ErrorResponse("ok"))
+                .withCorrelationId(correlationId)
+                .buildSuccess();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
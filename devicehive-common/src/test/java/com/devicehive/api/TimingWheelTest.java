@@ -0,0 +1,135 @@
+package com.devicehive.api;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Wheel of 64 ticks of 10 ms makes a rotation of 640 ms, timeouts put into a passed bucket would be that late.
+ */
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final long MAX_LATENESS = 300;
+
+    private final TimingWheel wheel = new TimingWheel("test-wheel", TICK, 64);
+
+    @AfterEach
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void shouldRunTaskAfterDelay() throws InterruptedException {
+        assertLateness(50, awaitRun(50));
+    }
+
+    @Test
+    public void shouldRunTaskBeyondWheelSpan() throws InterruptedException {
+        assertLateness(1000, awaitRun(1000));
+    }
+
+    @Test
+    public void shouldNotRunCancelledTask() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(30, latch::countDown).cancel();
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldPostponeExtendedTask() throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final AtomicLong ranAt = new AtomicLong();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final TimingWheel.Timeout timeout = wheel.schedule(100, () -> {
+            ranAt.set(System.currentTimeMillis());
+            latch.countDown();
+        });
+        Thread.sleep(50);
+        timeout.extend(200);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertLateness(250, ranAt.get() - start);
+    }
+
+    @Test
+    public void shouldRunConcurrentlyScheduledTasksInTime() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 200;
+        final CountDownLatch latch = new CountDownLatch(threads * perThread);
+        final ConcurrentLinkedQueue<Long> lateness = new ConcurrentLinkedQueue<>();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    final long delay = random.nextInt(40);
+                    final long deadline = System.currentTimeMillis() + delay;
+                    wheel.schedule(delay, () -> {
+                        lateness.add(System.currentTimeMillis() - deadline);
+                        latch.countDown();
+                    });
+                    if (i % 20 == 0) {
+                        sleep(random.nextInt(5));
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(threads * perThread, lateness.size());
+        lateness.forEach(late -> assertTrue(late >= 0 && late < MAX_LATENESS, "Task was late by " + late + " ms"));
+    }
+
+    private long awaitRun(long delay) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final AtomicLong ranAt = new AtomicLong();
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(delay, () -> {
+            ranAt.set(System.currentTimeMillis());
+            latch.countDown();
+        });
+        assertTrue(latch.await(delay + 2000, TimeUnit.MILLISECONDS));
+        return ranAt.get() - start;
+    }
+
+    private static void assertLateness(long delay, long elapsed) {
+        assertTrue(elapsed >= delay && elapsed < delay + MAX_LATENESS, "Task ran after " + elapsed + " ms");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.devicehive.json.adapters;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.JsonStringWrapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.Streams;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Compares streaming adapter with the tree based one it replaced.
+ */
+public class JsonStringWrapperAdapterFactoryTest {
+
+    private static final List<String> OBJECTS = Arrays.asList(
+            "{}",
+            "{\"a\":{\"b\":[1,2,{\"c\":null}],\"d\":[]},\"e\":[[],[{}]]}",
+            "{\"n\":null,\"t\":true,\"f\":false}",
+            "{\"long\":9007199254740993,\"big\":123456789012345678901234567890,\"scale\":1.50,\"exp\":1e3,\"neg\":-0}",
+            "{\"s\":\"quote\\\" backslash\\\\ slash/ newline\\n tab\\t control\\u0001 unicode \\u00e9\\u2028 <b>&'=\"}",
+            "{\"escaped \\\"name\\\"\":1}");
+
+    private final Gson gson = new GsonBuilder()
+            .disableHtmlEscaping()
+            .serializeNulls()
+            .registerTypeAdapterFactory(new JsonStringWrapperAdapterFactory())
+            .create();
+    private final Gson baseline = new GsonBuilder()
+            .disableHtmlEscaping()
+            .serializeNulls()
+            .registerTypeAdapterFactory(new BaselineAdapterFactory())
+            .create();
+
+    @Test
+    public void shouldReadAsBaseline() {
+        for (String json : OBJECTS) {
+            String holder = "{\"parameters\":" + json + "}";
+            assertEquals(baseline.fromJson(holder, Holder.class).parameters.getJsonString(),
+                    gson.fromJson(holder, Holder.class).parameters.getJsonString(), json);
+        }
+    }
+
+    @Test
+    public void shouldWriteAsBaseline() {
+        for (String json : OBJECTS) {
+            Holder holder = new Holder(new JsonStringWrapper(json));
+            assertEquals(baseline.toJson(holder), gson.toJson(holder), json);
+        }
+    }
+
+    @Test
+    public void shouldRoundTripWithoutChangingValues() {
+        for (String json : OBJECTS) {
+            String written = gson.toJson(new JsonStringWrapper(json));
+            assertEquals(JsonParser.parseString(json), JsonParser.parseString(written), json);
+            assertEquals(written, gson.toJson(gson.fromJson(written, JsonStringWrapper.class)), json);
+        }
+    }
+
+    @Test
+    public void shouldKeepNumbersAsWritten() {
+        String json = "{\"long\":9007199254740993,\"scale\":1.50,\"exp\":1e3}";
+
+        assertEquals(json, gson.fromJson(json, JsonStringWrapper.class).getJsonString());
+        assertEquals(json, gson.toJson(new JsonStringWrapper(json)));
+    }
+
+    @Test
+    public void shouldWriteWrapperOfNonObjectAsBaseline() {
+        for (String json : Arrays.asList("[1,{\"a\":null},[]]", "5", "1.50", "\"te\\\"xt\"", "true", "null")) {
+            Holder holder = new Holder(JsonStringWrapper.fromValidJson(json));
+            assertEquals(baseline.toJson(holder), gson.toJson(holder), json);
+        }
+    }
+
+    @Test
+    public void shouldReadAndWriteNull() {
+        assertNull(gson.fromJson("{\"parameters\":null}", Holder.class).parameters);
+        assertEquals(baseline.toJson(new Holder(null)), gson.toJson(new Holder(null)));
+    }
+
+    @Test
+    public void shouldMatchBaselineWithinGsonFactory() {
+        Gson factoryGson = GsonFactory.createGson();
+        for (String json : OBJECTS) {
+            Holder holder = new Holder(new JsonStringWrapper(json));
+            assertEquals(baseline.toJson(holder), factoryGson.toJson(holder), json);
+        }
+    }
+
+    private static class Holder {
+
+        private JsonStringWrapper parameters;
+
+        Holder(JsonStringWrapper parameters) {
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Adapter as it was before streaming, building a tree on both read and write.
+     */
+    private static class BaselineAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!JsonStringWrapper.class.isAssignableFrom(type.getRawType())) {
+                return null;
+            }
+            return (TypeAdapter<T>) new TypeAdapter<JsonStringWrapper>() {
+                @Override
+                public void write(JsonWriter out, JsonStringWrapper value) throws IOException {
+                    if (value == null && out.getSerializeNulls()) {
+                        out.nullValue();
+                    } else if (value != null) {
+                        Streams.write(JsonParser.parseString(value.getJsonString()), out);
+                    }
+                }
+
+                @Override
+                public JsonStringWrapper read(JsonReader in) throws IOException {
+                    JsonElement jsonElement = Streams.parse(in);
+                    return !JsonNull.INSTANCE.equals(jsonElement)
+                            ? new JsonStringWrapper(jsonElement.toString())
+                            : null;
+                }
+            };
+        }
+    }
+}
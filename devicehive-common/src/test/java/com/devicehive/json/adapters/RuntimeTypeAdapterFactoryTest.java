@@ -0,0 +1,117 @@
+package com.devicehive.json.adapters;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.ListDeviceResponse;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.model.rpc.NotificationSearchResponse;
+import com.devicehive.shim.api.Body;
+import com.devicehive.vo.DeviceVO;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Compares streamed body serialization with the tree based one it replaced.
+ */
+public class RuntimeTypeAdapterFactoryTest {
+
+    private final Gson gson = GsonFactory.createGson();
+
+    @Test
+    public void shouldWriteBodiesAsBaseline() {
+        for (Body body : bodies()) {
+            assertEquals(baseline(body), gson.toJson(body, Body.class), body.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void shouldRoundTripBodies() {
+        for (Body body : bodies()) {
+            String json = gson.toJson(body, Body.class);
+
+            Body read = gson.fromJson(json, Body.class);
+
+            assertSame(body.getClass(), read.getClass());
+            assertEquals(json, gson.toJson(read, Body.class), body.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    public void shouldKeepLongsAndNumbersAsWritten() {
+        DeviceNotification notification = notification(9007199254740993L,
+                "{\"long\":9007199254740993,\"scale\":1.50,\"exp\":1e3}");
+        String json = gson.toJson(new NotificationInsertRequest(notification), Body.class);
+
+        NotificationInsertRequest read = (NotificationInsertRequest) gson.fromJson(json, Body.class);
+
+        assertEquals(9007199254740993L, read.getDeviceNotification().getId().longValue());
+        assertEquals("{\"long\":9007199254740993,\"scale\":1.50,\"exp\":1e3}",
+                read.getDeviceNotification().getParameters().getJsonString());
+    }
+
+    private String baseline(Body body) {
+        return gson.toJson(gson.toJsonTree(body, body.getClass()));
+    }
+
+    private static List<Body> bodies() {
+        DeviceVO device = new DeviceVO();
+        device.setId(1L);
+        device.setDeviceId("device");
+        device.setName("na\"me\\ <b>&'\n");
+        device.setData(new JsonStringWrapper("{\"a\":{\"b\":[1,[],{\"c\":null}]},\"d\":\"\\u2028\\t\"}"));
+        device.setBlocked(true);
+
+        DeviceNotification empty = new DeviceNotification();
+        empty.setId(2L);
+        empty.setDeviceId("device");
+
+        return Arrays.asList(
+                new NotificationInsertRequest(notification(1L, "{\"n\":null,\"list\":[1,2.0,-0,true]}")),
+                new NotificationInsertRequest(empty),
+                new NotificationSearchResponse(Arrays.asList(notification(3L, "{}"), empty)),
+                new ListDeviceResponse(Arrays.asList(device, new DeviceVO())),
+                new ListDeviceResponse(Collections.emptyList()),
+                new ErrorResponse("error \"quoted\" \\ message"));
+    }
+
+    private static DeviceNotification notification(long id, String parameters) {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(id);
+        notification.setTimestamp(new Date(1500000000123L));
+        notification.setDeviceId("device");
+        notification.setNotification("temperature");
+        notification.setNetworkId(5L);
+        notification.setParameters(new JsonStringWrapper(parameters));
+        return notification;
+    }
+}
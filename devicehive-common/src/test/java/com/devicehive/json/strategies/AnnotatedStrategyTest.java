@@ -0,0 +1,150 @@
+package com.devicehive.json.strategies;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.enums.UserRole;
+import com.devicehive.model.enums.UserStatus;
+import com.devicehive.vo.DeviceVO;
+import com.devicehive.vo.UserVO;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.SerializedName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.DEVICE_PUBLISHED;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.DEVICE_SUBMITTED;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NETWORK_PUBLISHED;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.USER_PUBLISHED;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.USER_SUBMITTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AnnotatedStrategyTest {
+
+    @Test
+    public void shouldSerializeDeviceFieldsOfPolicy() {
+        DeviceVO device = device();
+
+        assertEquals(fields("id", "name", "data", "networkId", "deviceTypeId", "isBlocked"),
+                serializedFields(device, DEVICE_PUBLISHED));
+        assertEquals(fields("name", "data", "networkId", "deviceTypeId", "isBlocked"),
+                serializedFields(device, DEVICE_SUBMITTED));
+        assertEquals(fields("id", "name", "data", "isBlocked"),
+                serializedFields(device, NETWORK_PUBLISHED));
+        assertEquals(fields(), serializedFields(device, USER_PUBLISHED));
+    }
+
+    @Test
+    public void shouldSerializeUserFieldsOfPolicy() {
+        UserVO user = user();
+
+        assertEquals(fields("id", "login", "role", "status", "lastLogin", "data", "introReviewed",
+                "allDeviceTypesAvailable"), serializedFields(user, USER_PUBLISHED));
+        assertEquals(fields("id", "lastLogin", "data", "introReviewed", "allDeviceTypesAvailable"),
+                serializedFields(user, USER_SUBMITTED));
+        assertEquals(fields(), serializedFields(user, DEVICE_PUBLISHED));
+    }
+
+    @Test
+    public void shouldNotLeakDecisionsBetweenPolicies() {
+        List<Object> entities = Arrays.asList(device(), user());
+        List<JsonPolicyDef.Policy> policies = new ArrayList<>(Arrays.asList(JsonPolicyDef.Policy.values()));
+
+        for (int round = 0; round < 2; round++) {
+            for (JsonPolicyDef.Policy policy : policies) {
+                Gson gson = new GsonBuilder()
+                        .serializeNulls()
+                        .setExclusionStrategies(new AnnotatedStrategy(policy))
+                        .create();
+                for (Object entity : entities) {
+                    assertEquals(annotatedFields(entity.getClass(), policy),
+                            JsonParser.parseString(gson.toJson(entity)).getAsJsonObject().keySet(),
+                            policy + " " + entity.getClass().getSimpleName());
+                    assertEquals(annotatedFields(entity.getClass(), policy), serializedFields(entity, policy),
+                            policy + " " + entity.getClass().getSimpleName());
+                }
+            }
+            Collections.reverse(policies);
+        }
+    }
+
+    private static Set<String> serializedFields(Object entity, JsonPolicyDef.Policy policy) {
+        return JsonParser.parseString(GsonFactory.createGson(policy).toJson(entity)).getAsJsonObject().keySet();
+    }
+
+    /**
+     * Serialized names of fields annotated with given policy, resolved without the strategy cache.
+     */
+    private static Set<String> annotatedFields(Class<?> type, JsonPolicyDef.Policy policy) {
+        Set<String> names = new HashSet<>();
+        for (Field field : type.getDeclaredFields()) {
+            JsonPolicyDef annotation = field.getAnnotation(JsonPolicyDef.class);
+            if (annotation != null && Arrays.asList(annotation.value()).contains(policy)) {
+                SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                names.add(serializedName != null ? serializedName.value() : field.getName());
+            }
+        }
+        return names;
+    }
+
+    private static Set<String> fields(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static DeviceVO device() {
+        DeviceVO device = new DeviceVO();
+        device.setId(1L);
+        device.setDeviceId("device");
+        device.setName("name");
+        device.setData(new JsonStringWrapper("{\"a\":1}"));
+        device.setNetworkId(2L);
+        device.setDeviceTypeId(3L);
+        device.setBlocked(false);
+        return device;
+    }
+
+    private static UserVO user() {
+        UserVO user = new UserVO();
+        user.setId(1L);
+        user.setLogin("login");
+        user.setPasswordHash("hash");
+        user.setPasswordSalt("salt");
+        user.setLoginAttempts(0);
+        user.setRole(UserRole.ADMIN);
+        user.setStatus(UserStatus.ACTIVE);
+        user.setLastLogin(new Date(0));
+        user.setData(new JsonStringWrapper("{\"b\":2}"));
+        user.setIntroReviewed(true);
+        user.setAllDeviceTypesAvailable(false);
+        return user;
+    }
+}
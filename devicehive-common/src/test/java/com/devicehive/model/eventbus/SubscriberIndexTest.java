@@ -0,0 +1,143 @@
+package com.devicehive.model.eventbus;
+
+/*
+ * #%L
+ * DeviceHive Common Module
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubscriberIndexTest {
+
+    private static final String EVENT = "notification/insert";
+
+    private final SubscriberIndex index = new SubscriberIndex();
+
+    @Test
+    public void shouldMatchGlobalNetworkAndDeviceFilters() {
+        index.add(new Filter(null, null, null, EVENT, null), subscriber(1));
+        index.add(new Filter(1L, null, null, EVENT, null), subscriber(2));
+        index.add(new Filter(1L, null, "device", EVENT, null), subscriber(3));
+        index.add(new Filter(1L, null, "other", EVENT, null), subscriber(4));
+        index.add(new Filter(2L, null, null, EVENT, null), subscriber(5));
+        index.add(new Filter(1L, null, "device", "command/insert", null), subscriber(6));
+
+        assertEquals(ids(1, 2, 3), find(new Filter(1L, null, "device", EVENT, null)));
+        assertEquals(ids(1, 5), find(new Filter(2L, null, "device", EVENT, null)));
+        assertEquals(ids(1), find(new Filter(3L, null, "device", EVENT, null)));
+    }
+
+    @Test
+    public void shouldMatchByName() {
+        index.add(new Filter(1L, null, "device", EVENT, "temperature"), subscriber(1));
+        index.add(new Filter(1L, null, "device", EVENT, null), subscriber(2));
+
+        assertEquals(ids(1), find(new Filter(1L, null, "device", EVENT, "temperature")));
+        assertEquals(ids(2), find(new Filter(1L, null, "device", EVENT, null)));
+    }
+
+    @Test
+    public void shouldRemoveSubscriptionFromAllItsFilters() {
+        index.add(new Filter(null, null, null, EVENT, null), subscriber(1));
+        index.add(new Filter(1L, null, "device", EVENT, null), subscriber(1));
+        index.add(new Filter(1L, null, "device", EVENT, null), subscriber(2));
+
+        index.remove(1L);
+
+        assertEquals(ids(2), find(new Filter(1L, null, "device", EVENT, null)));
+        index.remove(2L);
+        assertTrue(find(new Filter(1L, null, "device", EVENT, null)).isEmpty());
+
+        index.add(new Filter(1L, null, "device", EVENT, null), subscriber(3));
+        assertEquals(ids(3), find(new Filter(1L, null, "device", EVENT, null)));
+    }
+
+    @Test
+    public void shouldFindEveryNetworkAfterGrowingAndShrinkingTable() {
+        LongStream.range(0, 1000).forEach(id -> index.add(new Filter(id, null, null, EVENT, null), subscriber(id)));
+        LongStream.range(0, 1000).filter(id -> id % 3 == 0).forEach(index::remove);
+
+        for (long id = 0; id < 1000; id++) {
+            assertEquals(id % 3 == 0 ? ids() : ids(id), find(new Filter(id, null, null, EVENT, null)), "network " + id);
+        }
+    }
+
+    @Test
+    public void shouldMatchNegativeAndZeroKeys() {
+        index.add(new Filter(0L, null, null, EVENT, null), subscriber(1));
+        index.add(new Filter(-1L, null, null, EVENT, null), subscriber(2));
+        index.add(new Filter(Long.MIN_VALUE, null, null, EVENT, null), subscriber(3));
+
+        assertEquals(ids(1), find(new Filter(0L, null, null, EVENT, null)));
+        assertEquals(ids(2), find(new Filter(-1L, null, null, EVENT, null)));
+        assertEquals(ids(3), find(new Filter(Long.MIN_VALUE, null, null, EVENT, null)));
+
+        index.remove(2L);
+        assertEquals(ids(1), find(new Filter(0L, null, null, EVENT, null)));
+        assertEquals(ids(3), find(new Filter(Long.MIN_VALUE, null, null, EVENT, null)));
+    }
+
+    @Test
+    public void shouldMatchDeviceTypeWildcardSeparately() {
+        index.add(new Filter(null, 7L, null, EVENT, null), subscriber(1));
+        index.add(new Filter(null, null, null, EVENT, null), subscriber(2));
+
+        assertEquals(ids(1, 2), find(new Filter(null, 7L, "device", EVENT, null)));
+        assertEquals(ids(2), find(new Filter(null, 8L, "device", EVENT, null)));
+    }
+
+    @Test
+    public void shouldRemoveDeviceFiltersOnly() {
+        index.add(new Filter(1L, 2L, "device", EVENT, null), subscriber(1));
+        index.add(new Filter(1L, 2L, "device", "command/insert", "name"), subscriber(1));
+        index.add(new Filter(1L, 2L, null, EVENT, null), subscriber(1));
+        index.add(new Filter(1L, 2L, "other", EVENT, null), subscriber(2));
+
+        index.removeDevice(1L, 2L, "device");
+
+        assertEquals(ids(1), find(new Filter(1L, 2L, "device", EVENT, null)));
+        assertTrue(find(new Filter(1L, 2L, "device", "command/insert", "name")).isEmpty());
+        assertEquals(ids(1, 2), find(new Filter(1L, 2L, "other", EVENT, null)));
+
+        index.remove(1L);
+        assertTrue(find(new Filter(1L, 2L, "device", EVENT, null)).isEmpty());
+        assertEquals(ids(2), find(new Filter(1L, 2L, "other", EVENT, null)));
+    }
+
+    private Set<Long> find(Filter filter) {
+        Set<Long> found = new HashSet<>();
+        index.forEach(filter, subscriber -> found.add(subscriber.getId()));
+        return found;
+    }
+
+    private static Subscriber subscriber(long id) {
+        return new Subscriber(id, "reply", "correlation" + id);
+    }
+
+    private static Set<Long> ids(long... ids) {
+        return LongStream.of(ids).boxed().collect(Collectors.toSet());
+    }
+}
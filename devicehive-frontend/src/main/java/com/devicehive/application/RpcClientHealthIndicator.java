@@ -0,0 +1,48 @@
+package com.devicehive.application;
+
+/*
+ * #%L
+ * DeviceHive Java Server Common business logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import com.devicehive.shim.api.client.RpcClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports RPC client as out of service until its handshake with the backend is completed.
+ * The application serves endpoints which do not need RPC meanwhile.
+ */
+@Component
+public class RpcClientHealthIndicator implements HealthIndicator {
+
+    private final RpcClient rpcClient;
+
+    @Autowired
+    public RpcClientHealthIndicator(RpcClient rpcClient) {
+        this.rpcClient = rpcClient;
+    }
+
+    @Override
+    public Health health() {
+        return rpcClient.isReady() ? Health.up().build() : Health.outOfService().build();
+    }
+}
@@ -22,6 +22,7 @@ package com.devicehive.messages.handler;
 
 import com.devicehive.websockets.converters.JsonMessageBuilder;
 import com.devicehive.websockets.converters.WebSocketResponse;
+import com.devicehive.websockets.util.QueuedWebSocketSession;
 import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,6 +50,17 @@ public class WebSocketClientHandler {
         }
     }
 
+    /**
+     * Sends message of a subscription to given device, which may be dropped if the client does not keep up.
+     */
+    public void sendSubscriptionMessage(JsonObject json, String deviceId, WebSocketSession session) {
+        if (!(session instanceof QueuedWebSocketSession)) {
+            sendMessage(json, session);
+            return;
+        }
+        ((QueuedWebSocketSession) session).sendDroppableMessage(new TextMessage(json.toString()), deviceId);
+    }
+
     public void sendMessage(JsonObject request, JsonObject response, WebSocketSession session) {
         JsonObject message = new JsonMessageBuilder()
                 .addAction(request.get(ACTION))
@@ -34,6 +34,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
+import java.util.List;
 
 import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_FROM_DEVICE;
 
@@ -269,4 +270,36 @@ public interface DeviceNotificationResource {
             @JsonPolicyDef(NOTIFICATION_FROM_DEVICE)
             DeviceNotificationWrapper notificationSubmit,
             @Suspended final AsyncResponse asyncResponse);
+
+    /**
+     * Creates several device notifications in one request, they are sent to the backend as one batch.
+     *
+     * @param deviceId            Device unique identifier.
+     * @param notificationSubmits In the request body, supply an array of DeviceNotification resources as for insert.
+     * @return If successful, this method returns an array of inserted notification ids and timestamps in the order
+     * of the request.
+     */
+    @POST
+    @Path("/{deviceId}/notification/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @PreAuthorize("isAuthenticated() and hasPermission(#deviceId, 'CREATE_DEVICE_NOTIFICATION')")
+    @ApiOperation(value = "Create notifications", notes = "Creates several notifications in one request")
+    @ApiImplicitParams({
+            @ApiImplicitParam(name = "Authorization", value = "Authorization token", required = true, dataType = "string", paramType = "header")
+    })
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "notifications sent", response = InsertNotification.class,
+                    responseContainer = "List"),
+            @ApiResponse(code = 404, message = "If device not found"),
+            @ApiResponse(code = 400, message = "If request is malformed"),
+            @ApiResponse(code = 403, message = "If device is not connected to network")
+    })
+    void insertBatch(
+            @ApiParam(name = "deviceId", value = "Device ID", required = true)
+            @PathParam("deviceId")
+            String deviceId,
+            @ApiParam(value = "Notification bodies", required = true, defaultValue = "[]")
+            @JsonPolicyDef(NOTIFICATION_FROM_DEVICE)
+            List<DeviceNotificationWrapper> notificationSubmits,
+            @Suspended final AsyncResponse asyncResponse);
 }
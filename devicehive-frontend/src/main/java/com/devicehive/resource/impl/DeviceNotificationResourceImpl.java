@@ -298,4 +298,69 @@ public class DeviceNotificationResourceImpl implements DeviceNotificationResourc
             }
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void insertBatch(String deviceId, List<DeviceNotificationWrapper> notificationSubmits, @Suspended final AsyncResponse asyncResponse) {
+        logger.debug("DeviceNotification batch insert requested: {}", notificationSubmits);
+        if (notificationSubmits == null || notificationSubmits.isEmpty()
+                || notificationSubmits.stream().anyMatch(submit -> submit == null || submit.getNotification() == null)) {
+            logger.warn("DeviceNotification batch insert proceed with error. BAD REQUEST: notification is required.");
+            ErrorResponse errorResponseEntity = new ErrorResponse(BAD_REQUEST.getStatusCode(),
+                    Messages.INVALID_REQUEST_PARAMETERS);
+            asyncResponse.resume(ResponseFactory.response(BAD_REQUEST, errorResponseEntity));
+            return;
+        }
+        if (notificationSubmits.size() > notificationService.getMaxBatchSize()) {
+            logger.warn("DeviceNotification batch insert proceed with error. BAD REQUEST: batch of {} notifications is too large.",
+                    notificationSubmits.size());
+            ErrorResponse errorResponseEntity = new ErrorResponse(BAD_REQUEST.getStatusCode(),
+                    String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE, notificationService.getMaxBatchSize()));
+            asyncResponse.resume(ResponseFactory.response(BAD_REQUEST, errorResponseEntity));
+            return;
+        }
+        notificationSubmits.forEach(hiveValidator::validate);
+        if (notificationSubmits.stream().anyMatch(submit -> SpecialNotifications.DEVICE_UPDATE.equals(submit.getNotification())
+                || SpecialNotifications.DEVICE_ADD.equals(submit.getNotification()))) {
+            logger.warn("DeviceNotification batch insert proceed with error. FORBIDDEN: it's not allow to insert special notification.");
+            ErrorResponse errorCode = new ErrorResponse(FORBIDDEN.getStatusCode(), Messages.FORBIDDEN_INSERT_SPECIAL_NOTIFICATION);
+            asyncResponse.resume(ResponseFactory.response(FORBIDDEN, errorCode));
+            return;
+        }
+
+        DeviceVO device = deviceService.findById(deviceId);
+        if (device == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. NOT FOUND: device {} not found.", deviceId);
+            asyncResponse.resume(ResponseFactory.response(NOT_FOUND, new ErrorResponse(NOT_FOUND.getStatusCode(),
+                    String.format(Messages.DEVICE_NOT_FOUND, deviceId))));
+        } else if (device.getNetworkId() == null) {
+            logger.warn("DeviceNotification batch insert proceed with error. FORBIDDEN: Device {} is not connected to network.", deviceId);
+            asyncResponse.resume(ResponseFactory.response(FORBIDDEN, new ErrorResponse(FORBIDDEN.getStatusCode(),
+                    String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, deviceId))));
+        } else {
+            List<DeviceNotification> toInsert = notificationSubmits.stream()
+                    .map(submit -> notificationService.convertWrapperToNotification(submit, device))
+                    .collect(Collectors.toList());
+            notificationService.insert(toInsert)
+                    .thenAccept(notifications -> {
+                        logger.debug("Device notification batch insert proceed successfully. deviceId = {} count = {}",
+                                deviceId, notifications.size());
+
+                        asyncResponse.resume(ResponseFactory.response(
+                                Response.Status.CREATED,
+                                notifications.stream()
+                                        .map(notification -> new InsertNotification(notification.getId(), notification.getTimestamp()))
+                                        .collect(Collectors.toList()),
+                                JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT));
+                    })
+                    .exceptionally(e -> {
+                        logger.warn("Device notification batch insert failed for device with deviceId = {}.", deviceId);
+                        ErrorResponse errorCode = new ErrorResponse(INTERNAL_SERVER_ERROR.getStatusCode(), String.format(Messages.NOTIFICATION_INSERT_FAILED, deviceId));
+                        asyncResponse.resume(ResponseFactory.response(INTERNAL_SERVER_ERROR, errorCode));
+                        return null;
+                    });
+        }
+    }
 }
@@ -29,6 +29,7 @@ import com.devicehive.model.eventbus.events.CommandsUpdateEvent;
 import com.devicehive.model.rpc.*;
 import com.devicehive.model.updates.DeviceCommandUpdate;
 import com.devicehive.model.wrappers.DeviceCommandWrapper;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.helpers.LongIdGenerator;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.service.time.TimestampService;
@@ -48,6 +49,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -150,11 +152,16 @@ public class DeviceCommandService {
             final BiConsumer<DeviceCommand, Long> callback) throws InterruptedException {
 
         final Long subscriptionId = idGenerator.generate();
+        final AtomicBoolean failed = new AtomicBoolean();
         Collection<CompletableFuture<Collection<DeviceCommand>>> futures = filters.stream()
                 .map(filter -> new CommandSubscribeRequest(subscriptionId, filter, names, timestamp, returnUpdated, limit))
                 .map(subscribeRequest -> {
                     CompletableFuture<Collection<DeviceCommand>> future = new CompletableFuture<>();
                     Consumer<Response> responseConsumer = response -> {
+                        if (response.isFailed()) {
+                            onSubscriptionFailed(subscriptionId, response, future, failed);
+                            return;
+                        }
                         Action resAction = response.getBody().getAction();
                         if (resAction.equals(Action.COMMAND_SUBSCRIBE_RESPONSE)) {
                             future.complete(response.getBody().cast(CommandSubscribeResponse.class).getCommands());
@@ -207,9 +214,15 @@ public class DeviceCommandService {
     public CompletableFuture<Pair<Long, DeviceCommand>> sendSubscribeToUpdateRequest(final long commandId, final DeviceVO device, BiConsumer<DeviceCommand, Long> callback) {
         CompletableFuture<Pair<Long, DeviceCommand>> future = new CompletableFuture<>();
         final Long subscriptionId = idGenerator.generate();
+        final AtomicBoolean failed = new AtomicBoolean();
         Consumer<Response> responseConsumer = response -> {
+            if (response.isFailed()) {
+                onSubscriptionFailed(subscriptionId, response, future, failed);
+                return;
+            }
             Action resAction = response.getBody().getAction();
             if (resAction.equals(Action.COMMAND_UPDATE_SUBSCRIBE_RESPONSE)) {
+                requestResponseMatcher.addSubscription(subscriptionId, response.getCorrelationId());
                 future.complete(Pair.of(response.getBody().cast(CommandUpdateSubscribeResponse.class).getSubscriptionId(), response.getBody().cast(CommandUpdateSubscribeResponse.class).getDeviceCommand()));
             } else if (resAction.equals(COMMAND_UPDATE_EVENT)) {
                 callback.accept(response.getBody().cast(CommandUpdateEvent.class).getDeviceCommand(), subscriptionId);
@@ -220,10 +233,23 @@ public class DeviceCommandService {
         Filter filter = new Filter(device.getNetworkId(), device.getDeviceTypeId(), Long.toString(commandId), COMMAND_UPDATE_EVENT.name(), null);
         rpcClient.call(Request.newBuilder()
                 .withBody(new CommandUpdateSubscribeRequest(commandId, device.getDeviceId(), subscriptionId, filter))
+                .withSingleReply(false)
                 .build(), responseConsumer);
         return future;
     }
 
+    /**
+     * Fails subscription future and unsubscribes once, e.g. when callbacks of the subscription have expired.
+     */
+    private void onSubscriptionFailed(Long subscriptionId, Response response, CompletableFuture<?> future,
+                                      AtomicBoolean failed) {
+        logger.warn("Subscription {} failed with code {}", subscriptionId, response.getErrorCode());
+        future.completeExceptionally(new BackendException("Subscription failed", response.getErrorCode()));
+        if (failed.compareAndSet(false, true)) {
+            sendUnsubscribeRequest(Collections.singleton(subscriptionId));
+        }
+    }
+
     public CompletableFuture<Void> update(DeviceCommand cmd, DeviceCommandUpdate commandUpdate) {
         hiveValidator.validate(commandUpdate);
         if (cmd == null) {
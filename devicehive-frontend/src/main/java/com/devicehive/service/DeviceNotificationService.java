@@ -27,6 +27,7 @@ import com.devicehive.model.eventbus.Filter;
 import com.devicehive.model.eventbus.events.NotificationEvent;
 import com.devicehive.model.rpc.*;
 import com.devicehive.model.wrappers.DeviceNotificationWrapper;
+import com.devicehive.service.exception.BackendException;
 import com.devicehive.service.helpers.LongIdGenerator;
 import com.devicehive.service.helpers.ResponseConsumer;
 import com.devicehive.service.time.TimestampService;
@@ -40,10 +41,12 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -59,6 +62,9 @@ public class DeviceNotificationService {
     private final LongIdGenerator idGenerator;
     private final RequestResponseMatcher requestResponseMatcher;
 
+    @Value("${notification.batch.max-size:400}")
+    private int maxBatchSize;
+
     @Autowired
     public DeviceNotificationService(TimestampService timestampService,
                                      RpcClient rpcClient,
@@ -126,6 +132,49 @@ public class DeviceNotificationService {
         return future.thenApply(r -> r.getBody().cast(NotificationInsertResponse.class).getDeviceNotification());
     }
 
+    /**
+     * Inserts notifications with one request per device and at most max batch size notifications,
+     * results are in the order of the given notifications.
+     */
+    public CompletableFuture<List<DeviceNotification>> insert(final List<DeviceNotification> notifications) {
+        notifications.forEach(hiveValidator::validate);
+        Map<String, List<DeviceNotification>> notificationsByDevice = notifications.stream()
+                .collect(Collectors.groupingBy(DeviceNotification::getDeviceId, LinkedHashMap::new, Collectors.toList()));
+
+        List<CompletableFuture<List<DeviceNotification>>> futures = new ArrayList<>();
+        Map<String, List<CompletableFuture<List<DeviceNotification>>>> futuresByDevice = new HashMap<>();
+        notificationsByDevice.forEach((deviceId, deviceNotifications) -> {
+            for (int from = 0; from < deviceNotifications.size(); from += maxBatchSize) {
+                List<DeviceNotification> chunk = deviceNotifications.subList(from,
+                        Math.min(from + maxBatchSize, deviceNotifications.size()));
+                CompletableFuture<Response> future = new CompletableFuture<>();
+                rpcClient.call(Request.newBuilder()
+                        .withBody(new NotificationBatchInsertRequest(new ArrayList<>(chunk)))
+                        .withPartitionKey(deviceId)
+                        .build(), new ResponseConsumer(future));
+                CompletableFuture<List<DeviceNotification>> inserted = future.thenApply(r -> r.getBody()
+                        .cast(NotificationBatchInsertResponse.class).getDeviceNotifications());
+                futures.add(inserted);
+                futuresByDevice.computeIfAbsent(deviceId, key -> new ArrayList<>()).add(inserted);
+            }
+        });
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    Map<String, Iterator<DeviceNotification>> insertedByDevice = new HashMap<>();
+                    futuresByDevice.forEach((deviceId, deviceFutures) -> insertedByDevice.put(deviceId, deviceFutures.stream()
+                            .flatMap(future -> future.join().stream())
+                            .iterator()));
+                    return notifications.stream()
+                            .map(notification -> insertedByDevice.get(notification.getDeviceId()).next())
+                            .collect(Collectors.toList());
+                });
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
     public Pair<Long, CompletableFuture<List<DeviceNotification>>> subscribe(
             final Set<Filter> filters,
             final Set<String> names,
@@ -133,6 +182,7 @@ public class DeviceNotificationService {
             final BiConsumer<DeviceNotification, Long> callback) {
 
         final Long subscriptionId = idGenerator.generate();
+        final AtomicBoolean failed = new AtomicBoolean();
         Set<NotificationSubscribeRequest> subscribeRequests = filters.stream()
                 .map(filter -> new NotificationSubscribeRequest(subscriptionId, filter, names, timestamp))
                 .collect(Collectors.toSet());
@@ -140,6 +190,10 @@ public class DeviceNotificationService {
         for (NotificationSubscribeRequest sr : subscribeRequests) {
             CompletableFuture<Collection<DeviceNotification>> future = new CompletableFuture<>();
             Consumer<Response> responseConsumer = response -> {
+                if (response.isFailed()) {
+                    onSubscriptionFailed(subscriptionId, response, future, failed);
+                    return;
+                }
                 Action resAction = response.getBody().getAction();
                 if (resAction.equals(Action.NOTIFICATION_SUBSCRIBE_RESPONSE)) {
                     NotificationSubscribeResponse r = response.getBody().cast(NotificationSubscribeResponse.class);
@@ -189,6 +243,18 @@ public class DeviceNotificationService {
         return future;
     }
 
+    /**
+     * Fails subscription future and unsubscribes once, e.g. when callbacks of the subscription have expired.
+     */
+    private void onSubscriptionFailed(Long subscriptionId, Response response, CompletableFuture<?> future,
+                                      AtomicBoolean failed) {
+        logger.warn("Subscription {} failed with code {}", subscriptionId, response.getErrorCode());
+        future.completeExceptionally(new BackendException("Subscription failed", response.getErrorCode()));
+        if (failed.compareAndSet(false, true)) {
+            unsubscribe(Collections.singleton(subscriptionId));
+        }
+    }
+
     public DeviceNotification convertWrapperToNotification(DeviceNotificationWrapper notificationSubmit, DeviceVO device) {
         DeviceNotification notification = new DeviceNotification();
         notification.setId(Math.abs(new Random().nextInt()));
@@ -34,6 +34,7 @@ import com.devicehive.service.DeviceNotificationService;
 import com.devicehive.websockets.converters.JsonMessageBuilder;
 import com.devicehive.websockets.handlers.CommandHandlers;
 import com.devicehive.websockets.handlers.NotificationHandlers;
+import com.devicehive.websockets.util.OutboundQueueFactory;
 import com.devicehive.websockets.util.SessionMonitor;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
@@ -49,7 +50,6 @@ import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.PongMessage;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import javax.persistence.OptimisticLockException;
@@ -73,15 +73,13 @@ public class DeviceHiveWebSocketHandler extends TextWebSocketHandler {
     private DeviceCommandService commandService;
     private DeviceNotificationService notificationService;
     private WebSocketClientHandler webSocketClientHandler;
-
-    private int sendTimeLimit = 10 * 1000;
-    private int sendBufferSizeLimit = 512 * 1024;
+    private OutboundQueueFactory outboundQueueFactory;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         logger.debug("Opening session id {} ", session.getId());
 
-        session = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, sendBufferSizeLimit);
+        session = outboundQueueFactory.decorate(session);
         HiveWebsocketSessionState state = new HiveWebsocketSessionState();
         session.getAttributes().put(HiveWebsocketSessionState.KEY, state);
 
@@ -183,6 +181,7 @@ public class DeviceHiveWebSocketHandler extends TextWebSocketHandler {
                 .map(SubscriptionInfo::getSubscriptionId).collect(Collectors.toSet()));
 
         sessionMonitor.removeSession(session.getId());
+        outboundQueueFactory.release(session.getId());
 
         if(session.isOpen()) {
             session.close();
@@ -239,4 +238,9 @@ public class DeviceHiveWebSocketHandler extends TextWebSocketHandler {
     public void setWebSocketClientHandler(WebSocketClientHandler webSocketClientHandler) {
         this.webSocketClientHandler = webSocketClientHandler;
     }
+
+    @Autowired
+    public void setOutboundQueueFactory(OutboundQueueFactory outboundQueueFactory) {
+        this.outboundQueueFactory = outboundQueueFactory;
+    }
 }
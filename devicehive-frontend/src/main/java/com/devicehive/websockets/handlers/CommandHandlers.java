@@ -114,7 +114,7 @@ public class CommandHandlers {
         if (!filters.isEmpty()) {
             BiConsumer<DeviceCommand, Long> callback = (command, subscriptionId) -> {
                 JsonObject json = createCommandMessage(command, subscriptionId, returnUpdated);
-                clientHandler.sendMessage(json, session);
+                clientHandler.sendSubscriptionMessage(json, command.getDeviceId(), session);
             };
 
             Pair<Long, CompletableFuture<List<DeviceCommand>>> pair = commandService
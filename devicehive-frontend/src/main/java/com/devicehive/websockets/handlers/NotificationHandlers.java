@@ -112,7 +112,7 @@ public class NotificationHandlers {
         if (!filters.isEmpty()) {
             BiConsumer<DeviceNotification, Long> callback = (notification, subscriptionId) -> {
                 JsonObject json = ServerResponsesFactory.createNotificationInsertMessage(notification, subscriptionId);
-                clientHandler.sendMessage(json, session);
+                clientHandler.sendSubscriptionMessage(json, notification.getDeviceId(), session);
             };
 
             Pair<Long, CompletableFuture<List<DeviceNotification>>> pair = notificationService
@@ -182,13 +182,23 @@ public class NotificationHandlers {
     public void processNotificationInsert(String deviceId, JsonObject request,
                                                        WebSocketSession session) {
         HivePrincipal principal = (HivePrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        DeviceNotificationWrapper notificationSubmit = gson.fromJson(request.get(Constants.NOTIFICATION), DeviceNotificationWrapper.class);
+        // array of notifications is inserted as one batch
+        final boolean batch = request.has(NOTIFICATIONS);
+        List<DeviceNotificationWrapper> notificationSubmits = batch
+                ? gson.fromJson(request.get(NOTIFICATIONS), JsonTypes.NOTIFICATION_WRAPPER_LIST_TYPE)
+                : Collections.singletonList(gson.fromJson(request.get(Constants.NOTIFICATION), DeviceNotificationWrapper.class));
 
         logger.debug("notification/insert requested. Session {}. Device ID {}", session, deviceId);
-        if (notificationSubmit == null || notificationSubmit.getNotification() == null) {
+        if (notificationSubmits == null || notificationSubmits.isEmpty()
+                || notificationSubmits.stream().anyMatch(submit -> submit == null || submit.getNotification() == null)) {
             logger.error("notification/insert proceed with error. Bad notification: notification is required.");
             throw new HiveException(Messages.NOTIFICATION_REQUIRED, SC_BAD_REQUEST);
         }
+        if (notificationSubmits.size() > notificationService.getMaxBatchSize()) {
+            logger.error("notification/insert proceed with error. Batch of {} notifications is too large.", notificationSubmits.size());
+            throw new HiveException(String.format(Messages.NOTIFICATION_BATCH_TOO_LARGE, notificationService.getMaxBatchSize()),
+                    SC_BAD_REQUEST);
+        }
 
         if (deviceId == null) {
             logger.error("notification/insert proceed with error. Device ID should be provided");
@@ -208,7 +218,28 @@ public class NotificationHandlers {
             logger.error("notification/insert. No network specified for device with Device ID = {}", deviceId);
             throw new HiveException(String.format(Messages.DEVICE_IS_NOT_CONNECTED_TO_NETWORK, deviceId), SC_FORBIDDEN);
         }
-        DeviceNotification message = notificationService.convertWrapperToNotification(notificationSubmit, device);
+        if (batch) {
+            List<DeviceNotification> messages = notificationSubmits.stream()
+                    .map(submit -> notificationService.convertWrapperToNotification(submit, device))
+                    .collect(Collectors.toList());
+            notificationService.insert(messages)
+                    .thenAccept(notifications -> {
+                        logger.debug("notification/insert proceed successfully. Session {}. Device ID {}. Count {}",
+                                session, deviceId, notifications.size());
+                        response.addValue(NOTIFICATIONS, notifications.stream()
+                                .map(notification -> new InsertNotification(notification.getId(), notification.getTimestamp()))
+                                .collect(Collectors.toList()), NOTIFICATION_TO_DEVICE);
+                        clientHandler.sendMessage(request, response, session);
+                    })
+                    .exceptionally(ex -> {
+                        logger.warn("notification/insert batch failed. Session {}. Device ID {}", session, deviceId, ex);
+                        clientHandler.sendErrorResponse(request, SC_INTERNAL_SERVER_ERROR,
+                                String.format(Messages.NOTIFICATION_INSERT_FAILED, deviceId), session);
+                        return null;
+                    });
+            return;
+        }
+        DeviceNotification message = notificationService.convertWrapperToNotification(notificationSubmits.get(0), device);
 
         notificationService.insert(message, device)
                 .thenAccept(notification -> {
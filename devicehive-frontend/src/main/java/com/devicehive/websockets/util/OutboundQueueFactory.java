@@ -0,0 +1,160 @@
+package com.devicehive.websockets.util;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps WebSocket sessions into {@link QueuedWebSocketSession} and keeps track of their queues.
+ * Writer tasks run on a bounded pool, so a thread is taken only by a session which has messages to write. A session
+ * has at most one writer task, so waiting tasks are bounded by the number of sessions, and writes exceeding the send
+ * time limit are checked every second, so slow clients cannot hold the pool.
+ * Client opts in to batching of messages with query parameter {@code batch=true} of the connection URI.
+ */
+@Component
+public class OutboundQueueFactory implements MeterBinder {
+
+    private static final String BATCH_PARAMETER = "batch";
+
+    @Value("${websocket.outbound.queue-size:1000}")
+    private int queueSize;
+
+    @Value("${websocket.outbound.overflow-policy:drop-oldest}")
+    private String overflowPolicy;
+
+    @Value("${websocket.outbound.batch-size:50}")
+    private int batchSize;
+
+    @Value("${websocket.outbound.hard-queue-size:5000}")
+    private int hardQueueSize;
+
+    @Value("${websocket.outbound.hard-queue-chars:16777216}")
+    private long hardQueueChars;
+
+    @Value("${websocket.outbound.send-time-limit.ms:10000}")
+    private long sendTimeLimit;
+
+    @Value("${websocket.outbound.writer-threads:64}")
+    private int writerThreads;
+
+    private final Map<String, QueuedWebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final AtomicInteger writerCount = new AtomicInteger();
+    private final ScheduledExecutorService sendTimeChecker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "ws-send-time-checker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ThreadPoolExecutor writer;
+    private QueuedWebSocketSession.Limits limits;
+
+    @PostConstruct
+    public void start() {
+        limits = new QueuedWebSocketSession.Limits(queueSize, hardQueueSize, hardQueueChars, sendTimeLimit);
+        writer = new ThreadPoolExecutor(writerThreads, writerThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "ws-writer-" + writerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        writer.allowCoreThreadTimeOut(true);
+        sendTimeChecker.scheduleWithFixedDelay(
+                () -> sessions.values().forEach(QueuedWebSocketSession::checkSendTime), 1, 1, TimeUnit.SECONDS);
+    }
+
+    public QueuedWebSocketSession decorate(WebSocketSession session) {
+        final QueuedWebSocketSession queued = new QueuedWebSocketSession(session, limits, getOverflowPolicy(),
+                isBatchRequested(session) ? batchSize : 1, writer, dropped, disconnected);
+        sessions.put(session.getId(), queued);
+        return queued;
+    }
+
+    public void release(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    public Collection<QueuedWebSocketSession> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Metrics are aggregated over sessions, to avoid a tag per session.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("devicehive.websocket.outbound.sessions", sessions, Map::size)
+                .register(registry);
+        Gauge.builder("devicehive.websocket.outbound.queued", this,
+                factory -> factory.sessions.values().stream().mapToInt(QueuedWebSocketSession::getQueueDepth).sum())
+                .register(registry);
+        Gauge.builder("devicehive.websocket.outbound.queued.max", this,
+                factory -> factory.sessions.values().stream().mapToInt(QueuedWebSocketSession::getQueueDepth).max().orElse(0))
+                .register(registry);
+        Gauge.builder("devicehive.websocket.outbound.queued.chars", this,
+                factory -> factory.sessions.values().stream().mapToLong(QueuedWebSocketSession::getQueuedSize).sum())
+                .register(registry);
+        FunctionCounter.builder("devicehive.websocket.outbound.dropped", dropped, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("devicehive.websocket.outbound.disconnected", disconnected, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("devicehive.websocket.outbound.writer.active", this, factory -> factory.writer.getActiveCount())
+                .register(registry);
+        Gauge.builder("devicehive.websocket.outbound.writer.waiting", this, factory -> factory.writer.getQueue().size())
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendTimeChecker.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    private QueuedWebSocketSession.OverflowPolicy getOverflowPolicy() {
+        return QueuedWebSocketSession.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    private static boolean isBatchRequested(WebSocketSession session) {
+        return session.getUri() != null && Boolean.parseBoolean(
+                UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(BATCH_PARAMETER));
+    }
+}
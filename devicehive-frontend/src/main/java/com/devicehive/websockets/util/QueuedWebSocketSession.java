@@ -0,0 +1,313 @@
+package com.devicehive.websockets.util;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session whose outgoing messages are queued and written by a writer task of its own, so the thread which sends
+ * a message never waits for a slow client. At most one writer task of a session runs at a time.
+ * Subscription messages may be sent as droppable: when the queue is full, one of them is dropped according to
+ * the overflow policy, while other messages, such as responses to requests, are queued up to the hard limits.
+ * The session is closed when its queue exceeds a hard limit of count or characters, or a write takes longer than
+ * the send time limit, whatever the policy.
+ * When batching is enabled, text messages queued meanwhile are written as one JSON array frame.
+ */
+public class QueuedWebSocketSession extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueuedWebSocketSession.class);
+
+    public enum OverflowPolicy {
+        /**
+         * Drops the oldest queued droppable message, or the new one if none is queued.
+         */
+        DROP_OLDEST,
+        /**
+         * Drops the queued droppable message of the same device, otherwise as {@link #DROP_OLDEST}.
+         */
+        CONFLATE,
+        /**
+         * Closes the session.
+         */
+        DISCONNECT
+    }
+
+    /**
+     * Bounds of a session queue, soft capacity applies to droppable messages and hard limits to all of them.
+     */
+    public static final class Limits {
+
+        private final int capacity;
+        private final int hardCapacity;
+        private final long hardSize;
+        private final long sendTimeLimit;
+
+        public Limits(int capacity, int hardCapacity, long hardSize, long sendTimeLimit) {
+            this.capacity = Math.max(1, capacity);
+            this.hardCapacity = Math.max(this.capacity, hardCapacity);
+            this.hardSize = hardSize;
+            this.sendTimeLimit = sendTimeLimit;
+        }
+    }
+
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    private final Limits limits;
+    private final OverflowPolicy policy;
+    private final int batchSize;
+    private final Executor writer;
+    private final LongAdder droppedTotal;
+    private final LongAdder disconnectedTotal;
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private long queuedSize;
+    private volatile long sendStartedAt;
+
+    public QueuedWebSocketSession(WebSocketSession delegate, Limits limits, OverflowPolicy policy, int batchSize,
+                                  Executor writer, LongAdder droppedTotal, LongAdder disconnectedTotal) {
+        super(delegate);
+        this.limits = limits;
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        this.writer = writer;
+        this.droppedTotal = droppedTotal;
+        this.disconnectedTotal = disconnectedTotal;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        offer(new Entry(message, null, false));
+    }
+
+    /**
+     * Queues message of a subscription to given device, which may be dropped if the client does not keep up.
+     */
+    public void sendDroppableMessage(WebSocketMessage<?> message, String deviceId) {
+        offer(new Entry(message, deviceId, true));
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Returns characters of queued text messages and bytes of other messages.
+     */
+    public long getQueuedSize() {
+        synchronized (queue) {
+            return queuedSize;
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public boolean isBatching() {
+        return batchSize > 1;
+    }
+
+    /**
+     * Closes the session if the current write takes longer than the send time limit.
+     */
+    public void checkSendTime() {
+        final long startedAt = sendStartedAt;
+        if (startedAt != 0 && System.currentTimeMillis() - startedAt > limits.sendTimeLimit) {
+            disconnect("does not complete a write within " + limits.sendTimeLimit + " ms");
+        }
+    }
+
+    private void offer(Entry entry) {
+        if (!isOpen() || disconnected.get()) {
+            return;
+        }
+        String overflow = null;
+        synchronized (queue) {
+            if (entry.droppable && queue.size() >= limits.capacity) {
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    overflow = "does not keep up with " + limits.capacity + " queued messages";
+                } else if ((policy != OverflowPolicy.CONFLATE || !removeDroppable(entry.deviceId))
+                        && !removeDroppable(null)) {
+                    countDropped();
+                    return;
+                }
+            }
+            if (overflow == null) {
+                queue.add(entry);
+                queuedSize += entry.size;
+                if (queue.size() > limits.hardCapacity) {
+                    overflow = "exceeds " + limits.hardCapacity + " queued messages";
+                } else if (queuedSize > limits.hardSize) {
+                    overflow = "exceeds " + limits.hardSize + " queued characters";
+                }
+            }
+        }
+        if (overflow != null) {
+            disconnect(overflow);
+            return;
+        }
+        checkSendTime();
+        if (writing.compareAndSet(false, true)) {
+            writer.execute(this::write);
+        }
+    }
+
+    /**
+     * Removes the oldest droppable message of given device, or of any device if it is null.
+     */
+    private boolean removeDroppable(String deviceId) {
+        final Iterator<Entry> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            final Entry queued = iterator.next();
+            if (queued.droppable && (deviceId == null || Objects.equals(deviceId, queued.deviceId))) {
+                iterator.remove();
+                queuedSize -= queued.size;
+                countDropped();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void countDropped() {
+        dropped.increment();
+        droppedTotal.increment();
+    }
+
+    private void clear() {
+        synchronized (queue) {
+            queue.clear();
+            queuedSize = 0;
+        }
+    }
+
+    private void disconnect(String reason) {
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
+        clear();
+        logger.warn("Session {} {} and is closed", getId(), reason);
+        disconnectedTotal.increment();
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | IllegalStateException e) {
+            logger.error("Error closing session {}", getId(), e);
+        }
+    }
+
+    private void write() {
+        try {
+            List<WebSocketMessage<?>> batch;
+            while (!(batch = poll()).isEmpty()) {
+                if (!isOpen()) {
+                    clear();
+                    return;
+                }
+                write(batch);
+            }
+        } finally {
+            writing.set(false);
+        }
+        if (getQueueDepth() > 0 && writing.compareAndSet(false, true)) {
+            writer.execute(this::write);
+        }
+    }
+
+    private void write(List<WebSocketMessage<?>> batch) {
+        sendStartedAt = System.currentTimeMillis();
+        try {
+            if (batch.size() == 1) {
+                getDelegate().sendMessage(batch.get(0));
+                return;
+            }
+            final StringBuilder frame = new StringBuilder("[");
+            for (WebSocketMessage<?> message : batch) {
+                if (frame.length() > 1) {
+                    frame.append(',');
+                }
+                frame.append(((TextMessage) message).getPayload());
+            }
+            getDelegate().sendMessage(new TextMessage(frame.append(']')));
+        } catch (IOException | IllegalStateException e) {
+            logger.error("Exception while sending {} messages to session {}", batch.size(), getId(), e);
+        } finally {
+            sendStartedAt = 0;
+        }
+    }
+
+    /**
+     * Takes next message, or up to batch size of consecutive text messages when batching.
+     */
+    private List<WebSocketMessage<?>> poll() {
+        final List<WebSocketMessage<?>> batch = new ArrayList<>(Math.min(batchSize, 16));
+        synchronized (queue) {
+            while (!queue.isEmpty() && batch.size() < batchSize) {
+                final WebSocketMessage<?> message = queue.peek().message;
+                if (!batch.isEmpty() && !(message instanceof TextMessage)) {
+                    break;
+                }
+                queuedSize -= queue.poll().size;
+                batch.add(message);
+                if (!(message instanceof TextMessage)) {
+                    break;
+                }
+            }
+        }
+        return batch;
+    }
+
+    private static final class Entry {
+
+        private final WebSocketMessage<?> message;
+        private final String deviceId;
+        private final boolean droppable;
+        private final int size;
+
+        Entry(WebSocketMessage<?> message, String deviceId, boolean droppable) {
+            this.message = message;
+            this.deviceId = deviceId;
+            this.droppable = droppable;
+            // length of text is taken as is, encoding it to count bytes would cost as much as sending
+            this.size = message instanceof TextMessage
+                    ? ((TextMessage) message).getPayload().length()
+                    : message.getPayloadLength();
+        }
+    }
+}
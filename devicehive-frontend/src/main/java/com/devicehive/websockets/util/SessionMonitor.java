@@ -20,8 +20,13 @@ package com.devicehive.websockets.util;
  * #L%
  */
 
+import com.devicehive.api.RequestResponseMatcher;
+import com.devicehive.model.SubscriptionInfo;
+import com.devicehive.websockets.handlers.CommandHandlers;
+import com.devicehive.websockets.handlers.NotificationHandlers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
@@ -30,6 +35,7 @@ import org.springframework.web.socket.WebSocketSession;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -40,6 +46,13 @@ public class SessionMonitor {
 
     private ConcurrentMap<String, WebSocketSession> sessionMap = new ConcurrentHashMap<>();
 
+    private RequestResponseMatcher requestResponseMatcher;
+
+    @Autowired
+    public void setRequestResponseMatcher(RequestResponseMatcher requestResponseMatcher) {
+        this.requestResponseMatcher = requestResponseMatcher;
+    }
+
     public void registerSession(final WebSocketSession session) {
         sessionMap.put(session.getId(), session);
     }
@@ -66,6 +79,8 @@ public class SessionMonitor {
                 if (session.isOpen()) {
                     logger.debug("Pinging session {}", session.getId());
                     session.sendMessage(new PingMessage());
+                    heartbeat(session, CommandHandlers.SUBSCRIPTION_SET_NAME);
+                    heartbeat(session, NotificationHandlers.SUBSCRIPTION_SET_NAME);
                 } else {
                     logger.debug("Session {} is closed.", session.getId());
                     sessionMap.remove(session.getId());
@@ -76,6 +91,17 @@ public class SessionMonitor {
         }
     }
 
+    /**
+     * Keeps subscription callbacks of an open session from expiring.
+     */
+    @SuppressWarnings("unchecked")
+    private void heartbeat(WebSocketSession session, String subscriptionSetName) {
+        Set<SubscriptionInfo> subscriptions = (Set<SubscriptionInfo>) session.getAttributes().get(subscriptionSetName);
+        if (subscriptions != null) {
+            subscriptions.forEach(subscription -> requestResponseMatcher.heartbeat(subscription.getSubscriptionId()));
+        }
+    }
+
     @PreDestroy
     public void closeAllSessions() {
         for (WebSocketSession session : sessionMap.values()) {
@@ -0,0 +1,170 @@
+package com.devicehive.resource.converters;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.exceptions.HiveException;
+import com.devicehive.json.GsonFactory;
+import com.devicehive.json.strategies.JsonPolicyApply;
+import com.devicehive.json.strategies.JsonPolicyDef;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.vo.DeviceVO;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.DEVICE_PUBLISHED;
+import static com.devicehive.json.strategies.JsonPolicyDef.Policy.NOTIFICATION_TO_CLIENT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares streamed provider output with the tree based serialization it replaced.
+ */
+public class JsonPolicyProviderTest {
+
+    private final HiveEntityProvider provider = new HiveEntityProvider();
+    private final CollectionProvider collectionProvider = new CollectionProvider();
+
+    @Test
+    public void shouldWriteDeviceAsBaseline() throws Exception {
+        DeviceVO device = device("{\"a\":{\"b\":[1,{\"c\":null}],\"d\":[]},\"long\":9007199254740993,\"scale\":1.50}");
+
+        assertEquals(baseline(device, DEVICE_PUBLISHED), write(device, DEVICE_PUBLISHED));
+        assertEquals(baseline(device, null), write(device, null));
+    }
+
+    @Test
+    public void shouldWriteNullsAsBaseline() throws Exception {
+        DeviceVO device = new DeviceVO();
+        device.setDeviceId("device");
+
+        assertEquals(baseline(device, DEVICE_PUBLISHED), write(device, DEVICE_PUBLISHED));
+    }
+
+    @Test
+    public void shouldWriteEscapedStringsAsBaseline() throws Exception {
+        DeviceNotification notification = new DeviceNotification();
+        notification.setId(1L);
+        notification.setTimestamp(new Date(0));
+        notification.setDeviceId("dev\"ice\\");
+        notification.setNotification("line\nbreak\ttab é  <b>&'=");
+        notification.setParameters(new JsonStringWrapper("{\"s\":\"quote\\\" newline\\n control\\u0001 <b>&'\"}"));
+
+        assertEquals(baseline(notification, NOTIFICATION_TO_CLIENT), write(notification, NOTIFICATION_TO_CLIENT));
+    }
+
+    @Test
+    public void shouldWriteCollectionsAsBaseline() throws Exception {
+        List<DeviceVO> devices = Arrays.asList(device("{}"), device("{\"n\":null}"));
+
+        assertEquals(baseline(devices, DEVICE_PUBLISHED), write(devices, DEVICE_PUBLISHED));
+    }
+
+    @Test
+    public void shouldWriteWrapperOfNonObjectAsBaseline() throws Exception {
+        for (String json : Arrays.asList("[1,{\"a\":null}]", "5", "\"text\"", "null")) {
+            DeviceVO device = new DeviceVO();
+            device.setDeviceId("device");
+            device.setData(JsonStringWrapper.fromValidJson(json));
+
+            assertEquals(baseline(device, DEVICE_PUBLISHED), write(device, DEVICE_PUBLISHED), json);
+        }
+    }
+
+    @Test
+    public void shouldRoundTripThroughProvider() throws Exception {
+        DeviceVO device = device("{\"a\":[1,2.50,{\"b\":null}],\"long\":9007199254740993}");
+        String written = write(device, DEVICE_PUBLISHED);
+
+        DeviceVO read = read(written, DEVICE_PUBLISHED);
+
+        assertEquals(device.getData().getJsonString(), read.getData().getJsonString());
+        assertEquals(written, write(read, DEVICE_PUBLISHED));
+    }
+
+    @Test
+    public void shouldRejectNonObjectWrapperAsBaseline() {
+        for (String json : Arrays.asList("[1]", "5", "\"text\"", "true")) {
+            String body = "{\"deviceId\":\"device\",\"data\":" + json + "}";
+
+            assertThrows(HiveException.class, () -> new JsonStringWrapper(json), json);
+            assertThrows(HiveException.class, () -> read(body, DEVICE_PUBLISHED), json);
+        }
+    }
+
+    private static DeviceVO device(String data) {
+        DeviceVO device = new DeviceVO();
+        device.setId(1L);
+        device.setDeviceId("device");
+        device.setName("name");
+        device.setData(new JsonStringWrapper(data));
+        device.setNetworkId(2L);
+        device.setDeviceTypeId(3L);
+        device.setBlocked(false);
+        return device;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String write(Object entity, JsonPolicyDef.Policy policy) throws Exception {
+        JsonPolicyProvider writer = entity instanceof Collection ? collectionProvider : provider;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(entity, entity.getClass(), entity.getClass(), annotations(policy),
+                MediaType.APPLICATION_JSON_TYPE, null, out);
+        return out.toString(StandardCharsets.UTF_8.name());
+    }
+
+    @SuppressWarnings("unchecked")
+    private DeviceVO read(String json, JsonPolicyDef.Policy policy) throws Exception {
+        return (DeviceVO) provider.readFrom((Class) DeviceVO.class, DeviceVO.class, annotations(policy),
+                MediaType.APPLICATION_JSON_TYPE, null,
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String baseline(Object entity, JsonPolicyDef.Policy policy) {
+        Gson gson = policy != null ? GsonFactory.createGson(policy) : GsonFactory.createGson();
+        return gson.toJson(gson.toJsonTree(entity));
+    }
+
+    private static Annotation[] annotations(JsonPolicyDef.Policy policy) throws NoSuchMethodException {
+        if (policy == null) {
+            return new Annotation[0];
+        }
+        return JsonPolicyProviderTest.class.getDeclaredMethod(policy.name()).getAnnotations();
+    }
+
+    @JsonPolicyApply(DEVICE_PUBLISHED)
+    private void DEVICE_PUBLISHED() {
+    }
+
+    @JsonPolicyApply(NOTIFICATION_TO_CLIENT)
+    private void NOTIFICATION_TO_CLIENT() {
+    }
+}
@@ -0,0 +1,126 @@
+package com.devicehive.service;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.NotificationBatchInsertRequest;
+import com.devicehive.model.rpc.NotificationBatchInsertResponse;
+import com.devicehive.service.exception.BackendException;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.util.HiveValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class DeviceNotificationServiceTest {
+
+    private final List<Request> requests = new ArrayList<>();
+    private final List<Consumer<Response>> callbacks = new ArrayList<>();
+    private DeviceNotificationService service;
+
+    @BeforeEach
+    public void setUp() {
+        RpcClient rpcClient = new RpcClient() {
+            @Override
+            public void call(Request request, Consumer<Response> callback) {
+                requests.add(request);
+                callbacks.add(callback);
+            }
+
+            @Override
+            public void push(Request request) {
+            }
+        };
+        service = new DeviceNotificationService(null, rpcClient, mock(HiveValidator.class), null, null);
+        ReflectionTestUtils.setField(service, "maxBatchSize", 2);
+    }
+
+    @Test
+    public void shouldSplitDeviceBatchByMaxSize() {
+        service.insert(notifications("a", "a", "a", "a", "a"));
+
+        assertEquals(3, requests.size());
+        assertEquals(List.of(2, 2, 1), requests.stream()
+                .map(request -> request.getBody().cast(NotificationBatchInsertRequest.class).getDeviceNotifications().size())
+                .collect(Collectors.toList()));
+        requests.forEach(request -> assertEquals("a", request.getPartitionKey()));
+    }
+
+    @Test
+    public void shouldReturnResultsInRequestOrder() {
+        CompletableFuture<List<DeviceNotification>> future = service.insert(notifications("a", "b", "a", "a", "b"));
+        assertEquals(3, requests.size());
+
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            List<DeviceNotification> inserted = requests.get(i).getBody().cast(NotificationBatchInsertRequest.class)
+                    .getDeviceNotifications();
+            callbacks.get(i).accept(Response.newBuilder()
+                    .withBody(new NotificationBatchInsertResponse(inserted))
+                    .buildSuccess());
+        }
+
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), future.join().stream()
+                .map(DeviceNotification::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldFailWhenAnyChunkFails() {
+        CompletableFuture<List<DeviceNotification>> future = service.insert(notifications("a", "a", "a"));
+
+        callbacks.get(0).accept(Response.newBuilder()
+                .withBody(new NotificationBatchInsertResponse(new ArrayList<>()))
+                .buildSuccess());
+        callbacks.get(1).accept(Response.newBuilder()
+                .withBody(new ErrorResponse("failed"))
+                .buildFailed(500));
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(BackendException.class, e.getCause());
+    }
+
+    private static List<DeviceNotification> notifications(String... deviceIds) {
+        List<DeviceNotification> notifications = new ArrayList<>();
+        for (int i = 0; i < deviceIds.length; i++) {
+            DeviceNotification notification = new DeviceNotification();
+            notification.setId(i);
+            notification.setDeviceId(deviceIds[i]);
+            notification.setNotification("notification");
+            notifications.add(notification);
+        }
+        return notifications;
+    }
+}
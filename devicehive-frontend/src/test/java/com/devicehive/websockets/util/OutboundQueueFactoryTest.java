@@ -0,0 +1,105 @@
+package com.devicehive.websockets.util;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OutboundQueueFactoryTest {
+
+    private final OutboundQueueFactory factory = new OutboundQueueFactory();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(factory, "queueSize", 2);
+        ReflectionTestUtils.setField(factory, "overflowPolicy", "drop-oldest");
+        ReflectionTestUtils.setField(factory, "batchSize", 1);
+        ReflectionTestUtils.setField(factory, "hardQueueSize", 10);
+        ReflectionTestUtils.setField(factory, "hardQueueChars", 1000L);
+        ReflectionTestUtils.setField(factory, "sendTimeLimit", 10000L);
+        ReflectionTestUtils.setField(factory, "writerThreads", 1);
+        factory.start();
+        factory.bindTo(registry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        factory.shutdown();
+    }
+
+    @Test
+    public void shouldPublishAggregatedQueueMetrics() throws Exception {
+        QueuedWebSocketSession session = factory.decorate(blockingSession("session"));
+        factory.decorate(blockingSession("idle"));
+
+        session.sendMessage(new TextMessage("response"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        session.sendDroppableMessage(new TextMessage("n1"), "device");
+        session.sendDroppableMessage(new TextMessage("n2"), "device");
+        session.sendDroppableMessage(new TextMessage("n3"), "device");
+
+        assertEquals(2, gauge("devicehive.websocket.outbound.sessions"));
+        assertEquals(2, gauge("devicehive.websocket.outbound.queued"));
+        assertEquals(2, gauge("devicehive.websocket.outbound.queued.max"));
+        assertEquals(session.getQueuedSize(), gauge("devicehive.websocket.outbound.queued.chars"));
+        assertEquals(1, registry.get("devicehive.websocket.outbound.dropped").functionCounter().count());
+        assertEquals(0, registry.get("devicehive.websocket.outbound.disconnected").functionCounter().count());
+        assertEquals(1, gauge("devicehive.websocket.outbound.writer.active"));
+
+        factory.release("idle");
+        assertEquals(1, gauge("devicehive.websocket.outbound.sessions"));
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).gauge().value();
+    }
+
+    private WebSocketSession blockingSession(String id) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getId()).thenReturn(id);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
@@ -0,0 +1,215 @@
+package com.devicehive.websockets.util;
+
+/*
+ * #%L
+ * DeviceHive Frontend Logic
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.websockets.util.QueuedWebSocketSession.Limits;
+import com.devicehive.websockets.util.QueuedWebSocketSession.OverflowPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class QueuedWebSocketSessionTest {
+
+    private final List<Runnable> writerTasks = new ArrayList<>();
+    private final List<String> sent = new ArrayList<>();
+    private final LongAdder droppedTotal = new LongAdder();
+    private final LongAdder disconnectedTotal = new LongAdder();
+    private WebSocketSession delegate;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        when(delegate.getId()).thenReturn("session");
+        doAnswer(invocation -> {
+            sent.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+    }
+
+    @Test
+    public void shouldDropOldestDroppableMessage() {
+        QueuedWebSocketSession session = session(new Limits(3, 10, 1000, 1000), OverflowPolicy.DROP_OLDEST, 1);
+
+        session.sendDroppableMessage(text("a1"), "a");
+        session.sendMessage(text("r1"));
+        session.sendDroppableMessage(text("b1"), "b");
+        session.sendDroppableMessage(text("b2"), "b");
+
+        assertEquals(3, session.getQueueDepth());
+        assertEquals(1, session.getDroppedCount());
+        assertEquals(1, droppedTotal.sum());
+        drain();
+        assertEquals(List.of("r1", "b1", "b2"), sent);
+    }
+
+    @Test
+    public void shouldDropNewDroppableMessageWhenNoneIsQueued() {
+        QueuedWebSocketSession session = session(new Limits(2, 10, 1000, 1000), OverflowPolicy.DROP_OLDEST, 1);
+
+        session.sendMessage(text("r1"));
+        session.sendMessage(text("r2"));
+        session.sendDroppableMessage(text("a1"), "a");
+
+        assertEquals(2, session.getQueueDepth());
+        assertEquals(1, session.getDroppedCount());
+        drain();
+        assertEquals(List.of("r1", "r2"), sent);
+    }
+
+    @Test
+    public void shouldConflateMessagesOfSameDevice() {
+        QueuedWebSocketSession session = session(new Limits(3, 10, 1000, 1000), OverflowPolicy.CONFLATE, 1);
+
+        session.sendDroppableMessage(text("a1"), "a");
+        session.sendDroppableMessage(text("b1"), "b");
+        session.sendDroppableMessage(text("c1"), "c");
+        session.sendDroppableMessage(text("b2"), "b");
+        session.sendDroppableMessage(text("d1"), "d");
+
+        assertEquals(2, session.getDroppedCount());
+        drain();
+        assertEquals(List.of("c1", "b2", "d1"), sent);
+    }
+
+    @Test
+    public void shouldDisconnectOnOverflowWithDisconnectPolicy() throws Exception {
+        QueuedWebSocketSession session = session(new Limits(2, 10, 1000, 1000), OverflowPolicy.DISCONNECT, 1);
+
+        session.sendDroppableMessage(text("a1"), "a");
+        session.sendDroppableMessage(text("a2"), "a");
+        verify(delegate, never()).close(any());
+        session.sendDroppableMessage(text("a3"), "a");
+
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, session.getQueueDepth());
+        assertEquals(1, disconnectedTotal.sum());
+    }
+
+    @Test
+    public void shouldDisconnectBeyondHardCapacityWhateverPolicy() throws Exception {
+        QueuedWebSocketSession session = session(new Limits(2, 4, 1000, 1000), OverflowPolicy.DROP_OLDEST, 1);
+
+        for (int i = 0; i < 4; i++) {
+            session.sendMessage(text("r" + i));
+        }
+        verify(delegate, never()).close(any());
+        session.sendMessage(text("r4"));
+        session.sendMessage(text("r5"));
+
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, session.getQueueDepth());
+        assertEquals(0, session.getQueuedSize());
+        assertEquals(1, disconnectedTotal.sum());
+    }
+
+    @Test
+    public void shouldDisconnectBeyondHardSize() throws Exception {
+        QueuedWebSocketSession session = session(new Limits(10, 10, 10, 1000), OverflowPolicy.DROP_OLDEST, 1);
+
+        session.sendMessage(text("12345"));
+        assertEquals(5, session.getQueuedSize());
+        session.sendMessage(text("12345"));
+        verify(delegate, never()).close(any());
+        session.sendMessage(text("1"));
+
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    public void shouldWriteTextMessagesAsArrayWhenBatching() {
+        QueuedWebSocketSession session = session(new Limits(10, 10, 1000, 1000), OverflowPolicy.DROP_OLDEST, 2);
+
+        session.sendMessage(text("{\"a\":1}"));
+        session.sendDroppableMessage(text("{\"b\":2}"), "b");
+        session.sendMessage(text("{\"c\":3}"));
+        drain();
+
+        assertEquals(List.of("[{\"a\":1},{\"b\":2}]", "{\"c\":3}"), sent);
+        assertEquals(0, session.getQueuedSize());
+    }
+
+    @Test
+    public void shouldDisconnectWhenWriteExceedsSendTimeLimit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(delegate).sendMessage(any());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            QueuedWebSocketSession session = new QueuedWebSocketSession(delegate, new Limits(10, 10, 1000, 50),
+                    OverflowPolicy.DROP_OLDEST, 1, executor, droppedTotal, disconnectedTotal);
+
+            session.sendMessage(text("r1"));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            session.checkSendTime();
+            verify(delegate, never()).close(any());
+
+            Thread.sleep(100);
+            session.checkSendTime();
+            verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+            assertEquals(1, disconnectedTotal.sum());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        verify(delegate, timeout(1000).times(1)).sendMessage(any());
+    }
+
+    private QueuedWebSocketSession session(Limits limits, OverflowPolicy policy, int batchSize) {
+        return new QueuedWebSocketSession(delegate, limits, policy, batchSize, writerTasks::add,
+                droppedTotal, disconnectedTotal);
+    }
+
+    private void drain() {
+        while (!writerTasks.isEmpty()) {
+            writerTasks.remove(0).run();
+        }
+    }
+
+    private static WebSocketMessage<?> text(String payload) {
+        return new TextMessage(payload);
+    }
+}
@@ -53,9 +53,15 @@ public class PluginProxyClientConfig {
         RESPONSE_TOPIC = responseTopicPrefix + UUID.randomUUID();
     }
 
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
     }
 
     @Bean
@@ -63,7 +63,7 @@ public class PluginProxyClient implements RpcClient {
 
     @Override
     public void call(Request request, Consumer<Response> callback) {
-        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), callback);
+        requestResponseMatcher.addRequestCallback(request, callback);
         logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
 
         push(request);
@@ -35,4 +35,19 @@ public abstract class ProxyClient {
     public abstract void shutdown();
 
     public abstract CompletableFuture<ProxyMessage> push(ProxyMessage message);
+
+    /**
+     * Pushes message so that it is sent after messages previously pushed with the same ordering key.
+     */
+    public CompletableFuture<ProxyMessage> push(ProxyMessage message, String orderingKey) {
+        return push(message);
+    }
+
+    /**
+     * Pushes message without tracking the reply of the proxy, for messages whose result nobody awaits.
+     * Ordering key may be null.
+     */
+    public void send(ProxyMessage message, String orderingKey) {
+        push(message, orderingKey);
+    }
 }
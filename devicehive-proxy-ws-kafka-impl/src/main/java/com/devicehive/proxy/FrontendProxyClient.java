@@ -20,6 +20,7 @@ package com.devicehive.proxy;
  * #L%
  */
 
+import com.devicehive.api.PingHandshake;
 import com.devicehive.api.RequestResponseMatcher;
 import com.devicehive.model.ServerEvent;
 import com.devicehive.proxy.api.NotificationHandler;
@@ -31,7 +32,6 @@ import com.devicehive.proxy.api.payload.TopicsPayload;
 import com.devicehive.proxy.client.WebSocketKafkaProxyClient;
 import com.devicehive.proxy.config.WebSocketKafkaProxyConfig;
 import com.devicehive.shim.api.Request;
-import com.devicehive.shim.api.RequestType;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
 import com.google.gson.Gson;
@@ -49,14 +49,15 @@ public class FrontendProxyClient implements RpcClient {
 
     private final String requestTopic;
     private final String replyToTopic;
-    private final WebSocketKafkaProxyClient client;
+    private final ProxyClient client;
     private final WebSocketKafkaProxyConfig proxyConfig;
     private final NotificationHandler notificationHandler;
     private final RequestResponseMatcher requestResponseMatcher;
     private final Gson gson;
     private final RingBuffer<ServerEvent> ringBuffer;
+    private final PingHandshake handshake;
 
-    public FrontendProxyClient(String requestTopic, String replyToTopic, WebSocketKafkaProxyConfig proxyConfig, NotificationHandler notificationHandler, RequestResponseMatcher requestResponseMatcher, Gson gson, RingBuffer<ServerEvent> ringBuffer) {
+    public FrontendProxyClient(String requestTopic, String replyToTopic, WebSocketKafkaProxyConfig proxyConfig, ProxyClient client, NotificationHandler notificationHandler, RequestResponseMatcher requestResponseMatcher, Gson gson, RingBuffer<ServerEvent> ringBuffer) {
         this.requestTopic = requestTopic;
         this.replyToTopic = replyToTopic;
         this.proxyConfig = proxyConfig;
@@ -64,13 +65,17 @@ public class FrontendProxyClient implements RpcClient {
         this.requestResponseMatcher = requestResponseMatcher;
         this.gson = gson;
         this.ringBuffer = ringBuffer;
-        this.client = new WebSocketKafkaProxyClient((message, client) -> {});
-        client.setWebSocketKafkaProxyConfig(proxyConfig);
+        this.client = client;
+        this.handshake = new PingHandshake("Backend Server", requestResponseMatcher, request -> {
+            request.setReplyTo(replyToTopic);
+            client.send(ProxyMessageBuilder.notification(
+                    new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())), null);
+        });
     }
 
     @Override
     public void call(Request request, Consumer<Response> callback) {
-        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), callback);
+        requestResponseMatcher.addRequestCallback(request, callback);
         logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
 
         ringBuffer.publishEvent((serverEvent, sequence, response) -> serverEvent.set(response), request);
@@ -83,15 +88,34 @@ public class FrontendProxyClient implements RpcClient {
         }
         request.setReplyTo(replyToTopic);
 
-        client.push(ProxyMessageBuilder.notification(
-                new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())));
+        client.send(ProxyMessageBuilder.notification(
+                new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())), null);
     }
 
+    /**
+     * Connects to the proxy and creates topics, then subscribes to reply topic and starts ping handshake,
+     * both in background, readiness is reported by {@link #isReady()}.
+     */
     @Override
     public void start() {
-        client.start();
-        client.push(ProxyMessageBuilder.create(new TopicsPayload(Arrays.asList(requestTopic, replyToTopic)))).join();
+        client.push(ProxyMessageBuilder.create(new TopicsPayload(Arrays.asList(requestTopic, replyToTopic))))
+                .thenRun(() -> {
+                    subscribeToReplyTopic();
+                    handshake.start();
+                });
+    }
+
+    @Override
+    public boolean isReady() {
+        return handshake.isConnected();
+    }
 
+    @Override
+    public void shutdown() {
+        handshake.stop();
+    }
+
+    private void subscribeToReplyTopic() {
         UUID uuid = UUID.randomUUID();
         Executor executionPool = Executors.newFixedThreadPool(proxyConfig.getWorkerThreads());
         for (int i = 0; i < proxyConfig.getWorkerThreads(); i++) {
@@ -102,55 +126,5 @@ public class FrontendProxyClient implements RpcClient {
                 client.push(ProxyMessageBuilder.subscribe(new SubscribePayload(replyToTopic, uuid.toString()))).join();
             });
         }
-
-        pingServer();
-    }
-
-    @Override
-    public void shutdown() {
-        client.shutdown();
-    }
-
-    private void pingServer() {
-        Request request = Request.newBuilder().build();
-        request.setReplyTo(replyToTopic);
-        request.setType(RequestType.ping);
-        boolean connected = false;
-        int attempts = 10;
-        for (int i = 0; i < attempts; i++) {
-            logger.info("Ping WebSocket Proxy attempt {}", i);
-
-            CompletableFuture<Response> pingFuture = new CompletableFuture<>();
-
-            requestResponseMatcher.addRequestCallback(request.getCorrelationId(), pingFuture::complete);
-            logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
-
-            client.push(ProxyMessageBuilder.notification(
-                    new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())));
-
-            Response response = null;
-            try {
-                response = pingFuture.get(3000, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                logger.error("Exception occured while trying to ping Backend Server ", e);
-            } catch (TimeoutException e) {
-                logger.warn("Backend Server didn't respond to ping request");
-                continue;
-            } finally {
-                requestResponseMatcher.removeRequestCallback(request.getCorrelationId());
-            }
-            if (response != null && !response.isFailed()) {
-                connected = true;
-                break;
-            } else {
-                shutdown();
-            }
-        }
-        if (connected) {
-            logger.info("Successfully connected to Backend Server");
-        } else {
-            logger.error("Unable to reach out Backend Server in {} attempts", attempts);
-            throw new RuntimeException("Backend Server is not reachable");
-        }
     }
 }
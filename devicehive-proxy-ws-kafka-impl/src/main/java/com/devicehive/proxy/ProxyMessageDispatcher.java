@@ -24,8 +24,6 @@ import com.devicehive.proxy.api.ProxyClient;
 import com.devicehive.proxy.api.ProxyMessage;
 import com.devicehive.proxy.api.ProxyMessageBuilder;
 import com.devicehive.proxy.api.payload.NotificationCreatePayload;
-import com.devicehive.proxy.client.WebSocketKafkaProxyClient;
-import com.devicehive.proxy.config.WebSocketKafkaProxyConfig;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.google.gson.Gson;
@@ -37,17 +35,14 @@ public class ProxyMessageDispatcher implements MessageDispatcher {
     private final ProxyClient proxyClient;
 
     @Autowired
-    public ProxyMessageDispatcher(Gson gson, WebSocketKafkaProxyConfig proxyConfig) {
+    public ProxyMessageDispatcher(Gson gson, ProxyClient proxyClient) {
         this.gson = gson;
-        WebSocketKafkaProxyClient webSocketKafkaProxyClient = new WebSocketKafkaProxyClient((message, client) -> {});
-        webSocketKafkaProxyClient.setWebSocketKafkaProxyConfig(proxyConfig);
-        this.proxyClient = webSocketKafkaProxyClient;
-        this.proxyClient.start();
+        this.proxyClient = proxyClient;
     }
 
     @Override
     public void send(String to, Response response) {
         ProxyMessage responseMessage = ProxyMessageBuilder.notification(new NotificationCreatePayload(to, gson.toJson(response)));
-        proxyClient.push(responseMessage);
+        proxyClient.send(responseMessage, response.getCorrelationId());
     }
 }
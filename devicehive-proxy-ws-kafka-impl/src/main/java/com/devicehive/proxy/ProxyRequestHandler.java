@@ -45,7 +45,7 @@ public class ProxyRequestHandler implements NotificationHandler {
 
     @Override
     public void handle(String message, ProxyClient client) {
-        logger.debug("Received message from proxy client: " + message);
+        logger.debug("Received message from proxy client: {}", message);
         final Request request = gson.fromJson(message, Request.class);
 
         ringBuffer.publishEvent((serverEvent, sequence, response) -> serverEvent.set(response), request);
@@ -57,13 +57,24 @@ public class ProxyResponseHandler implements NotificationHandler, WorkHandler<Se
         this.proxyClient = webSocketKafkaProxyClient;
     }
 
+    /**
+     * Creates handler which sends requests with given client, its lifecycle is managed by the caller.
+     */
+    public ProxyResponseHandler(Gson gson, String requestTopic, String replyToTopic, ProxyClient proxyClient, RequestResponseMatcher requestResponseMatcher) {
+        this.gson = gson;
+        this.requestTopic = requestTopic;
+        this.replyToTopic = replyToTopic;
+        this.requestResponseMatcher = requestResponseMatcher;
+        this.proxyClient = proxyClient;
+    }
+
     public void start() {
         proxyClient.start();
     }
 
     @Override
     public void handle(String message, ProxyClient client) {
-        logger.debug("Received message from proxy client: " + message);
+        logger.debug("Received message from proxy client: {}", message);
         final Response response = gson.fromJson(message, Response.class);
 
         requestResponseMatcher.offerResponse(response);
@@ -77,7 +88,7 @@ public class ProxyResponseHandler implements NotificationHandler, WorkHandler<Se
         }
         request.setReplyTo(replyToTopic);
 
-        proxyClient.push(ProxyMessageBuilder.notification(
-                new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())));
+        proxyClient.send(ProxyMessageBuilder.notification(
+                new NotificationCreatePayload(requestTopic, gson.toJson(request), request.getPartitionKey())), null);
     }
 }
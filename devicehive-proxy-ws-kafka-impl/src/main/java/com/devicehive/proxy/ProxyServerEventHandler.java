@@ -26,8 +26,6 @@ import com.devicehive.proxy.api.ProxyClient;
 import com.devicehive.proxy.api.ProxyMessage;
 import com.devicehive.proxy.api.ProxyMessageBuilder;
 import com.devicehive.proxy.api.payload.NotificationCreatePayload;
-import com.devicehive.proxy.client.WebSocketKafkaProxyClient;
-import com.devicehive.proxy.config.WebSocketKafkaProxyConfig;
 import com.devicehive.shim.api.Action;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
@@ -53,13 +51,10 @@ public class ProxyServerEventHandler implements WorkHandler<ServerEvent> {
     private final HandlersMapper requestHandlersMapper;
 
     @Autowired
-    public ProxyServerEventHandler(Gson gson, WebSocketKafkaProxyConfig proxyConfig, HandlersMapper requestHandlersMapper) {
+    public ProxyServerEventHandler(Gson gson, ProxyClient proxyClient, HandlersMapper requestHandlersMapper) {
         this.gson = gson;
         this.requestHandlersMapper = requestHandlersMapper;
-        WebSocketKafkaProxyClient webSocketKafkaProxyClient = new WebSocketKafkaProxyClient((message, client) -> {});
-        webSocketKafkaProxyClient.setWebSocketKafkaProxyConfig(proxyConfig);
-        this.proxyClient = webSocketKafkaProxyClient;
-        this.proxyClient.start();
+        this.proxyClient = proxyClient;
     }
 
     @Override
@@ -88,7 +83,7 @@ public class ProxyServerEventHandler implements WorkHandler<ServerEvent> {
         // set correlationId explicitly to prevent missing it in request
         response.setCorrelationId(request.getCorrelationId());
         ProxyMessage responseMessage = ProxyMessageBuilder.notification(new NotificationCreatePayload(replyTo, gson.toJson(response)));
-        proxyClient.push(responseMessage);
+        proxyClient.send(responseMessage, request.getCorrelationId());
     }
 
     private Response handleClientRequest(Request request) {
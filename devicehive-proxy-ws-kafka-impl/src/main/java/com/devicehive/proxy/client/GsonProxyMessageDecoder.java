@@ -23,25 +23,32 @@ package com.devicehive.proxy.client;
 import com.devicehive.proxy.api.ProxyMessage;
 import com.devicehive.proxy.api.payload.HealthPayload;
 import com.devicehive.proxy.api.payload.MessagePayload;
+import com.devicehive.proxy.api.payload.Payload;
 import com.devicehive.proxy.api.payload.SubscribePayload;
 import com.devicehive.proxy.api.payload.TopicsPayload;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import javax.websocket.DecodeException;
 import javax.websocket.Decoder;
 import javax.websocket.EndpointConfig;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Decodes frame of a single message or an array of messages in one streaming pass, without building JSON tree
+ * of the frame. Payload is read straight into its class when the type and status of the message precede it,
+ * otherwise its tree is kept until the end of the message.
+ */
 public class GsonProxyMessageDecoder implements Decoder.Text<List<ProxyMessage>> {
 
-    private static final JsonParser parser = new JsonParser();
     private static final Gson gson = new Gson();
 
     public GsonProxyMessageDecoder() {
@@ -49,14 +56,23 @@ public class GsonProxyMessageDecoder implements Decoder.Text<List<ProxyMessage>>
 
     @Override
     public List<ProxyMessage> decode(String s) throws DecodeException {
-        JsonElement object = parser.parse(s);
-        if (object instanceof JsonArray) {
-            List<ProxyMessage> list = new ArrayList<>();
-            object.getAsJsonArray().forEach(elem -> list.add(buildMessage(elem.getAsJsonObject())));
-            return list;
-        }
-        if (object instanceof JsonObject) {
-            return Collections.singletonList(buildMessage(object.getAsJsonObject()));
+        try {
+            final JsonReader reader = new JsonReader(new StringReader(s));
+            final JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_ARRAY) {
+                List<ProxyMessage> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readMessage(reader));
+                }
+                reader.endArray();
+                return list;
+            }
+            if (token == JsonToken.BEGIN_OBJECT) {
+                return Collections.singletonList(readMessage(reader));
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonParseException(String.format("Cannot deserialize ProxyMessage from '%s'", s), e);
         }
         throw new JsonParseException(String.format("Cannot deserialize ProxyMessage from '%s'", s));
     }
@@ -76,47 +92,102 @@ public class GsonProxyMessageDecoder implements Decoder.Text<List<ProxyMessage>>
 
     }
 
-    @SuppressWarnings("unchecked")
-    private ProxyMessage buildMessage(JsonObject object) {
-        JsonElement t = object.get("t");
-        JsonElement a = object.get("a");
+    private ProxyMessage readMessage(JsonReader reader) throws IOException {
+        String id = null;
+        String t = null;
+        String a = null;
+        Integer status = null;
+        boolean statusRead = false;
+        Payload payload = null;
+        JsonElement deferredPayload = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextString(reader);
+                    break;
+                case "t":
+                    t = nextString(reader);
+                    break;
+                case "a":
+                    a = nextString(reader);
+                    break;
+                case "s":
+                    status = nextInteger(reader);
+                    statusRead = true;
+                    break;
+                case "p":
+                    if (t != null && statusRead) {
+                        final Class<? extends Payload> payloadClass = getPayloadClass(t, a, status);
+                        if (payloadClass != null) {
+                            payload = gson.fromJson(reader, payloadClass);
+                        } else {
+                            // action may still follow
+                            deferredPayload = JsonParser.parseReader(reader);
+                        }
+                    } else {
+                        deferredPayload = JsonParser.parseReader(reader);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
         if (t == null) {
             throw new JsonParseException("Cannot deserialize ProxyMessage because it does not define a field named 't'");
         }
-        String type = object.get("t").getAsString();
-        if (a != null) {
-            type += "/" + a.getAsString();
+        if (deferredPayload != null && !deferredPayload.isJsonNull()) {
+            final Class<? extends Payload> payloadClass = getPayloadClass(t, a, status);
+            if (payloadClass != null) {
+                payload = gson.fromJson(deferredPayload, payloadClass);
+            }
         }
 
-        Integer status = object.get("s") != null ? object.get("s").getAsInt() : null;
-        ProxyMessage.Builder decoded = ProxyMessage.newBuilder()
-                .withId(object.get("id") != null ? object.get("id").getAsString() : null)
-                .withType(t.getAsString())
-                .withAction(a != null ? a.getAsString() : null)
-                .withStatus(status);
-        if (object.get("p") != null) {
-            if (status != null && status == 0) {
-                switch (type) {
-                    case "topic/create":
-                        decoded.withPayload(gson.fromJson(object.get("p"), TopicsPayload.class));
-                        break;
-                    case "topic/list":
-                        decoded.withPayload(gson.fromJson(object.get("p"), TopicsPayload.class));
-                        break;
-                    case "topic/subscribe":
-                        decoded.withPayload(gson.fromJson(object.get("p"), SubscribePayload.class));
-                        break;
-                    case "notif":
-                        decoded.withPayload(gson.fromJson(object.get("p"), MessagePayload.class));
-                        break;
-                    case "health":
-                        decoded.withPayload(gson.fromJson(object.get("p"), HealthPayload.class));
-                        break;
-                }
-            } else {
-                decoded.withPayload(gson.fromJson(object.get("p"), MessagePayload.class));
-            }
+        return ProxyMessage.newBuilder()
+                .withId(id)
+                .withType(t)
+                .withAction(a)
+                .withStatus(status)
+                .withPayload(payload)
+                .build();
+    }
+
+    private static Class<? extends Payload> getPayloadClass(String t, String a, Integer status) {
+        if (status == null || status != 0) {
+            return MessagePayload.class;
+        }
+        final String type = a != null ? t + "/" + a : t;
+        switch (type) {
+            case "topic/create":
+            case "topic/list":
+                return TopicsPayload.class;
+            case "topic/subscribe":
+                return SubscribePayload.class;
+            case "notif":
+                return MessagePayload.class;
+            case "health":
+                return HealthPayload.class;
+            default:
+                return null;
+        }
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Integer nextInteger(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
         }
-        return decoded.build();
+        return reader.nextInt();
     }
 }
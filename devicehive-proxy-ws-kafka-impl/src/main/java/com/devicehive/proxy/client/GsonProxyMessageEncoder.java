@@ -26,6 +26,7 @@ import com.google.gson.Gson;
 import javax.websocket.EncodeException;
 import javax.websocket.Encoder;
 import javax.websocket.EndpointConfig;
+import java.util.List;
 
 public class GsonProxyMessageEncoder implements Encoder.Text<ProxyMessage> {
 
@@ -39,6 +40,13 @@ public class GsonProxyMessageEncoder implements Encoder.Text<ProxyMessage> {
         return gson.toJson(message);
     }
 
+    /**
+     * Encodes messages as one array frame, single message is encoded as is.
+     */
+    public String encode(List<ProxyMessage> messages) {
+        return messages.size() == 1 ? gson.toJson(messages.get(0)) : gson.toJson(messages);
+    }
+
     @Override
     public void init(EndpointConfig config) {
 
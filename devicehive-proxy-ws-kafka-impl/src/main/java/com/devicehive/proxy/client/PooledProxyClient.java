@@ -0,0 +1,119 @@
+package com.devicehive.proxy.client;
+
+/*
+ * #%L
+ * DeviceHive Proxy WebSocket Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.proxy.api.NotificationHandler;
+import com.devicehive.proxy.api.ProxyClient;
+import com.devicehive.proxy.api.ProxyMessage;
+import com.devicehive.proxy.api.payload.NotificationCreatePayload;
+import com.devicehive.proxy.config.WebSocketKafkaProxyConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Spreads outgoing messages over a fixed set of proxy sessions. Messages are hashed by ordering key, which defaults
+ * to the partition key of a notification, so messages of the same device keep their order.
+ */
+public class PooledProxyClient extends ProxyClient implements MeterBinder {
+
+    private final List<WebSocketKafkaProxyClient> clients;
+
+    public PooledProxyClient(NotificationHandler notificationHandler, WebSocketKafkaProxyConfig proxyConfig) {
+        super(notificationHandler);
+        final int size = Math.max(1, proxyConfig.getConnectionPoolSize());
+        this.clients = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            WebSocketKafkaProxyClient client = new WebSocketKafkaProxyClient(notificationHandler);
+            client.setWebSocketKafkaProxyConfig(proxyConfig);
+            clients.add(client);
+        }
+    }
+
+    @Override
+    public void start() {
+        clients.forEach(WebSocketKafkaProxyClient::start);
+    }
+
+    @Override
+    public void shutdown() {
+        clients.forEach(WebSocketKafkaProxyClient::shutdown);
+    }
+
+    @Override
+    public CompletableFuture<ProxyMessage> push(ProxyMessage message) {
+        return push(message, null);
+    }
+
+    @Override
+    public CompletableFuture<ProxyMessage> push(ProxyMessage message, String orderingKey) {
+        return getClient(message, orderingKey).push(message);
+    }
+
+    @Override
+    public void send(ProxyMessage message, String orderingKey) {
+        getClient(message, orderingKey).send(message, orderingKey);
+    }
+
+    public int getPendingCount() {
+        return clients.stream().mapToInt(WebSocketKafkaProxyClient::getPendingCount).sum();
+    }
+
+    public long getExpiredCount() {
+        return clients.stream().mapToLong(WebSocketKafkaProxyClient::getExpiredCount).sum();
+    }
+
+    public long getRejectedCount() {
+        return clients.stream().mapToLong(WebSocketKafkaProxyClient::getRejectedCount).sum();
+    }
+
+    public long getSetupEvictedCount() {
+        return clients.stream().mapToLong(WebSocketKafkaProxyClient::getSetupEvictedCount).sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("devicehive.proxy.pending", this, PooledProxyClient::getPendingCount)
+                .register(registry);
+        FunctionCounter.builder("devicehive.proxy.pending.expired", this, PooledProxyClient::getExpiredCount)
+                .register(registry);
+        FunctionCounter.builder("devicehive.proxy.pending.rejected", this, PooledProxyClient::getRejectedCount)
+                .register(registry);
+        FunctionCounter.builder("devicehive.proxy.setup.evicted", this, PooledProxyClient::getSetupEvictedCount)
+                .register(registry);
+    }
+
+    private WebSocketKafkaProxyClient getClient(ProxyMessage message, String orderingKey) {
+        String key = orderingKey;
+        if (key == null && message.getPayload() instanceof NotificationCreatePayload) {
+            key = ((NotificationCreatePayload) message.getPayload()).getPartition();
+        }
+        if (key == null) {
+            key = message.getId();
+        }
+        return clients.get(Math.floorMod(key.hashCode(), clients.size()));
+    }
+}
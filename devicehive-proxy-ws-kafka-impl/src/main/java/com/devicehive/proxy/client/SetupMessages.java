@@ -0,0 +1,98 @@
+package com.devicehive.proxy.client;
+
+/*
+ * #%L
+ * DeviceHive Proxy WebSocket Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.proxy.api.ProxyMessage;
+import com.devicehive.proxy.api.ProxyMessageBuilder;
+import com.devicehive.proxy.api.payload.SubscribePayload;
+import com.devicehive.proxy.api.payload.TopicsPayload;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Topic creations and subscriptions to re-issue after reconnection, one message per topic and subscription group.
+ * Repeated ones replace the earlier, unsubscription forgets all subscriptions. Up to max entries are kept,
+ * beyond that the eldest are evicted and counted.
+ */
+class SetupMessages {
+
+    private static final String TOPIC = "topic";
+    private static final String CREATE = "create";
+    private static final String SUBSCRIBE = "subscribe";
+    private static final String UNSUBSCRIBE = "unsubscribe";
+
+    private final Map<String, ProxyMessage> messages;
+    private final LongAdder evicted = new LongAdder();
+
+    SetupMessages(int max) {
+        this.messages = new LinkedHashMap<String, ProxyMessage>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ProxyMessage> eldest) {
+                if (size() > max) {
+                    evicted.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized void record(ProxyMessage message) {
+        if (!TOPIC.equals(message.getType())) {
+            return;
+        }
+        if (CREATE.equals(message.getAction()) && message.getPayload() instanceof TopicsPayload) {
+            for (String topic : ((TopicsPayload) message.getPayload()).getTopics()) {
+                put(CREATE + '/' + topic, ProxyMessageBuilder.create(new TopicsPayload(topic)));
+            }
+        } else if (SUBSCRIBE.equals(message.getAction()) && message.getPayload() instanceof SubscribePayload) {
+            final SubscribePayload payload = (SubscribePayload) message.getPayload();
+            for (String topic : payload.getTopics()) {
+                put(SUBSCRIBE + '/' + payload.getSubscriptionGroup() + '/' + topic,
+                        ProxyMessageBuilder.subscribe(new SubscribePayload(topic, payload.getSubscriptionGroup())));
+            }
+        } else if (UNSUBSCRIBE.equals(message.getAction())) {
+            messages.keySet().removeIf(key -> key.startsWith(SUBSCRIBE + '/'));
+        }
+    }
+
+    synchronized List<ProxyMessage> snapshot() {
+        return new ArrayList<>(messages.values());
+    }
+
+    synchronized int size() {
+        return messages.size();
+    }
+
+    long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    private void put(String key, ProxyMessage message) {
+        // re-inserted to move the key to the youngest position
+        messages.remove(key);
+        messages.put(key, message);
+    }
+}
@@ -32,11 +32,29 @@ import org.slf4j.LoggerFactory;
 import javax.websocket.*;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Client of a single proxy session. Pushed messages are queued and written by a sender thread, which coalesces
+ * messages queued while the previous frame was being written into one array frame. Writes are blocking, so when
+ * the session cannot keep up, the queue fills and pushing blocks.
+ * Replies of the proxy are tracked for pushed messages only, each for limited time and up to a limited count.
+ * When the connection is lost, the client reconnects with jittered backoff and re-issues topic creations and
+ * subscriptions sent so far, see {@link SetupMessages}, meanwhile messages are kept in the queue and sent once reconnected.
+ */
 @ClientEndpoint(
         decoders = GsonProxyMessageDecoder.class,
         encoders = GsonProxyMessageEncoder.class
@@ -45,10 +63,28 @@ public class WebSocketKafkaProxyClient extends ProxyClient {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketKafkaProxyClient.class);
 
+    private static final long MIN_RECONNECT_DELAY = 100;
+    private static final long MAX_RECONNECT_DELAY = 5000;
+
+    private static final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "proxy-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private WebSocketKafkaProxyConfig webSocketKafkaProxyConfig;
     private Map<String, CompletableFuture<ProxyMessage>> futureMap;
     private Map<String, Boolean> ackReceived;
-    private Session session;
+    private volatile Session session;
+    private BlockingQueue<ProxyMessage> outbound;
+    private Thread sender;
+    private final GsonProxyMessageEncoder encoder = new GsonProxyMessageEncoder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private SetupMessages setupMessages;
+    private final Object connectionLock = new Object();
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private volatile boolean closed;
 
     public WebSocketKafkaProxyClient(NotificationHandler notificationHandler) {
         super(notificationHandler);
@@ -61,8 +97,12 @@ public class WebSocketKafkaProxyClient extends ProxyClient {
             if (webSocketKafkaProxyConfig.getAckEnable()) {
                 this.ackReceived = new ConcurrentHashMap<>();
             }
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            this.session = container.connectToServer(this, new URI("ws://" + webSocketKafkaProxyConfig.getProxyConnect()));
+            this.outbound = new LinkedBlockingQueue<>(webSocketKafkaProxyConfig.getSendQueueSize());
+            this.setupMessages = new SetupMessages(webSocketKafkaProxyConfig.getSetupMax());
+            setSession(connect());
+            this.sender = new Thread(this::sendLoop, "proxy-sender-" + session.getId());
+            this.sender.setDaemon(true);
+            this.sender.start();
         } catch (Exception e) {
             logger.error("Error during establishing connection: ", e);
             throw new RuntimeException(e);
@@ -71,8 +111,16 @@ public class WebSocketKafkaProxyClient extends ProxyClient {
 
     @Override
     public void shutdown() {
+        closed = true;
+        if (sender != null) {
+            sender.interrupt();
+        }
+        final Session current = session;
+        if (current == null) {
+            return;
+        }
         try {
-            session.close();
+            current.close();
         } catch (IOException e) {
             logger.error("Error during closing connection: ", e);
         }
@@ -80,28 +128,200 @@ public class WebSocketKafkaProxyClient extends ProxyClient {
 
     @Override
     public CompletableFuture<ProxyMessage> push(ProxyMessage message) {
-        this.session.getAsyncRemote().sendObject(message);
-
-        CompletableFuture<ProxyMessage> future = new CompletableFuture<>();
-        futureMap.put(message.getId(), future);
-        logger.debug("Message {} was sent", message);
+        final String id = message.getId();
+        final CompletableFuture<ProxyMessage> future = new CompletableFuture<>();
+        if (futureMap.size() >= webSocketKafkaProxyConfig.getPendingMax()) {
+            rejected.increment();
+            future.completeExceptionally(new HiveException("Too many messages are waiting for reply of the proxy"));
+            return future;
+        }
+        futureMap.put(id, future);
+        future.orTimeout(webSocketKafkaProxyConfig.getReplyTimeout(), TimeUnit.MILLISECONDS)
+                .whenComplete((reply, e) -> {
+                    if (e instanceof TimeoutException) {
+                        expired.increment();
+                        logger.warn("No reply of the proxy received for message {}", id);
+                    }
+                    if (e != null) {
+                        futureMap.remove(id, future);
+                        if (ackReceived != null) {
+                            ackReceived.remove(id);
+                        }
+                    }
+                });
+        enqueue(message);
         return future;
     }
 
+    @Override
+    public void send(ProxyMessage message, String orderingKey) {
+        enqueue(message);
+    }
+
+    public int getPendingCount() {
+        return futureMap != null ? futureMap.size() : 0;
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getSetupEvictedCount() {
+        return setupMessages != null ? setupMessages.getEvictedCount() : 0;
+    }
+
+    /**
+     * Queues message, waiting for free space up to reply timeout, which bounds buffering while reconnecting.
+     */
+    private void enqueue(ProxyMessage message) {
+        try {
+            if (!outbound.offer(message, webSocketKafkaProxyConfig.getReplyTimeout(), TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                logger.warn("Send queue is full, message {} was dropped", message.getId());
+                fail(message, new HiveException("Send queue of the proxy session is full"));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(message, e);
+            return;
+        }
+        logger.debug("Message {} was queued", message);
+    }
+
+    private void sendLoop() {
+        final int batchSize = Math.max(1, webSocketKafkaProxyConfig.getSendBatchSize());
+        final List<ProxyMessage> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(outbound.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            outbound.drainTo(batch, batchSize - 1);
+            try {
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes batch to the current session, waiting for reconnection as long as it takes.
+     */
+    private void write(List<ProxyMessage> batch) throws InterruptedException {
+        while (true) {
+            final Session current = awaitSession();
+            try {
+                current.getBasicRemote().sendText(encoder.encode(batch));
+                logger.debug("{} messages were sent", batch.size());
+                batch.forEach(setupMessages::record);
+                return;
+            } catch (IOException e) {
+                logger.warn("Error during sending {} messages, they are kept till reconnection: {}", batch.size(), e.getMessage());
+                connectionLost(current);
+            }
+        }
+    }
+
+    private Session connect() throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        return container.connectToServer(this, new URI("ws://" + webSocketKafkaProxyConfig.getProxyConnect()));
+    }
+
+    private Session awaitSession() throws InterruptedException {
+        synchronized (connectionLock) {
+            while (session == null) {
+                connectionLock.wait();
+            }
+            return session;
+        }
+    }
+
+    private void setSession(Session session) {
+        synchronized (connectionLock) {
+            this.session = session;
+            connectionLock.notifyAll();
+        }
+    }
+
+    private void connectionLost(Session lost) {
+        synchronized (connectionLock) {
+            if (session != lost) {
+                return;
+            }
+            session = null;
+        }
+        try {
+            lost.close();
+        } catch (IOException e) {
+            logger.debug("Error during closing lost connection: {}", e.getMessage());
+        }
+        if (!closed && reconnecting.compareAndSet(false, true)) {
+            scheduleReconnect(0);
+        }
+    }
+
+    private void scheduleReconnect(int attempt) {
+        final long delay = Math.min(MAX_RECONNECT_DELAY, MIN_RECONNECT_DELAY << Math.min(attempt, 16));
+        final long jitteredDelay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        reconnector.schedule(() -> reconnect(attempt), jitteredDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect(int attempt) {
+        if (closed) {
+            return;
+        }
+        Session reconnected = null;
+        try {
+            reconnected = connect();
+            final List<ProxyMessage> setup = setupMessages.snapshot();
+            if (!setup.isEmpty()) {
+                reconnected.getBasicRemote().sendText(encoder.encode(setup));
+            }
+        } catch (Exception e) {
+            logger.warn("Reconnection to proxy failed, attempt {}: {}", attempt + 1, e.getMessage());
+            if (reconnected != null) {
+                try {
+                    reconnected.close();
+                } catch (IOException ex) {
+                    logger.debug("Error during closing connection: {}", ex.getMessage());
+                }
+            }
+            scheduleReconnect(attempt + 1);
+            return;
+        }
+        reconnecting.set(false);
+        setSession(reconnected);
+        logger.info("Reconnected to proxy with session {}, {} topic creations and subscriptions re-issued",
+                reconnected.getId(), setupMessages.size());
+        if (!reconnected.isOpen()) {
+            connectionLost(reconnected);
+        }
+    }
+
+    private void fail(ProxyMessage message, Throwable e) {
+        CompletableFuture<ProxyMessage> future = futureMap.remove(message.getId());
+        if (future != null) {
+            future.completeExceptionally(e);
+        }
+    }
+
     @OnOpen
     public void onOpen(Session session) {
-        this.session = session;
         logger.info("New WebSocket session established: {}", session.getId());
     }
 
     @OnClose
     public void onClose(Session userSession, CloseReason reason) {
-        logger.info("WebSocket session {} closed, close code {}", session.getId(), reason.getCloseCode());
-        this.session = null;
-        futureMap.clear();
-        if (webSocketKafkaProxyConfig.getAckEnable()) {
-            ackReceived.clear();
-        }
+        logger.info("WebSocket session {} closed, close code {}", userSession.getId(), reason.getCloseCode());
+        connectionLost(userSession);
     }
 
     @OnMessage
@@ -29,6 +29,7 @@ import com.devicehive.proxy.ProxyServerEventHandler;
 import com.devicehive.proxy.api.NotificationHandler;
 import com.devicehive.proxy.api.ProxyClient;
 import com.devicehive.proxy.api.ProxyMessageBuilder;
+import com.devicehive.proxy.client.PooledProxyClient;
 import com.devicehive.proxy.api.payload.SubscribePayload;
 import com.devicehive.proxy.api.payload.TopicsPayload;
 import com.devicehive.proxy.client.WebSocketKafkaProxyClient;
@@ -58,10 +59,17 @@ public class BackendProxyClientConfig {
     private WebSocketKafkaProxyConfig proxyConfig;
 
     @Bean
-    public WorkerPool<ServerEvent> workerPool(Gson gson, WebSocketKafkaProxyConfig proxyConfig, HandlersMapper requestHandlersMapper) {
+    public ProxyClient proxyClient(WebSocketKafkaProxyConfig proxyConfig) {
+        ProxyClient client = new PooledProxyClient((message, proxyClient) -> {}, proxyConfig);
+        client.start();
+        return client;
+    }
+
+    @Bean
+    public WorkerPool<ServerEvent> workerPool(Gson gson, ProxyClient proxyClient, HandlersMapper requestHandlersMapper) {
         final ProxyServerEventHandler[] workHandlers = new ProxyServerEventHandler[proxyConfig.getWorkerThreads()];
         IntStream.range(0, proxyConfig.getWorkerThreads()).forEach(
-                nbr -> workHandlers[nbr] = new ProxyServerEventHandler(gson, proxyConfig, requestHandlersMapper)
+                nbr -> workHandlers[nbr] = new ProxyServerEventHandler(gson, proxyClient, requestHandlersMapper)
         );
         final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, proxyConfig.getBufferSize(), getWaitStrategy());
         final SequenceBarrier barrier = ringBuffer.newBarrier();
@@ -93,8 +101,8 @@ public class BackendProxyClientConfig {
     }
 
     @Bean
-    public MessageDispatcher messageDispatcher(Gson gson, WebSocketKafkaProxyConfig proxyConfig) {
-        return new ProxyMessageDispatcher(gson, proxyConfig);
+    public MessageDispatcher messageDispatcher(Gson gson, ProxyClient proxyClient) {
+        return new ProxyMessageDispatcher(gson, proxyClient);
     }
 
     @Bean
@@ -20,11 +20,14 @@ package com.devicehive.proxy.config;
  * #L%
  */
 
+import com.devicehive.api.CoalescingRpcClient;
 import com.devicehive.api.RequestResponseMatcher;
 import com.devicehive.model.ServerEvent;
 import com.devicehive.proxy.FrontendProxyClient;
 import com.devicehive.proxy.ProxyResponseHandler;
 import com.devicehive.proxy.api.NotificationHandler;
+import com.devicehive.proxy.api.ProxyClient;
+import com.devicehive.proxy.client.PooledProxyClient;
 import com.devicehive.shim.api.client.RpcClient;
 import com.google.gson.Gson;
 import com.lmax.disruptor.BlockingWaitStrategy;
@@ -66,25 +69,40 @@ public class FrontendProxyClientConfig {
         RESPONSE_TOPIC = responseTopicPrefix + UUID.randomUUID();
     }
 
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
+    @Value("${rpc.client.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${rpc.client.coalescing.cache-ttl.ms:0}")
+    private long coalescingCacheTtl;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
+    }
+
+    @Bean
+    public ProxyClient proxyClient(WebSocketKafkaProxyConfig proxyConfig) {
+        ProxyClient client = new PooledProxyClient((message, proxyClient) -> {}, proxyConfig);
+        client.start();
+        return client;
     }
 
     @Bean
-    public NotificationHandler notificationHandler(Gson gson, RequestResponseMatcher requestResponseMatcher, WebSocketKafkaProxyConfig proxyConfig) {
-        return new ProxyResponseHandler(gson, REQUEST_TOPIC, RESPONSE_TOPIC, proxyConfig, requestResponseMatcher);
+    public NotificationHandler notificationHandler(Gson gson, RequestResponseMatcher requestResponseMatcher, ProxyClient proxyClient) {
+        return new ProxyResponseHandler(gson, REQUEST_TOPIC, RESPONSE_TOPIC, proxyClient, requestResponseMatcher);
     }
 
     @Bean
-    public WorkerPool<ServerEvent> workerPool(Gson gson, RequestResponseMatcher requestResponseMatcher, WebSocketKafkaProxyConfig proxyConfig) {
+    public WorkerPool<ServerEvent> workerPool(Gson gson, RequestResponseMatcher requestResponseMatcher, WebSocketKafkaProxyConfig proxyConfig, ProxyClient proxyClient) {
         final ProxyResponseHandler[] workHandlers = new ProxyResponseHandler[proxyConfig.getWorkerThreads()];
         IntStream.range(0, proxyConfig.getWorkerThreads()).forEach(
-                nbr -> {
-                    ProxyResponseHandler handler = new ProxyResponseHandler(gson, REQUEST_TOPIC, RESPONSE_TOPIC, proxyConfig, requestResponseMatcher);
-                    handler.start();
-                    workHandlers[nbr] = handler;
-                }
+                nbr -> workHandlers[nbr] = new ProxyResponseHandler(gson, REQUEST_TOPIC, RESPONSE_TOPIC, proxyClient, requestResponseMatcher)
         );
         final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, proxyConfig.getBufferSize(), getWaitStrategy(proxyConfig.getWaitStrategy()));
         final SequenceBarrier barrier = ringBuffer.newBarrier();
@@ -94,12 +112,12 @@ public class FrontendProxyClientConfig {
     }
 
     @Bean
-    public RpcClient rpcClient(NotificationHandler notificationHandler, WebSocketKafkaProxyConfig proxyConfig, RequestResponseMatcher requestResponseMatcher, Gson gson, WorkerPool<ServerEvent> workerPool) {
+    public RpcClient rpcClient(NotificationHandler notificationHandler, WebSocketKafkaProxyConfig proxyConfig, ProxyClient proxyClient, RequestResponseMatcher requestResponseMatcher, Gson gson, WorkerPool<ServerEvent> workerPool) {
         final ExecutorService execService = Executors.newFixedThreadPool(proxyConfig.getWorkerThreads());
         RingBuffer<ServerEvent> ringBuffer = workerPool.start(execService);
-        RpcClient client = new FrontendProxyClient(REQUEST_TOPIC, RESPONSE_TOPIC, proxyConfig, notificationHandler, requestResponseMatcher, gson, ringBuffer);
+        RpcClient client = new FrontendProxyClient(REQUEST_TOPIC, RESPONSE_TOPIC, proxyConfig, proxyClient, notificationHandler, requestResponseMatcher, gson, ringBuffer);
         client.start();
-        return client;
+        return coalescingEnabled ? new CoalescingRpcClient(client, gson, coalescingCacheTtl) : client;
     }
 
     private WaitStrategy getWaitStrategy(String strategy) {
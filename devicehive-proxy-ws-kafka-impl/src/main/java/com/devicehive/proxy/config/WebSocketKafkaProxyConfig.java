@@ -49,6 +49,24 @@ public class WebSocketKafkaProxyConfig {
     @Value("${proxy.ack.enable:false}")
     private boolean ackEnable;
 
+    @Value("${proxy.connection.pool-size:3}")
+    private int connectionPoolSize;
+
+    @Value("${proxy.send.batch-size:100}")
+    private int sendBatchSize;
+
+    @Value("${proxy.send.queue-size:10000}")
+    private int sendQueueSize;
+
+    @Value("${proxy.reply.timeout.ms:30000}")
+    private long replyTimeout;
+
+    @Value("${proxy.pending.max:100000}")
+    private int pendingMax;
+
+    @Value("${proxy.setup.max:10000}")
+    private int setupMax;
+
     public String getProxyConnect() {
         return proxyConnect;
     }
@@ -76,4 +94,28 @@ public class WebSocketKafkaProxyConfig {
     public boolean getAckEnable() {
         return ackEnable;
     }
+
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public int getSendBatchSize() {
+        return sendBatchSize;
+    }
+
+    public int getSendQueueSize() {
+        return sendQueueSize;
+    }
+
+    public long getReplyTimeout() {
+        return replyTimeout;
+    }
+
+    public int getPendingMax() {
+        return pendingMax;
+    }
+
+    public int getSetupMax() {
+        return setupMax;
+    }
 }
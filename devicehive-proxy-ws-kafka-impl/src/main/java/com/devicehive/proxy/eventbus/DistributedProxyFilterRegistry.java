@@ -75,7 +75,20 @@ public class DistributedProxyFilterRegistry extends FilterRegistry {
     @Override
     public void unregister(Subscriber subscriber) {
         processUnregister(subscriber);
+        pushUnregister(subscriber);
+    }
+
+    @Override
+    public void unregister(Collection<Long> subscriptionIds) {
+        processUnregister(subscriptionIds);
+
+        // one message per subscription, as other nodes expect UNREGISTER to carry a subscriber
+        for (Long subscriptionId : subscriptionIds) {
+            pushUnregister(new Subscriber(subscriptionId, null, null));
+        }
+    }
 
+    private void pushUnregister(Subscriber subscriber) {
         String subscribeMessage = gson.toJson(new SubscribeMessage(UNREGISTER, subscriber));
         proxyClient.push(ProxyMessageBuilder.notification(
                 new NotificationCreatePayload(SUBSCRIPTION_TOPIC, subscribeMessage))).thenAccept(message -> {
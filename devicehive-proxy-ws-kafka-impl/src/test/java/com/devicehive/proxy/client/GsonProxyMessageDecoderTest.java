@@ -0,0 +1,146 @@
+package com.devicehive.proxy.client;
+
+/*
+ * #%L
+ * DeviceHive Proxy WebSocket Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.proxy.api.ProxyMessage;
+import com.devicehive.proxy.api.payload.HealthPayload;
+import com.devicehive.proxy.api.payload.MessagePayload;
+import com.devicehive.proxy.api.payload.SubscribePayload;
+import com.devicehive.proxy.api.payload.TopicsPayload;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.DecodeException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GsonProxyMessageDecoderTest {
+
+    private final GsonProxyMessageDecoder decoder = new GsonProxyMessageDecoder();
+
+    @Test
+    public void shouldDecodePayloadAfterTypeAndStatus() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"id\":\"1\",\"t\":\"topic\",\"a\":\"create\",\"s\":0,\"p\":{\"t\":[\"a\",\"b\"]}}");
+
+        assertTopic(message, "1", "create");
+        assertEquals(List.of("a", "b"), ((TopicsPayload) message.getPayload()).getTopics());
+    }
+
+    @Test
+    public void shouldDecodePayloadBeforeTypeAndStatus() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"p\":{\"t\":[\"a\",\"b\"]},\"s\":0,\"a\":\"create\",\"t\":\"topic\",\"id\":\"1\"}");
+
+        assertTopic(message, "1", "create");
+        assertEquals(List.of("a", "b"), ((TopicsPayload) message.getPayload()).getTopics());
+    }
+
+    @Test
+    public void shouldDecodePayloadBetweenTypeAndStatus() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"t\":\"topic\",\"a\":\"subscribe\",\"p\":{\"t\":[\"a\"],\"sg\":\"g\"},\"s\":0,\"id\":\"1\"}");
+
+        assertTopic(message, "1", "subscribe");
+        SubscribePayload payload = (SubscribePayload) message.getPayload();
+        assertEquals(List.of("a"), payload.getTopics());
+        assertEquals("g", payload.getSubscriptionGroup());
+    }
+
+    @Test
+    public void shouldDecodeActionAfterPayload() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"t\":\"topic\",\"s\":0,\"p\":{\"t\":[\"a\"],\"sg\":\"g\"},\"a\":\"subscribe\",\"id\":\"1\"}");
+
+        assertTopic(message, "1", "subscribe");
+        assertInstanceOf(SubscribePayload.class, message.getPayload());
+    }
+
+    @Test
+    public void shouldDecodeFailurePayloadAsMessageInAnyOrder() throws DecodeException {
+        ProxyMessage before = decodeSingle("{\"p\":{\"m\":\"error\"},\"t\":\"topic\",\"a\":\"create\",\"s\":1}");
+        ProxyMessage after = decodeSingle("{\"t\":\"topic\",\"a\":\"create\",\"s\":1,\"p\":{\"m\":\"error\"}}");
+
+        assertEquals("error", ((MessagePayload) before.getPayload()).getMessage());
+        assertEquals("error", ((MessagePayload) after.getPayload()).getMessage());
+        assertEquals(Integer.valueOf(1), before.getStatus());
+    }
+
+    @Test
+    public void shouldDecodeNotificationWithoutStatus() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"p\":{\"m\":\"value\"},\"t\":\"notif\"}");
+
+        assertEquals("notif", message.getType());
+        assertNull(message.getStatus());
+        assertEquals("value", ((MessagePayload) message.getPayload()).getMessage());
+    }
+
+    @Test
+    public void shouldDecodeHealthPayload() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"p\":{\"prx\":\"Available\",\"mbfp\":12.5},\"s\":0,\"t\":\"health\"}");
+
+        HealthPayload payload = (HealthPayload) message.getPayload();
+        assertEquals("Available", payload.getProxyStatus());
+        assertEquals(Double.valueOf(12.5), payload.getMessageBufferFillPercentage());
+    }
+
+    @Test
+    public void shouldSkipUnknownFieldsAndPayloads() throws DecodeException {
+        ProxyMessage message = decodeSingle("{\"x\":{\"y\":[1,2]},\"t\":\"topic\",\"a\":\"unsubscribe\",\"s\":0,\"p\":{\"z\":1}}");
+
+        assertEquals("unsubscribe", message.getAction());
+        assertNull(message.getPayload());
+    }
+
+    @Test
+    public void shouldDecodeArrayOfMessagesInOrder() throws DecodeException {
+        List<ProxyMessage> messages = decoder.decode("[{\"id\":\"1\",\"t\":\"topic\",\"a\":\"create\",\"s\":0,\"p\":{\"t\":[\"a\"]}},"
+                + "{\"p\":{\"m\":\"value\"},\"t\":\"notif\",\"id\":\"2\"},"
+                + "{\"id\":\"3\",\"t\":\"health\",\"s\":0,\"p\":null}]");
+
+        assertEquals(3, messages.size());
+        assertEquals("1", messages.get(0).getId());
+        assertInstanceOf(TopicsPayload.class, messages.get(0).getPayload());
+        assertEquals("2", messages.get(1).getId());
+        assertInstanceOf(MessagePayload.class, messages.get(1).getPayload());
+        assertEquals("3", messages.get(2).getId());
+        assertNull(messages.get(2).getPayload());
+    }
+
+    @Test
+    public void shouldRejectMessageWithoutType() {
+        assertThrows(JsonParseException.class, () -> decoder.decode("{\"id\":\"1\",\"s\":0,\"p\":{\"m\":\"value\"}}"));
+        assertThrows(JsonParseException.class, () -> decoder.decode("\"text\""));
+    }
+
+    private ProxyMessage decodeSingle(String frame) throws DecodeException {
+        List<ProxyMessage> messages = decoder.decode(frame);
+        assertEquals(1, messages.size());
+        return messages.get(0);
+    }
+
+    private static void assertTopic(ProxyMessage message, String id, String action) {
+        assertEquals(id, message.getId());
+        assertEquals("topic", message.getType());
+        assertEquals(action, message.getAction());
+        assertEquals(Integer.valueOf(0), message.getStatus());
+    }
+}
@@ -78,5 +78,8 @@ public enum Action {
     DEVICE_DELETE_REQUEST,
     DEVICE_DELETE_RESPONSE,
 
-    COUNT_RESPONSE
+    COUNT_RESPONSE,
+
+    NOTIFICATION_BATCH_INSERT_REQUEST,
+    NOTIFICATION_BATCH_INSERT_RESPONSE
 }
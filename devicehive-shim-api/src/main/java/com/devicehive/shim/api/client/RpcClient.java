@@ -35,4 +35,11 @@ public interface RpcClient {
     default void start() { }
 
     default void shutdown() { }
+
+    /**
+     * Whether the client has completed handshake with the server since start.
+     */
+    default boolean isReady() {
+        return true;
+    }
 }
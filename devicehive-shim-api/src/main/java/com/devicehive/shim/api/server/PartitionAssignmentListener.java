@@ -0,0 +1,31 @@
+package com.devicehive.shim.api.server;
+
+/*
+ * #%L
+ * DeviceHive Shim  API Interfaces
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Notified when request partitions assigned to this server change, so state kept for the devices of its partitions
+ * can be dropped: requests of those devices may have been served by another server meanwhile.
+ */
+public interface PartitionAssignmentListener {
+
+    void onPartitionsAssigned();
+
+}
@@ -21,6 +21,7 @@ package com.devicehive.shim.config;
  */
 
 
+import com.devicehive.shim.kafka.serializer.WireFormat;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.beans.factory.annotation.Value;
@@ -55,6 +56,9 @@ public class KafkaRpcConfig {
     @Value("${auto.commit.interval.ms:5000}")
     private int autoCommitIntervalMs;
 
+    @Value("${max.poll.records:500}")
+    private int maxPollRecords;
+
     @Value("${fetch.max.wait.ms:100}")
     private int fetchMaxWaitMs;
 
@@ -85,9 +89,27 @@ public class KafkaRpcConfig {
     @Value("${buffer.memory:33554432}")
     private String bufferMemory;
 
+    @Value("${compression.type:none}")
+    private String compressionType;
+
+    @Value("${producer.profile:latency}")
+    private String producerProfile;
+
+    @Value("${throughput.linger.ms:5}")
+    private String throughputLingerMs;
+
+    @Value("${throughput.batch.size:65536}")
+    private int throughputBatchSize;
+
+    @Value("${throughput.compression.type:lz4}")
+    private String throughputCompressionType;
+
     @Value("${rpc.handler.threads:1}")
     private int handlerThreads;
 
+    @Value("${rpc.wire.format:json}")
+    private String wireFormat;
+
     public Properties producerProps() {
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
@@ -96,13 +118,21 @@ public class KafkaRpcConfig {
         props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockTimeMs);
         props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
         props.put(ProducerConfig.ACKS_CONFIG, acks);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        if (isThroughputProfile()) {
+            props.put(ProducerConfig.LINGER_MS_CONFIG, throughputLingerMs);
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, throughputBatchSize);
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, throughputCompressionType);
+        }
         return props;
     }
 
     private Properties commonConsumerProps() {
         Properties props = new Properties();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, enableAutoCommit);
         props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, autoCommitIntervalMs);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
         props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
         return props;
@@ -114,9 +144,13 @@ public class KafkaRpcConfig {
         return props;
     }
 
+    /**
+     * Request consumers commit offsets of handled requests themselves.
+     */
     public Properties serverConsumerProps() {
         Properties props = commonConsumerProps();
         props.put(ConsumerConfig.GROUP_ID_CONFIG,  requestConsumerGroup);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         return props;
     }
     
@@ -146,7 +180,19 @@ public class KafkaRpcConfig {
         return connectionTimeout;
     }
 
+    /**
+     * Whether producers trade latency for throughput: records wait up to linger time to be sent in larger
+     * compressed batches, and RPC server flushes responses at the end of every batch of requests.
+     */
+    public boolean isThroughputProfile() {
+        return "throughput".equalsIgnoreCase(producerProfile);
+    }
+
     public int getHandlerThreads() {
         return handlerThreads;
     }
+
+    public WireFormat getWireFormat() {
+        return WireFormat.valueOf(wireFormat.toUpperCase());
+    }
 }
@@ -20,6 +20,7 @@ package com.devicehive.shim.config.client;
  * #L%
  */
 
+import com.devicehive.api.CoalescingRpcClient;
 import com.devicehive.api.RequestResponseMatcher;
 import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.client.RpcClient;
@@ -29,6 +30,7 @@ import com.devicehive.shim.kafka.client.ServerResponseListener;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
 import com.devicehive.shim.kafka.topic.KafkaTopicService;
+import com.devicehive.shim.kafka.topic.ResponseTopicRegistry;
 import com.google.gson.Gson;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
@@ -49,11 +51,14 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 import static com.devicehive.configuration.Constants.REQUEST_TOPIC;
 
@@ -64,14 +69,42 @@ import static com.devicehive.configuration.Constants.REQUEST_TOPIC;
 @PropertySource("classpath:kafka.properties")
 public class KafkaRpcClientConfig {
 
+    private static final String SHARED_RESPONSE_MODE = "shared";
+
+    /**
+     * Response topics of clients in topic mode are the prefix followed by encoded MAC address or random UUID.
+     */
+    private static final Pattern CLIENT_TOPIC_SUFFIX = Pattern.compile("[A-Za-z0-9-]+");
+
     private static String RESPONSE_TOPIC;
+
+    private List<Integer> responsePartitions = Collections.emptyList();
     
     @Value("${response.topic.perfix}")
     private String responseTopicPrefix;
 
+    @Value("${rpc.client.response.mode:topic}")
+    private String responseMode;
+
+    @Value("${rpc.client.response.shared-topic:response_topic_shared}")
+    private String sharedResponseTopic;
+
+    @Value("${rpc.client.response.shared-topic.partitions:64}")
+    private int sharedResponseTopicPartitions;
+
     //TODO: deprecated in Java 11. Need to replace
     @PostConstruct
     private void initializeTopics() {
+        kafkaTopicService.createTopic(REQUEST_TOPIC);
+        if (SHARED_RESPONSE_MODE.equals(responseMode)) {
+            RESPONSE_TOPIC = sharedResponseTopic;
+            kafkaTopicService.createTopic(RESPONSE_TOPIC, sharedResponseTopicPartitions);
+            responsePartitions = responseTopicRegistry.claimPartitions(RESPONSE_TOPIC, sharedResponseTopicPartitions,
+                    UUID.randomUUID().toString(), responseConsumerThreads);
+            kafkaTopicService.deleteTopics(this::isStaleResponseTopic);
+            return;
+        }
+
         try {
             NetworkInterface ni = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
             String prefix = Optional.ofNullable(ni)
@@ -91,10 +124,20 @@ public class KafkaRpcClientConfig {
             RESPONSE_TOPIC = responseTopicPrefix + UUID.randomUUID().toString();
         }
 
-        kafkaTopicService.createTopic(REQUEST_TOPIC);
+        responseTopicRegistry.registerTopic(RESPONSE_TOPIC);
         kafkaTopicService.createTopic(RESPONSE_TOPIC);
     }
 
+    /**
+     * Response topic of a client in topic mode is stale if the client has not been running for the grace period.
+     */
+    private boolean isStaleResponseTopic(String topic) {
+        return !topic.equals(RESPONSE_TOPIC)
+                && topic.startsWith(responseTopicPrefix)
+                && CLIENT_TOPIC_SUFFIX.matcher(topic.substring(responseTopicPrefix.length())).matches()
+                && responseTopicRegistry.isTopicAbandoned(topic, staleResponseTopicGracePeriod);
+    }
+
     @Autowired
     private Environment env;
 
@@ -104,26 +147,46 @@ public class KafkaRpcClientConfig {
     @Autowired
     private KafkaTopicService kafkaTopicService;
 
+    @Autowired
+    private ResponseTopicRegistry responseTopicRegistry;
+
     @Value("${rpc.client.response-consumer.threads:3}")
     private int responseConsumerThreads;
 
+    @Value("${rpc.client.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${rpc.client.coalescing.cache-ttl.ms:0}")
+    private long coalescingCacheTtl;
+
+    @Value("${rpc.client.response-topic.stale-after.ms:86400000}")
+    private long staleResponseTopicGracePeriod;
+
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
     @Bean
     public RequestResponseMatcher requestResponseMatcher() {
-        return new RequestResponseMatcher();
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
     }
 
     @Bean
     public Producer<String, Request> kafkaRequestProducer(Gson gson) {
-        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new RequestSerializer(gson));
+        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(),
+                new RequestSerializer(gson, kafkaRpcConfig.getWireFormat()));
     }
 
     @Profile("!test")
     @Bean(destroyMethod = "shutdown")
     public RpcClient rpcClient(Producer<String, Request> requestProducer, RequestResponseMatcher responseMatcher,
-                               ServerResponseListener responseListener) {
-        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, responseMatcher, responseListener);
+                               ServerResponseListener responseListener, Gson gson) {
+        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, responsePartitions, requestProducer,
+                responseMatcher, responseListener);
         client.start();
-        return client;
+        return coalescingEnabled ? new CoalescingRpcClient(client, gson, coalescingCacheTtl) : client;
     }
 
     /**
@@ -135,7 +198,8 @@ public class KafkaRpcClientConfig {
     @Bean(destroyMethod = "shutdown")
     public RpcClient testRpcClient(Producer<String, Request> requestProducer, RequestResponseMatcher responseMatcher,
                                ServerResponseListener responseListener) {
-        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, requestProducer, responseMatcher, responseListener);
+        KafkaRpcClient client = new KafkaRpcClient(REQUEST_TOPIC, RESPONSE_TOPIC, responsePartitions, requestProducer,
+                responseMatcher, responseListener);
         client.start();
         return client;
     }
@@ -145,7 +209,8 @@ public class KafkaRpcClientConfig {
         ExecutorService executor = Executors.newFixedThreadPool(responseConsumerThreads);
         Properties consumerProps = kafkaRpcConfig.clientConsumerProps();
         return new ServerResponseListener(RESPONSE_TOPIC, responseConsumerThreads,
-                responseMatcher, consumerProps, executor, new ResponseSerializer(gson));
+                responseMatcher, consumerProps, executor, new ResponseSerializer(gson, kafkaRpcConfig.getWireFormat()),
+                responsePartitions);
     }
 
 }
@@ -23,6 +23,7 @@ package com.devicehive.shim.config.server;
 import com.devicehive.model.ServerEvent;
 import com.devicehive.model.eventbus.FilterRegistry;
 import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.PartitionAssignmentListener;
 import com.devicehive.shim.api.server.RequestHandler;
 import com.devicehive.shim.api.server.RpcServer;
 import com.devicehive.shim.config.KafkaRpcConfig;
@@ -30,8 +31,11 @@ import com.devicehive.shim.kafka.eventbus.DistributedRpcFilterRegistry;
 import com.devicehive.shim.kafka.serializer.RequestSerializer;
 import com.devicehive.shim.kafka.serializer.ResponseSerializer;
 import com.devicehive.shim.kafka.server.KafkaRpcServer;
+import com.devicehive.shim.kafka.server.PartitionedServerWorkerPool;
 import com.devicehive.shim.kafka.server.RequestConsumer;
 import com.devicehive.shim.kafka.server.ServerEventHandler;
+import com.devicehive.shim.kafka.server.ServerWorkerPool;
+import com.devicehive.shim.kafka.server.SharedServerWorkerPool;
 import com.devicehive.shim.kafka.topic.KafkaTopicService;
 import com.google.gson.Gson;
 import com.lmax.disruptor.BlockingWaitStrategy;
@@ -48,6 +52,7 @@ import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -85,6 +90,12 @@ public class KafkaRpcServerConfig {
     @Value("${rpc.server.worker.threads:1}")
     private int workerThreads;
 
+    @Value("${rpc.server.worker.routing:shared}")
+    private String workerRouting;
+
+    @Value("${rpc.server.commit.interval.ms:1000}")
+    private long commitInterval;
+
     @Value("${lmax.buffer-size:1024}")
     private int bufferSize;
 
@@ -99,21 +110,27 @@ public class KafkaRpcServerConfig {
 
     @Bean(name = "server-producer")
     public Producer<String, Response> kafkaResponseProducer(Gson gson) {
-        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(), new ResponseSerializer(gson));
+        return new KafkaProducer<>(kafkaRpcConfig.producerProps(), new StringSerializer(),
+                new ResponseSerializer(gson, kafkaRpcConfig.getWireFormat()));
     }
 
     @Bean
-    public WorkerPool<ServerEvent> workerPool(@Qualifier("request-dispatcher") RequestHandler requestHandler,
-                                              @Qualifier("server-producer") Producer<String, Response> responseProducer) {
+    public ServerWorkerPool workerPool(@Qualifier("request-dispatcher") RequestHandler requestHandler,
+                                       @Qualifier("server-producer") Producer<String, Response> responseProducer) {
         final ServerEventHandler[] workHandlers = new ServerEventHandler[workerThreads];
         IntStream.range(0, workerThreads).forEach(
                 nbr -> workHandlers[nbr] = new ServerEventHandler(requestHandler, responseProducer)
         );
         final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, bufferSize, getWaitStrategy());
+        logger.info("RPC server worker routing: {}", workerRouting);
+        if ("partition".equals(workerRouting)) {
+            return new PartitionedServerWorkerPool(ringBuffer,
+                    kafkaRpcConfig.isThroughputProfile() ? responseProducer : null, workHandlers);
+        }
         final SequenceBarrier barrier = ringBuffer.newBarrier();
         WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ringBuffer, barrier, new FatalExceptionHandler(), workHandlers);
         ringBuffer.addGatingSequences(workerPool.getWorkerSequences());
-        return workerPool;
+        return new SharedServerWorkerPool(workerPool);
     }
 
     private WaitStrategy getWaitStrategy() {
@@ -147,12 +164,14 @@ public class KafkaRpcServerConfig {
     }
 
     @Bean
-    public RequestConsumer requestConsumer(Gson gson) {
-        return new RequestConsumer(REQUEST_TOPIC, kafkaRpcConfig.serverConsumerProps(), consumerThreads, new RequestSerializer(gson));
+    public RequestConsumer requestConsumer(Gson gson, ObjectProvider<PartitionAssignmentListener> assignmentListeners) {
+        return new RequestConsumer(REQUEST_TOPIC, kafkaRpcConfig.serverConsumerProps(), consumerThreads,
+                new RequestSerializer(gson, kafkaRpcConfig.getWireFormat()), commitInterval,
+                assignmentListeners.orderedStream().toList());
     }
 
     @Bean
-    public RpcServer rpcServer(WorkerPool<ServerEvent> workerPool, RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
+    public RpcServer rpcServer(ServerWorkerPool workerPool, RequestConsumer requestConsumer, ServerEventHandler eventHandler) {
         RpcServer server = new KafkaRpcServer(workerPool, requestConsumer, eventHandler, workerThreads);
         server.start();
         return server;
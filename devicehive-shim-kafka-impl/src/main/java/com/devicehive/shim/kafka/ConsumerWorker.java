@@ -25,6 +25,7 @@ import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.internals.NoOpConsumerRebalanceListener;
+import org.apache.kafka.common.Metric;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.slf4j.Logger;
@@ -33,46 +34,209 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Polls records of a topic and hands them to {@link #process}.
+ * When a record is not accepted because the worker is overloaded, the record is fetched again later and assigned
+ * partitions are paused till the worker is able to take records again. The thread keeps polling while paused,
+ * so the consumer stays in its group instead of blocking in {@link #process} and triggering a rebalance.
+ */
 public abstract class ConsumerWorker<T> implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(ConsumerWorker.class);
 
+    private static final long PAUSED_POLL_TIMEOUT = 10;
+
     private String topic;
+    private Integer assignedPartition;
     private KafkaConsumer<String, T> consumer;
     private CountDownLatch latch;
+    private Metric lagMetric;
+
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder polledRecords = new LongAdder();
+    private final LongAdder pausedTime = new LongAdder();
+    private volatile long pausedSince = -1;
 
     public ConsumerWorker(String topic, KafkaConsumer<String, T> consumer, CountDownLatch latch) {
+        this(topic, null, consumer, latch);
+    }
+
+    /**
+     * Creates worker which consumes given partition of the topic without group management,
+     * or the whole topic as a member of consumer group if partition is null.
+     */
+    public ConsumerWorker(String topic, Integer partition, KafkaConsumer<String, T> consumer, CountDownLatch latch) {
         this.topic = topic;
+        this.assignedPartition = partition;
         this.consumer = consumer;
         this.latch = latch;
+        this.lagMetric = consumer.metrics().entrySet().stream()
+                .filter(metric -> "records-lag-max".equals(metric.getKey().name()))
+                .map(metric -> (Metric) metric.getValue())
+                .findFirst()
+                .orElse(null);
     }
 
     @Override
     public void run() {
         try {
-            consumer.subscribe(Collections.singletonList(topic), new NoOpConsumerRebalanceListener() {
-                @Override
-                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
-                    latch.countDown();
-                }
-            });
+            if (assignedPartition != null) {
+                consumer.assign(Collections.singletonList(new TopicPartition(topic, assignedPartition)));
+                latch.countDown();
+            } else {
+                subscribe();
+            }
             while (!Thread.currentThread().isInterrupted()) {
-                ConsumerRecords<String, T> records = consumer.poll(Long.MAX_VALUE);
-                records.forEach(record -> {
-                    logger.trace("Topic {}, partition {}, offset {}", record.topic(), record.partition(), record.offset());
-                    process(record);
-                });
+                if (isPaused() && canResume()) {
+                    resume();
+                }
+                ConsumerRecords<String, T> records = consumer.poll(isPaused() ? PAUSED_POLL_TIMEOUT : getPollTimeout());
+                if (!records.isEmpty()) {
+                    polls.increment();
+                    polledRecords.add(records.count());
+                }
+                for (TopicPartition partition : records.partitions()) {
+                    for (ConsumerRecord<String, T> record : records.records(partition)) {
+                        logger.trace("Topic {}, partition {}, offset {}", record.topic(), record.partition(), record.offset());
+                        if (!process(record)) {
+                            consumer.seek(partition, record.offset());
+                            pause();
+                            break;
+                        }
+                    }
+                }
+                if (!isPaused() && isOverloaded()) {
+                    pause();
+                }
+                afterPoll(consumer);
             }
         }  catch (WakeupException e) {
             logger.warn("Kafka consumer thread is shutting down");
         } catch (Exception e) {
             logger.error("Unexpected exception in server Kafka consumer", e);
         } finally {
+            try {
+                beforeClose(consumer);
+            } catch (Exception e) {
+                logger.error("Unexpected exception while closing Kafka consumer", e);
+            }
             consumer.close();
         }
     }
 
-    public abstract void process(ConsumerRecord<String, T> record);
+    private void subscribe() {
+        consumer.subscribe(Collections.singletonList(topic), new NoOpConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                ConsumerWorker.this.onPartitionsRevoked(consumer, partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                ConsumerWorker.this.onPartitionsAssigned(consumer, partitions);
+                latch.countDown();
+            }
+        });
+    }
+
+    private void pause() {
+        consumer.pause(consumer.assignment());
+        if (pausedSince < 0) {
+            pausedSince = System.currentTimeMillis();
+            logger.debug("Topic {} consumer paused", topic);
+        }
+    }
+
+    private void resume() {
+        consumer.resume(consumer.paused());
+        pausedTime.add(System.currentTimeMillis() - pausedSince);
+        pausedSince = -1;
+        logger.debug("Topic {} consumer resumed", topic);
+    }
+
+    public boolean isPaused() {
+        return pausedSince >= 0;
+    }
+
+    /**
+     * Number of polls which returned records.
+     */
+    public long getPollCount() {
+        return polls.sum();
+    }
+
+    public long getPolledRecordCount() {
+        return polledRecords.sum();
+    }
+
+    /**
+     * Total time in milliseconds the consumer has spent paused.
+     */
+    public long getPausedTime() {
+        final long since = pausedSince;
+        return pausedTime.sum() + (since >= 0 ? System.currentTimeMillis() - since : 0);
+    }
+
+    /**
+     * Recent maximum lag in records of the consumer over its partitions.
+     */
+    public double getLag() {
+        return lagMetric != null ? Math.max(0, lagMetric.value()) : 0;
+    }
+
+    /**
+     * Maximum time in milliseconds to block in poll, workers which do periodic work in {@link #afterPoll} should
+     * return their period.
+     */
+    protected long getPollTimeout() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Whether partitions should be paused after the current poll.
+     */
+    protected boolean isOverloaded() {
+        return false;
+    }
+
+    /**
+     * Whether paused partitions can be resumed.
+     */
+    protected boolean canResume() {
+        return true;
+    }
+
+    /**
+     * Called on the consumer thread after records of every poll are processed.
+     */
+    protected void afterPoll(KafkaConsumer<String, T> consumer) {
+    }
+
+    /**
+     * Called on the consumer thread before partitions are taken away by rebalance.
+     */
+    protected void onPartitionsRevoked(KafkaConsumer<String, T> consumer, Collection<TopicPartition> partitions) {
+    }
+
+    /**
+     * Called on the consumer thread after partitions are given by rebalance.
+     */
+    protected void onPartitionsAssigned(KafkaConsumer<String, T> consumer, Collection<TopicPartition> partitions) {
+    }
+
+    /**
+     * Called on the consumer thread before the consumer is closed.
+     */
+    protected void beforeClose(KafkaConsumer<String, T> consumer) {
+    }
+
+    /**
+     * Processes the record without blocking.
+     *
+     * @return false if the record can not be taken now and has to be consumed again
+     */
+    public abstract boolean process(ConsumerRecord<String, T> record);
 
     public void shutdown() {
         consumer.wakeup();
@@ -61,8 +61,9 @@ public abstract class KafkaMessageHandler {
                     new KafkaConsumer<>(properties, new StringDeserializer(), new StringDeserializer());
             executionPool.execute(new ConsumerWorker<String>(topic, consumer, latch) {
                 @Override
-                public void process(ConsumerRecord<String, String> record) {
+                public boolean process(ConsumerRecord<String, String> record) {
                     handle(record.value());
+                    return true;
                 }
             });
         }
@@ -0,0 +1,49 @@
+package com.devicehive.shim.kafka;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+/**
+ * Address responses are sent to, i.e. reply topic of a request. Clients which share response topic address
+ * a partition of it as topic name followed by {@code #} and partition number, character {@code #} never occurs
+ * in topic names.
+ */
+public final class ResponseAddress {
+
+    private static final char PARTITION_SEPARATOR = '#';
+
+    private ResponseAddress() {
+    }
+
+    public static String of(String topic, int partition) {
+        return topic + PARTITION_SEPARATOR + partition;
+    }
+
+    public static <V> ProducerRecord<String, V> toRecord(String replyTo, String key, V value) {
+        final int separator = replyTo.lastIndexOf(PARTITION_SEPARATOR);
+        if (separator < 0) {
+            return new ProducerRecord<>(replyTo, key, value);
+        }
+        return new ProducerRecord<>(replyTo.substring(0, separator),
+                Integer.valueOf(replyTo.substring(separator + 1)), key, value);
+    }
+}
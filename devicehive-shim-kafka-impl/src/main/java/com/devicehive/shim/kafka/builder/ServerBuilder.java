@@ -28,6 +28,7 @@ import com.devicehive.shim.kafka.server.KafkaRpcServer;
 import com.devicehive.shim.kafka.server.RequestConsumer;
 import com.devicehive.model.ServerEvent;
 import com.devicehive.shim.kafka.server.ServerEventHandler;
+import com.devicehive.shim.kafka.server.SharedServerWorkerPool;
 import com.lmax.disruptor.FatalExceptionHandler;
 import com.lmax.disruptor.WorkerPool;
 import org.apache.kafka.clients.producer.KafkaProducer;
@@ -45,6 +46,8 @@ public class ServerBuilder {
 
     private int consumerThreads;
 
+    private long commitInterval = 1000;
+
     private Properties consumerProps;
     private Deserializer<Request> consumerValueDeserializer;
 
@@ -63,6 +66,11 @@ public class ServerBuilder {
         return this;
     }
 
+    public ServerBuilder withCommitInterval(long commitInterval) {
+        this.commitInterval = commitInterval;
+        return this;
+    }
+
     public ServerBuilder withProducerProps(Properties producerProps) {
         this.producerProps = producerProps;
         return this;
@@ -97,8 +105,9 @@ public class ServerBuilder {
         );
         final WorkerPool<ServerEvent> workerPool = new WorkerPool<>(ServerEvent::new, new FatalExceptionHandler(), workHandlers);
 
-        RequestConsumer requestConsumer = new RequestConsumer(topic, consumerProps, consumerThreads, consumerValueDeserializer);
-        return new KafkaRpcServer(workerPool, requestConsumer, new ServerEventHandler(requestHandler, responseProducer), workerThreads);
+        RequestConsumer requestConsumer = new RequestConsumer(topic, consumerProps, consumerThreads, consumerValueDeserializer,
+                commitInterval);
+        return new KafkaRpcServer(new SharedServerWorkerPool(workerPool), requestConsumer, new ServerEventHandler(requestHandler, responseProducer), workerThreads);
     }
 
 }
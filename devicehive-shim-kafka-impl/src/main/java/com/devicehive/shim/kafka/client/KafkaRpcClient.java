@@ -20,20 +20,19 @@ package com.devicehive.shim.kafka.client;
  * #L%
  */
 
+import com.devicehive.api.PingHandshake;
 import com.devicehive.api.RequestResponseMatcher;
 import com.devicehive.shim.api.Request;
-import com.devicehive.shim.api.RequestType;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.shim.kafka.ResponseAddress;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class KafkaRpcClient implements RpcClient {
@@ -44,25 +43,50 @@ public class KafkaRpcClient implements RpcClient {
     private Producer<String, Request> requestProducer;
     private RequestResponseMatcher requestResponseMatcher;
     private ServerResponseListener responseListener;
+    private List<Integer> replyToPartitions;
+    private PingHandshake handshake;
 
     public KafkaRpcClient(String requestTopic, String replyToTopic, Producer<String, Request> requestProducer,
                           RequestResponseMatcher requestResponseMatcher, ServerResponseListener responseListener) {
+        this(requestTopic, replyToTopic, Collections.emptyList(), requestProducer, requestResponseMatcher, responseListener);
+    }
+
+    /**
+     * Creates client which receives responses in given partitions of the reply topic shared with other clients,
+     * or in the whole reply topic if partitions are empty.
+     */
+    public KafkaRpcClient(String requestTopic, String replyToTopic, List<Integer> replyToPartitions,
+                          Producer<String, Request> requestProducer, RequestResponseMatcher requestResponseMatcher,
+                          ServerResponseListener responseListener) {
         this.requestTopic = requestTopic;
         this.replyToTopic = replyToTopic;
+        this.replyToPartitions = replyToPartitions;
         this.requestProducer = requestProducer;
         this.requestResponseMatcher = requestResponseMatcher;
         this.responseListener = responseListener;
+        this.handshake = new PingHandshake("RpcServer", requestResponseMatcher, request -> {
+            request.setReplyTo(getReplyTo(request));
+            requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request));
+        });
     }
 
+    /**
+     * Starts response consumers and ping handshake without waiting for either, readiness is reported by {@link #isReady()}.
+     */
     @Override
     public void start() {
         responseListener.startWorkers();
-        pingServer();
+        handshake.start();
+    }
+
+    @Override
+    public boolean isReady() {
+        return responseListener.isAssigned() && handshake.isConnected();
     }
 
     @Override
     public void call(Request request, Consumer<Response> callback) {
-        requestResponseMatcher.addRequestCallback(request.getCorrelationId(), callback);
+        requestResponseMatcher.addRequestCallback(request, callback);
         logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
 
         push(request);
@@ -74,65 +98,35 @@ public class KafkaRpcClient implements RpcClient {
             throw new NullPointerException("Request body must not be null.");
         }
 
-        request.setReplyTo(replyToTopic);
+        request.setReplyTo(getReplyTo(request));
         requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request),
                 (recordMetadata, e) -> {
                     if (e != null) {
                         logger.error("Send request failed", e);
                         requestResponseMatcher.removeRequestCallback(request.getCorrelationId());
+                    } else {
+                        logger.debug("Request {} sent successfully", request.getCorrelationId());
                     }
-                    logger.debug("Request {} sent successfully", request.getCorrelationId());
                     //TODO [rafa] in case sending fails - we need to notify the caller using the callback passed.
                 });
     }
 
     @Override
     public void shutdown() {
+        handshake.stop();
         requestProducer.close();
         responseListener.shutdown();
     }
 
-    private void pingServer() {
-        Request request = Request.newBuilder().build();
-        request.setReplyTo(replyToTopic);
-        request.setType(RequestType.ping);
-        boolean connected = false;
-        int attempts = 10;
-        for (int i = 0; i < attempts; i++) {
-            logger.info("Ping RpcServer attempt {}", i);
-
-            CompletableFuture<Response> pingFuture = new CompletableFuture<>();
-
-            requestResponseMatcher.addRequestCallback(request.getCorrelationId(), pingFuture::complete);
-            logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
-
-            requestProducer.send(new ProducerRecord<>(requestTopic, request.getPartitionKey(), request));
-
-            Response response = null;
-            try {
-                response = pingFuture.get(3000, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                logger.error("Exception occured while trying to ping RpcServer ", e);
-            } catch (TimeoutException e) {
-                logger.warn("RpcServer didn't respond to ping request");
-                continue;
-            } finally {
-                requestResponseMatcher.removeRequestCallback(request.getCorrelationId());
-            }
-            if (response != null && !response.isFailed()) {
-                connected = true;
-                break;
-            } else {
-                responseListener.shutdown();
-                responseListener.startWorkers();
-            }
-        }
-        if (connected) {
-            logger.info("Successfully connected to RpcServer");
-        } else {
-            logger.error("Unable to reach out RpcServer in {} attempts", attempts);
-            throw new RuntimeException("RpcServer is not reachable");
+    /**
+     * All responses to the request are sent to the same partition, so they are received in order.
+     */
+    private String getReplyTo(Request request) {
+        if (replyToPartitions.isEmpty()) {
+            return replyToTopic;
         }
+        int index = Math.floorMod(request.getCorrelationId().hashCode(), replyToPartitions.size());
+        return ResponseAddress.of(replyToTopic, replyToPartitions.get(index));
     }
 
 }
@@ -35,12 +35,18 @@ public class ResponseConsumerWorker extends ConsumerWorker<Response> {
 
     public ResponseConsumerWorker(String topic, RequestResponseMatcher responseMatcher,
                                   KafkaConsumer<String, Response> consumer, CountDownLatch latch) {
-        super(topic, consumer, latch);
+        this(topic, null, responseMatcher, consumer, latch);
+    }
+
+    public ResponseConsumerWorker(String topic, Integer partition, RequestResponseMatcher responseMatcher,
+                                  KafkaConsumer<String, Response> consumer, CountDownLatch latch) {
+        super(topic, partition, consumer, latch);
         this.responseMatcher = responseMatcher;
     }
 
     @Override
-    public void process(ConsumerRecord<String, Response> record) {
+    public boolean process(ConsumerRecord<String, Response> record) {
         responseMatcher.offerResponse(record.value());
+        return true;
     }
 }
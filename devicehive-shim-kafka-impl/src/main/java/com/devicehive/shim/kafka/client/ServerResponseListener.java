@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
@@ -44,34 +45,51 @@ public class ServerResponseListener {
     private Properties consumerProps;
     private ExecutorService consumerExecutor;
     private Deserializer<Response> deserializer;
+    private List<Integer> partitions;
 
     private List<ResponseConsumerWorker> workers;
+    private CountDownLatch latch;
 
     public ServerResponseListener(String topic, int consumerThreads, RequestResponseMatcher requestResponseMatcher,
                                   Properties consumerProps, ExecutorService consumerExecutor, Deserializer<Response> deserializer) {
+        this(topic, consumerThreads, requestResponseMatcher, consumerProps, consumerExecutor, deserializer,
+                Collections.emptyList());
+    }
+
+    /**
+     * Creates listener which consumes given partitions of the topic, a consumer per partition,
+     * or the whole topic if partitions are empty.
+     */
+    public ServerResponseListener(String topic, int consumerThreads, RequestResponseMatcher requestResponseMatcher,
+                                  Properties consumerProps, ExecutorService consumerExecutor, Deserializer<Response> deserializer,
+                                  List<Integer> partitions) {
         this.topic = topic;
         this.consumerThreads = consumerThreads;
         this.requestResponseMatcher = requestResponseMatcher;
         this.consumerProps = consumerProps;
         this.consumerExecutor = consumerExecutor;
         this.deserializer = deserializer;
+        this.partitions = partitions;
     }
 
+    /**
+     * Starts consumers without waiting for their partitions to be assigned.
+     */
     public void startWorkers() {
-        CountDownLatch latch = new CountDownLatch(consumerThreads);
+        latch = new CountDownLatch(consumerThreads);
         workers = new ArrayList<>(consumerThreads);
         for (int i = 0; i < consumerThreads; i++) {
             KafkaConsumer<String, Response> consumer = new KafkaConsumer<>(consumerProps, new StringDeserializer(), deserializer);
-            ResponseConsumerWorker worker = new ResponseConsumerWorker(topic, requestResponseMatcher, consumer, latch);
+            Integer partition = partitions.isEmpty() ? null : partitions.get(i % partitions.size());
+            ResponseConsumerWorker worker = new ResponseConsumerWorker(topic, partition, requestResponseMatcher, consumer, latch);
             consumerExecutor.submit(worker);
             workers.add(worker);
         }
-        try {
-            latch.await();
-            logger.info("RpcClient response consumers started");
-        } catch (InterruptedException e) {
-            logger.error("Error while waiting for client consumers to subscribe", e);
-        }
+        logger.info("RpcClient response consumers started");
+    }
+
+    public boolean isAssigned() {
+        return latch != null && latch.getCount() == 0;
     }
 
     public void shutdown() {
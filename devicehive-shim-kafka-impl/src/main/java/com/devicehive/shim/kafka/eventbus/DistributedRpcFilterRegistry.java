@@ -28,6 +28,8 @@ import com.devicehive.shim.config.KafkaRpcConfig;
 import com.devicehive.shim.kafka.KafkaMessageHandler;
 import com.google.gson.Gson;
 
+import java.util.Collection;
+
 import static com.devicehive.configuration.Constants.SUBSCRIPTION_TOPIC;
 import static com.devicehive.model.eventbus.SubscribeAction.REGISTER;
 import static com.devicehive.model.eventbus.SubscribeAction.UNREGISTER;
@@ -64,4 +66,14 @@ public class DistributedRpcFilterRegistry extends FilterRegistry {
         String subscribeMessage = gson.toJson(new SubscribeMessage(UNREGISTER, subscriber));
         messageHandler.push(subscribeMessage);
     }
+
+    @Override
+    public void unregister(Collection<Long> subscriptionIds) {
+        processUnregister(subscriptionIds);
+
+        // one message per subscription, as other nodes expect UNREGISTER to carry a subscriber
+        for (Long subscriptionId : subscriptionIds) {
+            messageHandler.push(gson.toJson(new SubscribeMessage(UNREGISTER, new Subscriber(subscriptionId, null, null))));
+        }
+    }
 }
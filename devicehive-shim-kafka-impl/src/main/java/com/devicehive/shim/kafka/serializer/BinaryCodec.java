@@ -0,0 +1,279 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary encoding of Request and Response envelopes.
+ * Message starts with magic byte, which never starts JSON document, followed by format version.
+ * Envelope fields are written as flags, varints and length prefixed UTF-8 strings, body is written as action ordinal
+ * followed by JSON of the concrete body class, so it is decoded without type dispatch on field "a".
+ * Messages are encoded into per-thread buffers, which are copied once into the resulting array.
+ */
+final class BinaryCodec {
+
+    private static final byte MAGIC = (byte) 0xD7;
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_SINGLE_REPLY = 1;
+    private static final int FLAG_LAST = 1;
+    private static final int FLAG_FAILED = 1 << 1;
+
+    /**
+     * Buffers grown above this size are not kept for reuse.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    private BinaryCodec() {
+    }
+
+    static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    static byte[] encode(Gson gson, Request request) {
+        final Buffer buffer = acquire();
+        try {
+            buffer.write(request.isSingleReplyExpected() ? FLAG_SINGLE_REPLY : 0);
+            buffer.writeVarint(request.getType().ordinal());
+            buffer.writeString(request.getCorrelationId());
+            buffer.writeString(request.getPartitionKey());
+            buffer.writeString(request.getReplyTo());
+            buffer.writeBody(gson, request.getBody());
+            return buffer.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static byte[] encode(Gson gson, Response response) {
+        final Buffer buffer = acquire();
+        try {
+            buffer.write((response.isLast() ? FLAG_LAST : 0) | (response.isFailed() ? FLAG_FAILED : 0));
+            buffer.writeVarint(response.getErrorCode());
+            buffer.writeString(response.getCorrelationId());
+            final List<String> correlationIds = response.getCorrelationIds();
+            buffer.writeVarint(correlationIds == null ? 0 : correlationIds.size() + 1);
+            if (correlationIds != null) {
+                correlationIds.forEach(buffer::writeString);
+            }
+            buffer.writeBody(gson, response.getBody());
+            return buffer.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    static Request decodeRequest(Gson gson, byte[] bytes) {
+        final Reader reader = new Reader(bytes);
+        final int flags = reader.read();
+        final RequestType type = RequestType.values()[reader.readVarint()];
+        final String correlationId = reader.readString();
+        final String partitionKey = reader.readString();
+        final String replyTo = reader.readString();
+        final Request request = Request.newBuilder()
+                .withBody(reader.readBody(gson))
+                .withCorrelationId(correlationId)
+                .withPartitionKey(partitionKey)
+                .withSingleReply((flags & FLAG_SINGLE_REPLY) != 0)
+                .build();
+        request.setType(type);
+        request.setReplyTo(replyTo);
+        return request;
+    }
+
+    static Response decodeResponse(Gson gson, byte[] bytes) {
+        final Reader reader = new Reader(bytes);
+        final int flags = reader.read();
+        final int errorCode = reader.readVarint();
+        final String correlationId = reader.readString();
+        final int correlationIdCount = reader.readVarint();
+        List<String> correlationIds = null;
+        if (correlationIdCount > 0) {
+            correlationIds = new ArrayList<>(correlationIdCount - 1);
+            for (int i = 1; i < correlationIdCount; i++) {
+                correlationIds.add(reader.readString());
+            }
+        }
+        final Response.Builder<Body> builder = Response.newBuilder()
+                .withBody(reader.readBody(gson))
+                .withCorrelationId(correlationId)
+                .withCorrelationIds(correlationIds)
+                .withLast((flags & FLAG_LAST) != 0);
+        return (flags & FLAG_FAILED) != 0 ? builder.buildFailed(errorCode) : builder.buildSuccess();
+    }
+
+    private static Buffer acquire() {
+        final Buffer buffer = buffers.get();
+        buffer.reset();
+        buffer.write(MAGIC);
+        buffer.write(VERSION);
+        return buffer;
+    }
+
+    private static void release(Buffer buffer) {
+        if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+            buffers.remove();
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private final Writer writer = new OutputStreamWriter(this, UTF_8);
+
+        Buffer() {
+            super(512);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /**
+         * Writes string length plus one, zero stands for null, followed by UTF-8 bytes of the string.
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            final int length = value.length();
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    final byte[] bytes = value.getBytes(UTF_8);
+                    writeVarint(bytes.length + 1);
+                    write(bytes, 0, bytes.length);
+                    return;
+                }
+            }
+            writeVarint(length + 1);
+            ensureCapacity(count + length);
+            for (int i = 0; i < length; i++) {
+                buf[count++] = (byte) value.charAt(i);
+            }
+        }
+
+        /**
+         * Writes action ordinal plus one, zero stands for null, followed by JSON of the body till the end of message.
+         */
+        void writeBody(Gson gson, Body body) {
+            if (body == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(body.getAction().ordinal() + 1);
+            try {
+                final JsonWriter jsonWriter = gson.newJsonWriter(writer);
+                gson.toJson(body, body.getClass(), jsonWriter);
+                jsonWriter.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, capacity));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            if (bytes[1] != VERSION) {
+                throw new JsonParseException("Unsupported binary message version " + bytes[1]);
+            }
+            this.bytes = bytes;
+            this.position = 2;
+        }
+
+        int read() {
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final int b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        String readString() {
+            final int length = readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            final String value = new String(bytes, position, length, UTF_8);
+            position += length;
+            return value;
+        }
+
+        Body readBody(Gson gson) {
+            final int action = readVarint() - 1;
+            if (action < 0) {
+                return null;
+            }
+            Class<? extends Body> bodyClass = GsonFactory.getBodyClass(action);
+            final InputStreamReader reader = new InputStreamReader(
+                    new ByteArrayInputStream(bytes, position, bytes.length - position), UTF_8);
+            return gson.fromJson(gson.newJsonReader(reader), bodyClass != null ? bodyClass : Body.class);
+        }
+    }
+}
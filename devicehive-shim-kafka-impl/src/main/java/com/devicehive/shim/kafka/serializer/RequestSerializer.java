@@ -24,19 +24,22 @@ import com.devicehive.shim.api.Request;
 import com.google.gson.Gson;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
-public class RequestSerializer implements Serializer<Request>, Deserializer<Request> {
-    private static final Logger logger = LoggerFactory.getLogger(RequestSerializer.class);
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+public class RequestSerializer implements Serializer<Request>, Deserializer<Request> {
     private Gson gson;
+    private WireFormat wireFormat;
 
     public RequestSerializer(Gson gson) {
+        this(gson, WireFormat.JSON);
+    }
+
+    public RequestSerializer(Gson gson, WireFormat wireFormat) {
         this.gson = gson;
+        this.wireFormat = wireFormat;
     }
 
     @Override
@@ -44,17 +47,18 @@ public class RequestSerializer implements Serializer<Request>, Deserializer<Requ
 
     @Override
     public Request deserialize(String s, byte[] bytes) {
-        try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Request.class);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Request deserialization failed", e);
-            throw new RuntimeException(e);
+        if (BinaryCodec.isBinary(bytes)) {
+            return BinaryCodec.decodeRequest(gson, bytes);
         }
+        return gson.fromJson(new String(bytes, UTF_8), Request.class);
     }
 
     @Override
     public byte[] serialize(String s, Request request) {
-        return gson.toJson(request).getBytes();
+        if (wireFormat == WireFormat.BINARY) {
+            return BinaryCodec.encode(gson, request);
+        }
+        return gson.toJson(request).getBytes(UTF_8);
     }
 
     @Override
@@ -22,22 +22,24 @@ package com.devicehive.shim.kafka.serializer;
 
 import com.devicehive.shim.api.Response;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
-public class ResponseSerializer implements Serializer<Response>, Deserializer<Response> {
-    private static final Logger logger = LoggerFactory.getLogger(ResponseSerializer.class);
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+public class ResponseSerializer implements Serializer<Response>, Deserializer<Response> {
     private Gson gson;
+    private WireFormat wireFormat;
 
     public ResponseSerializer(Gson gson) {
+        this(gson, WireFormat.JSON);
+    }
+
+    public ResponseSerializer(Gson gson, WireFormat wireFormat) {
         this.gson = gson;
+        this.wireFormat = wireFormat;
     }
 
     @Override
@@ -45,17 +47,18 @@ public class ResponseSerializer implements Serializer<Response>, Deserializer<Re
 
     @Override
     public Response deserialize(String s, byte[] bytes) {
-        try {
-            return gson.fromJson(new String(bytes, "UTF-8"), Response.class);
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Request deserialization failed");
-            throw new RuntimeException(e);
+        if (BinaryCodec.isBinary(bytes)) {
+            return BinaryCodec.decodeResponse(gson, bytes);
         }
+        return gson.fromJson(new String(bytes, UTF_8), Response.class);
     }
 
     @Override
     public byte[] serialize(String s, Response response) {
-        return gson.toJson(response).getBytes();
+        if (wireFormat == WireFormat.BINARY) {
+            return BinaryCodec.encode(gson, response);
+        }
+        return gson.toJson(response).getBytes(UTF_8);
     }
 
     @Override
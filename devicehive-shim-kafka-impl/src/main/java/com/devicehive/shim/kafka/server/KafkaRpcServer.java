@@ -24,7 +24,6 @@ import com.devicehive.model.ServerEvent;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.devicehive.shim.api.server.RpcServer;
 import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.WorkerPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,12 +33,12 @@ import java.util.concurrent.Executors;
 public class KafkaRpcServer implements RpcServer {
     private static final Logger logger = LoggerFactory.getLogger(KafkaRpcServer.class);
 
-    private WorkerPool<ServerEvent> workerPool;
+    private ServerWorkerPool workerPool;
     private RequestConsumer requestConsumer;
     private ServerEventHandler eventHandler;
     private int workerThreads;
 
-    public KafkaRpcServer(WorkerPool<ServerEvent> workerPool, RequestConsumer requestConsumer, ServerEventHandler eventHandler,
+    public KafkaRpcServer(ServerWorkerPool workerPool, RequestConsumer requestConsumer, ServerEventHandler eventHandler,
                           int workerThreads) {
         this.workerPool = workerPool;
         this.requestConsumer = requestConsumer;
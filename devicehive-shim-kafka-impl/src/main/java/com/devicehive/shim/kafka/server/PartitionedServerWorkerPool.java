@@ -0,0 +1,150 @@
+package com.devicehive.shim.kafka.server;
+
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.Response;
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.util.Util;
+import org.apache.kafka.clients.producer.Producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Workers which own shards of requests chosen by hash of request partition key, so requests with the same
+ * partition key, e.g. of the same device, are handled one at a time in the order they were consumed.
+ * Every worker reads the whole ring buffer and skips requests of other shards. Requests without partition key
+ * are spread over workers by sequence.
+ * Optionally a flusher follows all workers and flushes the response producer once at the end of every batch
+ * in which responses were sent, so responses do not wait for producer linger.
+ */
+public class PartitionedServerWorkerPool implements ServerWorkerPool {
+
+    private final RingBuffer<ServerEvent> ringBuffer;
+    private final List<BatchEventProcessor<ServerEvent>> processors;
+
+    public PartitionedServerWorkerPool(RingBuffer<ServerEvent> ringBuffer, ServerEventHandler... handlers) {
+        this(ringBuffer, null, handlers);
+    }
+
+    /**
+     * Creates pool which flushes given producer after every batch, or never if the producer is null.
+     */
+    public PartitionedServerWorkerPool(RingBuffer<ServerEvent> ringBuffer, Producer<String, Response> flushedProducer,
+                                       ServerEventHandler... handlers) {
+        this.ringBuffer = ringBuffer;
+        this.processors = new ArrayList<>(handlers.length);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+        for (int i = 0; i < handlers.length; i++) {
+            final BatchEventProcessor<ServerEvent> processor =
+                    new BatchEventProcessor<>(ringBuffer, barrier, new Shard(handlers[i], i, handlers.length));
+            processor.setExceptionHandler(new FatalExceptionHandler());
+            processors.add(processor);
+        }
+        if (flushedProducer != null) {
+            final SequenceBarrier flusherBarrier = ringBuffer.newBarrier(
+                    processors.stream().map(BatchEventProcessor::getSequence).toArray(Sequence[]::new));
+            final BatchEventProcessor<ServerEvent> flusher =
+                    new BatchEventProcessor<>(ringBuffer, flusherBarrier, new Flusher(flushedProducer, handlers));
+            flusher.setExceptionHandler(new FatalExceptionHandler());
+            processors.add(flusher);
+        }
+        ringBuffer.addGatingSequences(getWorkerSequences());
+    }
+
+    public Sequence[] getWorkerSequences() {
+        return processors.stream().map(BatchEventProcessor::getSequence).toArray(Sequence[]::new);
+    }
+
+    @Override
+    public RingBuffer<ServerEvent> start(Executor executor) {
+        for (BatchEventProcessor<ServerEvent> processor : processors) {
+            executor.execute(processor);
+        }
+        return ringBuffer;
+    }
+
+    @Override
+    public void drainAndHalt() {
+        final Sequence[] sequences = getWorkerSequences();
+        while (ringBuffer.getCursor() > Util.getMinimumSequence(sequences)) {
+            Thread.yield();
+        }
+        for (BatchEventProcessor<ServerEvent> processor : processors) {
+            processor.halt();
+        }
+    }
+
+    private static class Shard implements EventHandler<ServerEvent> {
+
+        private final ServerEventHandler handler;
+        private final int ordinal;
+        private final int count;
+
+        Shard(ServerEventHandler handler, int ordinal, int count) {
+            this.handler = handler;
+            this.ordinal = ordinal;
+            this.count = count;
+        }
+
+        @Override
+        public void onEvent(ServerEvent event, long sequence, boolean endOfBatch) throws Exception {
+            final String partitionKey = event.get().getPartitionKey();
+            final long hash = partitionKey != null ? partitionKey.hashCode() : sequence;
+            if (Math.floorMod(hash, (long) count) == ordinal) {
+                handler.onEvent(event);
+            }
+        }
+    }
+
+    private static class Flusher implements EventHandler<ServerEvent> {
+
+        private final Producer<String, Response> producer;
+        private final ServerEventHandler[] handlers;
+
+        Flusher(Producer<String, Response> producer, ServerEventHandler[] handlers) {
+            this.producer = producer;
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void onEvent(ServerEvent event, long sequence, boolean endOfBatch) {
+            if (!endOfBatch) {
+                return;
+            }
+            boolean unflushed = false;
+            for (ServerEventHandler handler : handlers) {
+                unflushed |= handler.resetUnflushed();
+            }
+            if (unflushed) {
+                producer.flush();
+            }
+        }
+    }
+}
@@ -22,7 +22,13 @@ package com.devicehive.shim.kafka.server;
 
 import com.devicehive.model.ServerEvent;
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.server.PartitionAssignmentListener;
+import com.devicehive.shim.kafka.ConsumerWorker;
 import com.lmax.disruptor.RingBuffer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -34,37 +40,50 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
-public class RequestConsumer {
+public class RequestConsumer implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(RequestConsumer.class);
 
     private String topic;
     private Properties consumerProps;
     private int consumerThreads;
     private Deserializer<Request> deserializer;
+    private long commitInterval;
+    private List<PartitionAssignmentListener> assignmentListeners;
 
     private ExecutorService consumerExecutor;
-    private List<RequestConsumerWorker> workers;
+    private volatile List<RequestConsumerWorker> workers = Collections.emptyList();
 
-    public RequestConsumer(String topic, Properties consumerProps, int consumerThreads, Deserializer<Request> deserializer) {
+    public RequestConsumer(String topic, Properties consumerProps, int consumerThreads, Deserializer<Request> deserializer,
+                           long commitInterval) {
+        this(topic, consumerProps, consumerThreads, deserializer, commitInterval, Collections.emptyList());
+    }
+
+    public RequestConsumer(String topic, Properties consumerProps, int consumerThreads, Deserializer<Request> deserializer,
+                           long commitInterval, List<PartitionAssignmentListener> assignmentListeners) {
         this.topic = topic;
         this.consumerProps = consumerProps;
         this.consumerThreads = consumerThreads;
         this.deserializer = deserializer;
+        this.commitInterval = commitInterval;
+        this.assignmentListeners = assignmentListeners;
     }
 
     public void startConsumers(RingBuffer<ServerEvent> ringBuffer) {
         assert ringBuffer != null;
 
-        workers = new ArrayList<>(consumerThreads);
+        List<RequestConsumerWorker> workers = new ArrayList<>(consumerThreads);
         consumerExecutor = Executors.newFixedThreadPool(consumerThreads);
         CountDownLatch latch = new CountDownLatch(consumerThreads);
         for (int i = 0; i < consumerThreads; i++) {
             KafkaConsumer<String, Request> consumer = new KafkaConsumer<>(consumerProps, new StringDeserializer(), deserializer);
-            RequestConsumerWorker worker = new RequestConsumerWorker(this.topic, consumer, ringBuffer, latch);
+            RequestConsumerWorker worker = new RequestConsumerWorker(this.topic, consumer, ringBuffer, latch, commitInterval,
+                    assignmentListeners);
             consumerExecutor.submit(worker);
             workers.add(worker);
         }
+        this.workers = workers;
         try {
             latch.await();
             logger.info("RpcServer request consumers started");
@@ -82,4 +101,25 @@ public class RequestConsumer {
             logger.error("Error while waiting for server consumers to subscribe", e);
         }
     }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("devicehive.rpc.consumer.polls", this, consumer -> consumer.sum(ConsumerWorker::getPollCount))
+                .description("Polls which returned records")
+                .tag("topic", topic).register(registry);
+        FunctionCounter.builder("devicehive.rpc.consumer.records", this, consumer -> consumer.sum(ConsumerWorker::getPolledRecordCount))
+                .tag("topic", topic).register(registry);
+        FunctionCounter.builder("devicehive.rpc.consumer.paused.time", this, consumer -> consumer.sum(ConsumerWorker::getPausedTime))
+                .baseUnit("milliseconds")
+                .tag("topic", topic).register(registry);
+        Gauge.builder("devicehive.rpc.consumer.paused", this, consumer -> consumer.sum(worker -> worker.isPaused() ? 1 : 0))
+                .tag("topic", topic).register(registry);
+        Gauge.builder("devicehive.rpc.consumer.lag", this,
+                consumer -> consumer.workers.stream().mapToDouble(ConsumerWorker::getLag).max().orElse(0))
+                .tag("topic", topic).register(registry);
+    }
+
+    private double sum(ToDoubleFunction<RequestConsumerWorker> value) {
+        return workers.stream().mapToDouble(value).sum();
+    }
 }
@@ -22,26 +22,156 @@ package com.devicehive.shim.kafka.server;
 
 import com.devicehive.model.ServerEvent;
 import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.server.PartitionAssignmentListener;
 import com.devicehive.shim.kafka.ConsumerWorker;
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 
-
+/**
+ * Publishes requests to the ring buffer and commits offsets of the requests which have been handled.
+ * Every published record is remembered with its ring sequence, record is handled once the slowest worker of
+ * the pool has passed its sequence. Records of a partition are published in offset order, so the handled ones form
+ * a prefix, and offset after that prefix is committed asynchronously once per commit interval, which gives
+ * at-least-once delivery of requests.
+ * Records are published only if the ring buffer has free slots, partitions are paused when less than
+ * {@link #PAUSE_CAPACITY} of it is free and resumed when at least {@link #RESUME_CAPACITY} of it is free again.
+ * Assignment listeners are notified on the consumer thread after every rebalance.
+ */
 public class RequestConsumerWorker extends ConsumerWorker<Request> {
+    private static final Logger logger = LoggerFactory.getLogger(RequestConsumerWorker.class);
+
+    private static final double PAUSE_CAPACITY = 0.1;
+    private static final double RESUME_CAPACITY = 0.5;
 
     private RingBuffer<ServerEvent> ringBuffer;
+    private long commitInterval;
+    private List<PartitionAssignmentListener> assignmentListeners;
+
+    private final Map<TopicPartition, Queue<PublishedRecord>> published = new HashMap<>();
+    private long lastCommit = System.currentTimeMillis();
 
     RequestConsumerWorker(String topic, KafkaConsumer<String, Request> consumer,
-                          RingBuffer<ServerEvent> ringBuffer, CountDownLatch latch) {
+                          RingBuffer<ServerEvent> ringBuffer, CountDownLatch latch, long commitInterval,
+                          List<PartitionAssignmentListener> assignmentListeners) {
         super(topic, consumer, latch);
         this.ringBuffer = ringBuffer;
+        this.commitInterval = commitInterval;
+        this.assignmentListeners = assignmentListeners;
+    }
+
+    @Override
+    public boolean process(ConsumerRecord<String, Request> record) {
+        final long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return false;
+        }
+        try {
+            ringBuffer.get(sequence).set(record.value());
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+        published.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), partition -> new ArrayDeque<>())
+                .add(new PublishedRecord(sequence, record.offset()));
+        return true;
+    }
+
+    @Override
+    protected boolean isOverloaded() {
+        return ringBuffer.remainingCapacity() < ringBuffer.getBufferSize() * PAUSE_CAPACITY;
+    }
+
+    @Override
+    protected boolean canResume() {
+        return ringBuffer.remainingCapacity() >= ringBuffer.getBufferSize() * RESUME_CAPACITY;
+    }
+
+    @Override
+    protected long getPollTimeout() {
+        return commitInterval;
     }
 
     @Override
-    public void process(ConsumerRecord<String, Request> record) {
-        ringBuffer.publishEvent((serverEvent, sequence, response) -> serverEvent.set(response), record.value());
+    protected void afterPoll(KafkaConsumer<String, Request> consumer) {
+        final long now = System.currentTimeMillis();
+        if (now - lastCommit >= commitInterval) {
+            lastCommit = now;
+            commit(consumer, false);
+        }
+    }
+
+    @Override
+    protected void onPartitionsRevoked(KafkaConsumer<String, Request> consumer, Collection<TopicPartition> partitions) {
+        commit(consumer, true);
+        published.keySet().removeAll(partitions);
+    }
+
+    @Override
+    protected void onPartitionsAssigned(KafkaConsumer<String, Request> consumer, Collection<TopicPartition> partitions) {
+        for (PartitionAssignmentListener listener : assignmentListeners) {
+            try {
+                listener.onPartitionsAssigned();
+            } catch (Exception e) {
+                logger.error("Partition assignment listener failed", e);
+            }
+        }
+    }
+
+    @Override
+    protected void beforeClose(KafkaConsumer<String, Request> consumer) {
+        commit(consumer, true);
+    }
+
+    private void commit(KafkaConsumer<String, Request> consumer, boolean sync) {
+        final long handledSequence = ringBuffer.getMinimumGatingSequence();
+        final Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        published.forEach((partition, records) -> {
+            long offset = -1;
+            while (!records.isEmpty() && records.peek().sequence <= handledSequence) {
+                offset = records.poll().offset;
+            }
+            if (offset >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(offset + 1));
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        if (sync) {
+            consumer.commitSync(offsets);
+        } else {
+            consumer.commitAsync(offsets, (committed, e) -> {
+                if (e != null) {
+                    logger.warn("Unable to commit offsets {}", committed, e);
+                }
+            });
+        }
+    }
+
+    private static class PublishedRecord {
+
+        private final long sequence;
+        private final long offset;
+
+        PublishedRecord(long sequence, long offset) {
+            this.sequence = sequence;
+            this.offset = offset;
+        }
     }
 }
@@ -25,25 +25,34 @@ import com.devicehive.shim.api.Request;
 import com.devicehive.shim.api.Response;
 import com.devicehive.shim.api.server.MessageDispatcher;
 import com.devicehive.shim.api.server.RequestHandler;
+import com.devicehive.shim.kafka.ResponseAddress;
 import com.lmax.disruptor.WorkHandler;
 import org.apache.kafka.clients.producer.Producer;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServerEventHandler implements MessageDispatcher, WorkHandler<ServerEvent> {
     private static final Logger logger = LoggerFactory.getLogger(ServerEventHandler.class);
 
     private RequestHandler requestHandler;
     private Producer<String, Response> responseProducer;
+    private final AtomicBoolean unflushed = new AtomicBoolean();
 
     public ServerEventHandler(RequestHandler requestHandler, Producer<String, Response> responseProducer) {
         this.requestHandler = requestHandler;
         this.responseProducer = responseProducer;
     }
 
+    /**
+     * Returns whether responses have been sent since the previous call.
+     */
+    public boolean resetUnflushed() {
+        return unflushed.getAndSet(false);
+    }
+
     @Override
     public void onEvent(ServerEvent event) throws Exception {
         final Request request = event.get();
@@ -90,6 +99,9 @@ public class ServerEventHandler implements MessageDispatcher, WorkHandler<Server
 
     @Override
     public void send(String replyTo, Response response) {
-        responseProducer.send(new ProducerRecord<>(replyTo, response.getCorrelationId(), response));
+        responseProducer.send(ResponseAddress.toRecord(replyTo, response.getCorrelationId(), response));
+        if (!unflushed.get()) {
+            unflushed.set(true);
+        }
     }
 }
@@ -0,0 +1,43 @@
+package com.devicehive.shim.kafka.server;
+
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.lmax.disruptor.RingBuffer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Workers which handle requests published to the ring buffer by request consumers.
+ */
+public interface ServerWorkerPool {
+
+    /**
+     * Starts workers on given executor, which must provide a thread per worker.
+     */
+    RingBuffer<ServerEvent> start(Executor executor);
+
+    /**
+     * Waits till all published requests are handled and stops workers.
+     */
+    void drainAndHalt();
+}
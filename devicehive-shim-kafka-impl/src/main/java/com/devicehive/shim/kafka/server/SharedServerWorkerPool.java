@@ -0,0 +1,50 @@
+package com.devicehive.shim.kafka.server;
+
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkerPool;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Workers of a {@link WorkerPool}, any worker takes any request, so requests are not handled in order.
+ */
+public class SharedServerWorkerPool implements ServerWorkerPool {
+
+    private final WorkerPool<ServerEvent> workerPool;
+
+    public SharedServerWorkerPool(WorkerPool<ServerEvent> workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    @Override
+    public RingBuffer<ServerEvent> start(Executor executor) {
+        return workerPool.start(executor);
+    }
+
+    @Override
+    public void drainAndHalt() {
+        workerPool.drainAndHalt();
+    }
+}
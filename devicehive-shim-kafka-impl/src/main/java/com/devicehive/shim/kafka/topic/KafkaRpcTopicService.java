@@ -27,32 +27,63 @@ import kafka.utils.ZKStringSerializer$;
 import kafka.utils.ZkUtils;
 import org.I0Itec.zkclient.ZkClient;
 import org.I0Itec.zkclient.ZkConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static scala.collection.JavaConversions.seqAsJavaList;
 
 @Component
 @Profile("!ws-kafka-proxy")
 public class KafkaRpcTopicService implements KafkaTopicService {
 
+    private static final Logger logger = LoggerFactory.getLogger(KafkaRpcTopicService.class);
+
     @Autowired
     private KafkaRpcConfig kafkaRpcConfig;
 
     public void createTopic(String topic) {
+        createTopic(topic, kafkaRpcConfig.getNumPartitions());
+    }
+
+    @Override
+    public void createTopic(String topic, int partitions) {
+        withZkUtils(zkUtils -> {
+            Properties topicConfig = kafkaRpcConfig.topicProps();
+            if (!AdminUtils.topicExists(zkUtils, topic)) {
+                AdminUtils.createTopic(zkUtils, topic, partitions,
+                        kafkaRpcConfig.getReplicationFactor(), topicConfig, RackAwareMode.Enforced$.MODULE$);
+            }
+        });
+    }
+
+    /**
+     * Marks topics for deletion, they are deleted only if the brokers run with delete.topic.enable.
+     */
+    @Override
+    public void deleteTopics(Predicate<String> filter) {
+        withZkUtils(zkUtils -> seqAsJavaList(zkUtils.getAllTopics()).stream()
+                .filter(filter)
+                .forEach(topic -> {
+                    logger.info("Deleting topic {}", topic);
+                    AdminUtils.deleteTopic(zkUtils, topic);
+                }));
+    }
+
+    private void withZkUtils(Consumer<ZkUtils> action) {
         ZkClient zkClient = new ZkClient(
                 kafkaRpcConfig.getZookeeperConnect(),
                 kafkaRpcConfig.getSessionTimeout(),
                 kafkaRpcConfig.getConnectionTimeout(),
                 ZKStringSerializer$.MODULE$);
         try {
-            ZkUtils zkUtils = new ZkUtils(zkClient, new ZkConnection(kafkaRpcConfig.getZookeeperConnect()), false);
-            Properties topicConfig = kafkaRpcConfig.topicProps();
-            if (!AdminUtils.topicExists(zkUtils, topic)) {
-                AdminUtils.createTopic(zkUtils, topic, kafkaRpcConfig.getNumPartitions(), 
-                        kafkaRpcConfig.getReplicationFactor(), topicConfig, RackAwareMode.Enforced$.MODULE$);
-            }
+            action.accept(new ZkUtils(zkClient, new ZkConnection(kafkaRpcConfig.getZookeeperConnect()), false));
         } finally {
             zkClient.close();
         }
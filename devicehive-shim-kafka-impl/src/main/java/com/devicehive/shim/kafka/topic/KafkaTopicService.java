@@ -20,6 +20,21 @@ package com.devicehive.shim.kafka.topic;
  * #L%
  */
 
+import java.util.function.Predicate;
+
 public interface KafkaTopicService {
     void createTopic(String topic);
+
+    /**
+     * Creates topic with given number of partitions, if it does not exist.
+     */
+    default void createTopic(String topic, int partitions) {
+        createTopic(topic);
+    }
+
+    /**
+     * Deletes topics accepted by given filter. Implementations which are not able to delete topics do nothing.
+     */
+    default void deleteTopics(Predicate<String> filter) {
+    }
 }
@@ -0,0 +1,207 @@
+package com.devicehive.shim.kafka.topic;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.shim.config.KafkaRpcConfig;
+import kafka.utils.ZKStringSerializer$;
+import org.I0Itec.zkclient.IZkStateListener;
+import org.I0Itec.zkclient.ZkClient;
+import org.I0Itec.zkclient.exception.ZkNodeExistsException;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of response topics and response topic partitions in use by running RPC clients.
+ * Entries are ephemeral ZooKeeper nodes, so they disappear together with the session of the client which
+ * registered them. ZooKeeper session is opened on first use and kept till shutdown, entries are re-created when
+ * the session expires and a new one is established.
+ * A topic whose entry is missing is not abandoned right away: the time it was first found missing is recorded
+ * in a persistent node, and the topic is abandoned only when it has stayed unregistered for a grace period.
+ */
+@Component
+@Profile("!ws-kafka-proxy")
+public class ResponseTopicRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseTopicRegistry.class);
+
+    private static final String TOPICS_PATH = "/devicehive/response-topics";
+    private static final String PARTITIONS_PATH = "/devicehive/response-partitions";
+    private static final String MISSING_TOPICS_PATH = "/devicehive/response-topics-missing";
+
+    @Autowired
+    private KafkaRpcConfig kafkaRpcConfig;
+
+    private ZkClient zkClient;
+
+    private final Set<String> registeredTopics = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> claimedPartitions = new ConcurrentHashMap<>();
+
+    /**
+     * Marks response topic as used by this client. Entry left by a previous run of the client is replaced,
+     * so it does not disappear when the old session expires.
+     */
+    public void registerTopic(String topic) {
+        final ZkClient zkClient = getZkClient();
+        final String path = TOPICS_PATH + "/" + topic;
+        zkClient.createPersistent(TOPICS_PATH, true);
+        zkClient.delete(path);
+        zkClient.createEphemeral(path);
+        zkClient.delete(MISSING_TOPICS_PATH + "/" + topic);
+        registeredTopics.add(topic);
+    }
+
+    /**
+     * Whether the topic has not been registered by any client for at least given grace period.
+     */
+    public boolean isTopicAbandoned(String topic, long gracePeriodMillis) {
+        final ZkClient zkClient = getZkClient();
+        final String missingPath = MISSING_TOPICS_PATH + "/" + topic;
+        if (zkClient.exists(TOPICS_PATH + "/" + topic)) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        final String missingSince = zkClient.readData(missingPath, true);
+        if (missingSince == null) {
+            zkClient.createPersistent(MISSING_TOPICS_PATH, true);
+            try {
+                zkClient.createPersistent(missingPath, String.valueOf(now));
+            } catch (ZkNodeExistsException e) {
+                logger.debug("Response topic {} is already known to be unregistered", topic);
+            }
+            return false;
+        }
+        if (now - Long.parseLong(missingSince) < gracePeriodMillis) {
+            return false;
+        }
+        zkClient.delete(missingPath);
+        return true;
+    }
+
+    /**
+     * Claims given number of partitions of the shared response topic, which are not claimed by other clients.
+     *
+     * @throws IllegalStateException if there are not enough free partitions
+     */
+    public List<Integer> claimPartitions(String topic, int partitions, String clientId, int count) {
+        final ZkClient zkClient = getZkClient();
+        final String path = PARTITIONS_PATH + "/" + topic;
+        zkClient.createPersistent(path, true);
+
+        final List<Integer> claimed = new ArrayList<>(count);
+        final int start = Math.floorMod(clientId.hashCode(), partitions);
+        for (int i = 0; i < partitions && claimed.size() < count; i++) {
+            final int partition = (start + i) % partitions;
+            try {
+                zkClient.createEphemeral(path + "/" + partition, clientId);
+                claimedPartitions.put(path + "/" + partition, clientId);
+                claimed.add(partition);
+            } catch (ZkNodeExistsException e) {
+                logger.debug("Partition {} of response topic {} is claimed by another client", partition, topic);
+            }
+        }
+        if (claimed.size() < count) {
+            claimed.forEach(partition -> {
+                zkClient.delete(path + "/" + partition);
+                claimedPartitions.remove(path + "/" + partition);
+            });
+            throw new IllegalStateException(String.format("Only %d of %d partitions of response topic %s are free",
+                    claimed.size(), count, topic));
+        }
+        logger.info("Claimed partitions {} of response topic {}", claimed, topic);
+        return claimed;
+    }
+
+    private synchronized ZkClient getZkClient() {
+        if (zkClient == null) {
+            zkClient = new ZkClient(
+                    kafkaRpcConfig.getZookeeperConnect(),
+                    kafkaRpcConfig.getSessionTimeout(),
+                    kafkaRpcConfig.getConnectionTimeout(),
+                    ZKStringSerializer$.MODULE$);
+            zkClient.subscribeStateChanges(new SessionListener());
+        }
+        return zkClient;
+    }
+
+    /**
+     * Re-creates entries of this client, which were removed together with its expired session.
+     */
+    private synchronized void restoreEntries() {
+        if (zkClient == null) {
+            return;
+        }
+        for (String topic : registeredTopics) {
+            zkClient.createPersistent(TOPICS_PATH, true);
+            try {
+                zkClient.createEphemeral(TOPICS_PATH + "/" + topic);
+            } catch (ZkNodeExistsException e) {
+                logger.debug("Response topic {} is registered already", topic);
+            }
+        }
+        claimedPartitions.forEach((path, clientId) -> {
+            try {
+                zkClient.createEphemeral(path, clientId);
+            } catch (ZkNodeExistsException e) {
+                final String owner = zkClient.readData(path, true);
+                if (!clientId.equals(owner)) {
+                    logger.error("Response partition {} was claimed by client {} while session was expired", path, owner);
+                }
+            }
+        });
+        logger.info("Restored response topic registry entries after ZooKeeper session expiry");
+    }
+
+    private class SessionListener implements IZkStateListener {
+
+        @Override
+        public void handleStateChanged(KeeperState state) {
+            logger.info("ZooKeeper session state of response topic registry changed to {}", state);
+        }
+
+        @Override
+        public void handleNewSession() {
+            restoreEntries();
+        }
+
+        @Override
+        public void handleSessionEstablishmentError(Throwable error) {
+            logger.error("Unable to establish ZooKeeper session of response topic registry", error);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (zkClient != null) {
+            zkClient.close();
+            zkClient = null;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.devicehive.shim.kafka.serializer;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.json.GsonFactory;
+import com.devicehive.model.DeviceNotification;
+import com.devicehive.model.JsonStringWrapper;
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.model.rpc.NotificationInsertRequest;
+import com.devicehive.shim.api.Body;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.RequestType;
+import com.devicehive.shim.api.Response;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryCodecTest {
+
+    private final Gson gson = GsonFactory.createGson();
+    private final RequestSerializer requestSerializer = new RequestSerializer(gson, WireFormat.BINARY);
+    private final ResponseSerializer responseSerializer = new ResponseSerializer(gson, WireFormat.BINARY);
+
+    @Test
+    public void shouldRoundTripRequest() {
+        final Request request = Request.newBuilder()
+                .withBody(new NotificationInsertRequest(notification("temperature", "{\"value\":36.6}")))
+                .withCorrelationId("correlation")
+                .withPartitionKey("device")
+                .withSingleReply(false)
+                .build();
+        request.setReplyTo("response_topic_1");
+
+        final byte[] bytes = requestSerializer.serialize("request_topic", request);
+        assertTrue(BinaryCodec.isBinary(bytes));
+
+        final Request decoded = requestSerializer.deserialize("request_topic", bytes);
+        assertEquals(RequestType.clientRequest, decoded.getType());
+        assertEquals("correlation", decoded.getCorrelationId());
+        assertEquals("device", decoded.getPartitionKey());
+        assertEquals("response_topic_1", decoded.getReplyTo());
+        assertFalse(decoded.isSingleReplyExpected());
+
+        final DeviceNotification notification = ((NotificationInsertRequest) decoded.getBody()).getDeviceNotification();
+        assertEquals("temperature", notification.getNotification());
+        assertEquals("device", notification.getDeviceId());
+        assertEquals(gson.toJson(request.getBody()), gson.toJson(decoded.getBody()));
+    }
+
+    @Test
+    public void shouldRoundTripNullFieldsAndBody() {
+        final Request request = Request.newBuilder().withCorrelationId(null).build();
+        request.setType(RequestType.ping);
+
+        final Request decoded = requestSerializer.deserialize("request_topic", requestSerializer.serialize("request_topic", request));
+        assertEquals(RequestType.ping, decoded.getType());
+        assertNull(decoded.getCorrelationId());
+        assertNull(decoded.getPartitionKey());
+        assertNull(decoded.getReplyTo());
+        assertNull(decoded.getBody());
+        assertTrue(decoded.isSingleReplyExpected());
+    }
+
+    @Test
+    public void shouldRoundTripNonAsciiAndLongStrings() {
+        final char[] chars = new char[20000];
+        Arrays.fill(chars, 'x');
+        final String longName = new String(chars);
+        final Request request = Request.newBuilder()
+                .withBody(new NotificationInsertRequest(notification("температура €", "{\"name\":\"" + longName + "\"}")))
+                .withCorrelationId("ключ")
+                .withPartitionKey(longName)
+                .build();
+
+        final Request decoded = requestSerializer.deserialize("request_topic", requestSerializer.serialize("request_topic", request));
+        assertEquals("ключ", decoded.getCorrelationId());
+        assertEquals(longName, decoded.getPartitionKey());
+        assertEquals("температура €",
+                ((NotificationInsertRequest) decoded.getBody()).getDeviceNotification().getNotification());
+    }
+
+    @Test
+    public void shouldRoundTripBatchedResponse() {
+        final Response response = Response.newBuilder()
+                .withBody(new NotificationInsertRequest(notification("temperature", null)))
+                .withCorrelationIds(Arrays.asList("first", "second"))
+                .withLast(false)
+                .buildSuccess();
+
+        final Response decoded = responseSerializer.deserialize("response_topic", responseSerializer.serialize("response_topic", response));
+        assertNull(decoded.getCorrelationId());
+        assertEquals(Arrays.asList("first", "second"), decoded.getCorrelationIds());
+        assertFalse(decoded.isLast());
+        assertFalse(decoded.isFailed());
+        assertEquals("temperature",
+                ((NotificationInsertRequest) decoded.getBody()).getDeviceNotification().getNotification());
+    }
+
+    @Test
+    public void shouldRoundTripFailedResponse() {
+        final Response response = Response.newBuilder()
+                .withBody(new ErrorResponse("not found"))
+                .withCorrelationId("correlation")
+                .withCorrelationIds(Collections.emptyList())
+                .withLast(true)
+                .buildFailed(404);
+
+        final Response decoded = responseSerializer.deserialize("response_topic", responseSerializer.serialize("response_topic", response));
+        assertEquals("correlation", decoded.getCorrelationId());
+        assertEquals(Collections.emptyList(), decoded.getCorrelationIds());
+        assertTrue(decoded.isLast());
+        assertTrue(decoded.isFailed());
+        assertEquals(404, decoded.getErrorCode());
+        assertEquals("not found", ((ErrorResponse) decoded.getBody()).getMessage());
+    }
+
+    @Test
+    public void shouldDecodeJsonWhenBinaryIsConfigured() {
+        final Response response = Response.newBuilder()
+                .withBody(new ErrorResponse("error"))
+                .withCorrelationId("correlation")
+                .buildFailed(500);
+
+        final byte[] json = new ResponseSerializer(gson).serialize("response_topic", response);
+        assertFalse(BinaryCodec.isBinary(json));
+
+        final Response decoded = responseSerializer.deserialize("response_topic", json);
+        assertEquals("correlation", decoded.getCorrelationId());
+        assertEquals(500, decoded.getErrorCode());
+        assertEquals("error", ((ErrorResponse) decoded.getBody()).getMessage());
+    }
+
+    @Test
+    public void shouldReuseBufferAfterLargeMessage() {
+        final char[] chars = new char[2 * 1024 * 1024];
+        Arrays.fill(chars, 'y');
+        final Response large = Response.newBuilder()
+                .withBody(new ErrorResponse(new String(chars)))
+                .buildSuccess();
+        final Body decodedLarge = responseSerializer.deserialize("response_topic",
+                responseSerializer.serialize("response_topic", large)).getBody();
+        assertEquals(chars.length, ((ErrorResponse) decodedLarge).getMessage().length());
+
+        final Response small = Response.newBuilder()
+                .withBody(new ErrorResponse("small"))
+                .withCorrelationId("correlation")
+                .buildSuccess();
+        final byte[] bytes = responseSerializer.serialize("response_topic", small);
+        assertTrue(bytes.length < 64);
+        assertEquals("small", ((ErrorResponse) responseSerializer.deserialize("response_topic", bytes).getBody()).getMessage());
+    }
+
+    private DeviceNotification notification(String name, String parameters) {
+        final DeviceNotification notification = new DeviceNotification();
+        notification.setId(1L);
+        notification.setNotification(name);
+        notification.setDeviceId("device");
+        notification.setNetworkId(2L);
+        notification.setTimestamp(new Date(1500000000000L));
+        if (parameters != null) {
+            notification.setParameters(new JsonStringWrapper(parameters));
+        }
+        return notification;
+    }
+}
@@ -0,0 +1,118 @@
+package com.devicehive.shim.kafka.server;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.RequestHandler;
+import com.lmax.disruptor.RingBuffer;
+import org.apache.kafka.clients.producer.Producer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class PartitionedServerWorkerPoolTest {
+
+    private static final int WORKERS = 3;
+    private static final int REQUESTS = 300;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldHandleRequestsOfKeyOnOneWorkerAndFlushAfterBatches() throws InterruptedException {
+        final Producer<String, Response> producer = mock(Producer.class);
+        final Map<String, String> threadsByKey = new ConcurrentHashMap<>();
+        final CountDownLatch handled = new CountDownLatch(REQUESTS);
+        final RequestHandler requestHandler = request -> {
+            final String thread = Thread.currentThread().getName();
+            final String previous = threadsByKey.putIfAbsent(request.getPartitionKey(), thread);
+            assertTrue(previous == null || previous.equals(thread));
+            handled.countDown();
+            return Response.newBuilder().buildSuccess();
+        };
+        final ServerEventHandler[] handlers = new ServerEventHandler[WORKERS];
+        for (int i = 0; i < WORKERS; i++) {
+            handlers[i] = new ServerEventHandler(requestHandler, producer);
+        }
+
+        final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, 64);
+        final PartitionedServerWorkerPool pool = new PartitionedServerWorkerPool(ringBuffer, producer, handlers);
+        assertEquals(WORKERS + 1, pool.getWorkerSequences().length);
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        pool.start(executor);
+        for (int i = 0; i < REQUESTS; i++) {
+            final Request request = Request.newBuilder().withPartitionKey("device" + i % 10).build();
+            request.setReplyTo("response_topic");
+            ringBuffer.publishEvent((event, sequence) -> event.set(request));
+        }
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        pool.drainAndHalt();
+        executor.shutdown();
+
+        assertEquals(10, threadsByKey.size());
+        verify(producer, atMost(REQUESTS)).send(any());
+        verify(producer, atLeastOnce()).flush();
+        for (ServerEventHandler handler : handlers) {
+            assertFalse(handler.resetUnflushed());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotFlushWithoutProducer() throws InterruptedException {
+        final Producer<String, Response> producer = mock(Producer.class);
+        final CountDownLatch handled = new CountDownLatch(1);
+        final ServerEventHandler handler = new ServerEventHandler(request -> {
+            handled.countDown();
+            return Response.newBuilder().buildSuccess();
+        }, producer);
+        final RingBuffer<ServerEvent> ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, 8);
+        final PartitionedServerWorkerPool pool = new PartitionedServerWorkerPool(ringBuffer, handler);
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        pool.start(executor);
+        final Request request = Request.newBuilder().build();
+        request.setReplyTo("response_topic");
+        ringBuffer.publishEvent((event, sequence) -> event.set(request));
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        pool.drainAndHalt();
+        executor.shutdown();
+
+        verify(producer, never()).flush();
+        assertTrue(handler.resetUnflushed());
+    }
+}
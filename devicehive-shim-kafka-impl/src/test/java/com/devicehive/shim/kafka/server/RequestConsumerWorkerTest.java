@@ -0,0 +1,201 @@
+package com.devicehive.shim.kafka.server;
+
+/*
+ * #%L
+ * DeviceHive Shim Kafka Implementation
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.Request;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RequestConsumerWorkerTest {
+
+    private static final String TOPIC = "request_topic";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    private final Sequence handled = new Sequence();
+
+    private RingBuffer<ServerEvent> ringBuffer;
+    private KafkaConsumer<String, Request> consumer;
+    private RequestConsumerWorker worker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ringBuffer = RingBuffer.createMultiProducer(ServerEvent::new, 8);
+        ringBuffer.addGatingSequences(handled);
+        consumer = mock(KafkaConsumer.class);
+        worker = new RequestConsumerWorker(TOPIC, consumer, ringBuffer, new CountDownLatch(1), 0,
+                Collections.emptyList());
+    }
+
+    @Test
+    public void shouldCommitOffsetAfterHandledPrefix() {
+        assertTrue(worker.process(record(0, 10)));
+        assertTrue(worker.process(record(0, 11)));
+        assertTrue(worker.process(record(0, 12)));
+
+        handled.set(1);
+        worker.afterPoll(consumer);
+        assertEquals(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(12)), captureAsyncCommit());
+
+        handled.set(2);
+        worker.afterPoll(consumer);
+        assertEquals(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(13)), captureAsyncCommit());
+    }
+
+    @Test
+    public void shouldNotCommitUntilRecordsAreHandled() {
+        worker.process(record(0, 10));
+        worker.afterPoll(consumer);
+
+        verify(consumer, never()).commitAsync(anyMap(), any());
+        verify(consumer, never()).commitSync(anyMap());
+    }
+
+    @Test
+    public void shouldCommitPartitionsSeparately() {
+        worker.process(record(0, 10));
+        worker.process(record(1, 20));
+        worker.process(record(0, 11));
+
+        handled.set(1);
+        worker.afterPoll(consumer);
+
+        final Map<TopicPartition, OffsetAndMetadata> committed = captureAsyncCommit();
+        assertEquals(2, committed.size());
+        assertEquals(new OffsetAndMetadata(11), committed.get(PARTITION_0));
+        assertEquals(new OffsetAndMetadata(21), committed.get(PARTITION_1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldCommitSynchronouslyAndForgetRevokedPartitions() {
+        worker.process(record(0, 10));
+        worker.process(record(1, 20));
+        worker.process(record(0, 11));
+        handled.set(0);
+
+        worker.onPartitionsRevoked(consumer, Collections.singletonList(PARTITION_0));
+        final ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumer).commitSync(captor.capture());
+        assertEquals(Collections.singletonMap(PARTITION_0, new OffsetAndMetadata(11)), captor.getValue());
+
+        handled.set(2);
+        worker.afterPoll(consumer);
+        assertEquals(Collections.singletonMap(PARTITION_1, new OffsetAndMetadata(21)), captureAsyncCommit());
+    }
+
+    @Test
+    public void shouldRejectRecordWhenRingIsFull() {
+        for (int i = 0; i < ringBuffer.getBufferSize(); i++) {
+            assertTrue(worker.process(record(0, i)));
+        }
+        assertFalse(worker.process(record(0, ringBuffer.getBufferSize())));
+
+        handled.set(0);
+        assertTrue(worker.process(record(0, ringBuffer.getBufferSize())));
+    }
+
+    @Test
+    public void shouldReportOverloadAndResumeByRemainingCapacity() {
+        for (int i = 0; i < ringBuffer.getBufferSize(); i++) {
+            worker.process(record(0, i));
+        }
+        assertTrue(worker.isOverloaded());
+        assertFalse(worker.canResume());
+
+        handled.set(2);
+        assertFalse(worker.isOverloaded());
+        assertFalse(worker.canResume());
+
+        handled.set(3);
+        assertTrue(worker.canResume());
+    }
+
+    @Test
+    public void shouldSeekAndPauseOnFullRingAndResumeWhenDrained() {
+        final int size = ringBuffer.getBufferSize();
+        final List<ConsumerRecord<String, Request>> records = new ArrayList<>();
+        for (int i = 0; i < size + 2; i++) {
+            records.add(record(0, 100 + i));
+        }
+        when(consumer.poll(anyLong()))
+                .thenReturn(new ConsumerRecords<>(Collections.singletonMap(PARTITION_0, records)))
+                .thenAnswer(invocation -> {
+                    assertTrue(worker.isPaused());
+                    handled.set(size - 1);
+                    return ConsumerRecords.empty();
+                })
+                .thenAnswer(invocation -> {
+                    assertFalse(worker.isPaused());
+                    throw new WakeupException();
+                });
+
+        worker.run();
+
+        verify(consumer).seek(PARTITION_0, 100 + size);
+        verify(consumer).pause(any());
+        verify(consumer).resume(any());
+        verify(consumer).poll(10L);
+        verify(consumer).close();
+        assertTrue(worker.getPausedTime() >= 0);
+        assertEquals(size + 2, worker.getPolledRecordCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<TopicPartition, OffsetAndMetadata> captureAsyncCommit() {
+        final ArgumentCaptor<Map<TopicPartition, OffsetAndMetadata>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(consumer, atLeastOnce()).commitAsync(captor.capture(), any());
+        return captor.getValue();
+    }
+
+    private static ConsumerRecord<String, Request> record(int partition, long offset) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, null, Request.newBuilder().build());
+    }
+}
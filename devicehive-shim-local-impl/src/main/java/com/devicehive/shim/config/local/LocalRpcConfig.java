@@ -0,0 +1,121 @@
+package com.devicehive.shim.config.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.api.RequestResponseMatcher;
+import com.devicehive.model.ServerEvent;
+import com.devicehive.model.eventbus.FilterRegistry;
+import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.shim.api.server.MessageDispatcher;
+import com.devicehive.shim.api.server.RequestHandler;
+import com.devicehive.shim.api.server.RpcServer;
+import com.devicehive.shim.local.LocalFilterRegistry;
+import com.devicehive.shim.local.LocalMessageDispatcher;
+import com.devicehive.shim.local.LocalRpcClient;
+import com.devicehive.shim.local.LocalRpcServer;
+import com.devicehive.shim.local.LocalServerEventHandler;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkerPool;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.util.stream.IntStream;
+
+/**
+ * RPC client and server of a single node deployment, where frontend and backend run in one JVM.
+ * Requests and responses are passed by reference, so neither broker nor serialization is involved.
+ * The server is built only if the context has the {@value #REQUEST_DISPATCHER} bean of the backend. Without it the
+ * client is never ready and rejects requests, see devicehive-single-node for an assembly of backend and frontend.
+ */
+@Configuration
+@Profile("rpc-local")
+public class LocalRpcConfig {
+
+    public static final String REQUEST_DISPATCHER = "request-dispatcher";
+
+    @Value("${rpc.server.worker.threads:1}")
+    private int workerThreads;
+
+    @Value("${lmax.buffer-size:1024}")
+    private int bufferSize;
+
+    @Value("${rpc.client.request.timeout.ms:30000}")
+    private long requestTimeout;
+
+    @Value("${rpc.client.subscription.timeout.ms:600000}")
+    private long subscriptionTimeout;
+
+    @Bean
+    public RequestResponseMatcher requestResponseMatcher() {
+        return new RequestResponseMatcher(requestTimeout, subscriptionTimeout);
+    }
+
+    @Bean
+    public MessageDispatcher messageDispatcher(RequestResponseMatcher requestResponseMatcher) {
+        return new LocalMessageDispatcher(requestResponseMatcher);
+    }
+
+    @Bean
+    public RingBuffer<ServerEvent> localRingBuffer() {
+        return RingBuffer.createMultiProducer(ServerEvent::new, bufferSize, new BlockingWaitStrategy());
+    }
+
+    @Bean
+    @ConditionalOnBean(name = REQUEST_DISPATCHER)
+    public WorkerPool<ServerEvent> localWorkerPool(RingBuffer<ServerEvent> localRingBuffer,
+                                                   @Qualifier(REQUEST_DISPATCHER) RequestHandler requestHandler,
+                                                   MessageDispatcher messageDispatcher) {
+        final LocalServerEventHandler[] workHandlers = new LocalServerEventHandler[workerThreads];
+        IntStream.range(0, workerThreads).forEach(
+                nbr -> workHandlers[nbr] = new LocalServerEventHandler(requestHandler, messageDispatcher)
+        );
+        WorkerPool<ServerEvent> workerPool = new WorkerPool<>(localRingBuffer, localRingBuffer.newBarrier(),
+                new FatalExceptionHandler(), workHandlers);
+        localRingBuffer.addGatingSequences(workerPool.getWorkerSequences());
+        return workerPool;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnBean(name = REQUEST_DISPATCHER)
+    public RpcServer rpcServer(WorkerPool<ServerEvent> localWorkerPool, MessageDispatcher messageDispatcher) {
+        RpcServer server = new LocalRpcServer(localWorkerPool, messageDispatcher, workerThreads);
+        server.start();
+        return server;
+    }
+
+    @Bean
+    public RpcClient rpcClient(RingBuffer<ServerEvent> localRingBuffer, RequestResponseMatcher requestResponseMatcher,
+                               ObjectProvider<RpcServer> rpcServer) {
+        return new LocalRpcClient(localRingBuffer, requestResponseMatcher, rpcServer.getIfAvailable() != null);
+    }
+
+    @Bean
+    public FilterRegistry filterRegistry() {
+        return new LocalFilterRegistry();
+    }
+}
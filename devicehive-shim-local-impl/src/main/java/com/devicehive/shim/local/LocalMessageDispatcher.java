@@ -0,0 +1,42 @@
+package com.devicehive.shim.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.api.RequestResponseMatcher;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.MessageDispatcher;
+
+/**
+ * Hands responses over to the client side matcher of the same JVM, reply address is not needed.
+ */
+public class LocalMessageDispatcher implements MessageDispatcher {
+
+    private final RequestResponseMatcher requestResponseMatcher;
+
+    public LocalMessageDispatcher(RequestResponseMatcher requestResponseMatcher) {
+        this.requestResponseMatcher = requestResponseMatcher;
+    }
+
+    @Override
+    public void send(String to, Response response) {
+        requestResponseMatcher.offerResponse(response);
+    }
+}
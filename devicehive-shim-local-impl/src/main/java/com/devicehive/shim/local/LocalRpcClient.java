@@ -0,0 +1,87 @@
+package com.devicehive.shim.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.api.RequestResponseMatcher;
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.client.RpcClient;
+import com.lmax.disruptor.RingBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Client which publishes requests by reference to the ring buffer of {@link LocalRpcServer} of the same JVM,
+ * without serialization. Responses are matched to callbacks the same way as responses received from a broker.
+ * If no server runs in the JVM the client is never ready and rejects requests, as nothing would consume them.
+ */
+public class LocalRpcClient implements RpcClient {
+    private static final Logger logger = LoggerFactory.getLogger(LocalRpcClient.class);
+
+    static final String LOCAL_REPLY_TO = "local";
+
+    private final RingBuffer<ServerEvent> ringBuffer;
+    private final RequestResponseMatcher requestResponseMatcher;
+    private final boolean serverRunning;
+
+    public LocalRpcClient(RingBuffer<ServerEvent> ringBuffer, RequestResponseMatcher requestResponseMatcher,
+                          boolean serverRunning) {
+        this.ringBuffer = ringBuffer;
+        this.requestResponseMatcher = requestResponseMatcher;
+        this.serverRunning = serverRunning;
+        if (!serverRunning) {
+            logger.error("No in-JVM RPC server, rpc-local profile needs backend and frontend in one application");
+        }
+    }
+
+    @Override
+    public void call(Request request, Consumer<Response> callback) {
+        checkServer();
+        requestResponseMatcher.addRequestCallback(request, callback);
+        logger.debug("Request callback added for request: {}, correlationId: {}", request.getBody(), request.getCorrelationId());
+
+        push(request);
+    }
+
+    @Override
+    public void push(Request request) {
+        checkServer();
+        if (request.getBody() == null) {
+            throw new NullPointerException("Request body must not be null.");
+        }
+        request.setReplyTo(LOCAL_REPLY_TO);
+        ringBuffer.publishEvent((event, sequence, r) -> event.set(r), request);
+    }
+
+    @Override
+    public boolean isReady() {
+        return serverRunning;
+    }
+
+    private void checkServer() {
+        if (!serverRunning) {
+            throw new IllegalStateException("No in-JVM RPC server to handle requests");
+        }
+    }
+}
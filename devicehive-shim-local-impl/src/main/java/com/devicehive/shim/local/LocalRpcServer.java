@@ -0,0 +1,69 @@
+package com.devicehive.shim.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.server.MessageDispatcher;
+import com.devicehive.shim.api.server.RpcServer;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WorkerPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server which takes requests from the ring buffer the client of the same JVM publishes them to.
+ */
+public class LocalRpcServer implements RpcServer {
+    private static final Logger logger = LoggerFactory.getLogger(LocalRpcServer.class);
+
+    private final WorkerPool<ServerEvent> workerPool;
+    private final MessageDispatcher dispatcher;
+    private final int workerThreads;
+
+    private ExecutorService executor;
+
+    public LocalRpcServer(WorkerPool<ServerEvent> workerPool, MessageDispatcher dispatcher, int workerThreads) {
+        this.workerPool = workerPool;
+        this.dispatcher = dispatcher;
+        this.workerThreads = workerThreads;
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newFixedThreadPool(workerThreads);
+        RingBuffer<ServerEvent> ringBuffer = workerPool.start(executor);
+        logger.info("In-JVM RPC server started. Buffer size: {}", ringBuffer.getBufferSize());
+    }
+
+    @Override
+    public void shutdown() {
+        workerPool.drainAndHalt();
+        executor.shutdown();
+    }
+
+    @Override
+    public MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+}
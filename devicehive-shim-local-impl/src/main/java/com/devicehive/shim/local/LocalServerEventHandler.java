@@ -0,0 +1,89 @@
+package com.devicehive.shim.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.ServerEvent;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.server.MessageDispatcher;
+import com.devicehive.shim.api.server.RequestHandler;
+import com.lmax.disruptor.WorkHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+/**
+ * Handles requests taken from the ring buffer and hands responses over to the dispatcher.
+ */
+public class LocalServerEventHandler implements WorkHandler<ServerEvent> {
+    private static final Logger logger = LoggerFactory.getLogger(LocalServerEventHandler.class);
+
+    private final RequestHandler requestHandler;
+    private final MessageDispatcher dispatcher;
+
+    public LocalServerEventHandler(RequestHandler requestHandler, MessageDispatcher dispatcher) {
+        this.requestHandler = requestHandler;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void onEvent(ServerEvent event) throws Exception {
+        final Request request = event.get();
+        // do not keep reference to the request in the ring buffer after it is handled
+        event.set(null);
+
+        Response response;
+        switch (request.getType()) {
+            case clientRequest:
+                logger.debug("Client request received {}", request);
+                response = handleClientRequest(request);
+                break;
+            case ping:
+                response = Response.newBuilder().buildSuccess();
+                break;
+            default:
+                logger.warn("Unknown type of request received {}, correlationId = {}",
+                        request.getType(), request.getCorrelationId());
+                response = Response.newBuilder()
+                        .buildFailed(404);
+        }
+
+        response.setCorrelationId(request.getCorrelationId());
+        dispatcher.send(request.getReplyTo(), response);
+    }
+
+    private Response handleClientRequest(Request request) {
+        Response response;
+        try {
+            response = Optional.ofNullable(requestHandler.handle(request))
+                    .orElseThrow(() -> new NullPointerException("Response must not be null"));
+        } catch (Exception e) {
+            logger.error("Unexpected exception occurred during request handling (action='{}', handler='{}')",
+                    request.getBody().getAction().name(), requestHandler.getClass().getCanonicalName(), e);
+
+            response = Response.newBuilder()
+                    .withLast(request.isSingleReplyExpected())
+                    .buildFailed(500);
+        }
+        return response;
+    }
+}
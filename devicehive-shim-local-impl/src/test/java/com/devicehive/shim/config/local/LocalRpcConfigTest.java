@@ -0,0 +1,140 @@
+package com.devicehive.shim.config.local;
+
+/*
+ * #%L
+ * DeviceHive Shim In-JVM Implementation
+ * %%
+ * Copyright (C) 2016 - 2017 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.devicehive.model.rpc.ErrorResponse;
+import com.devicehive.shim.api.Request;
+import com.devicehive.shim.api.Response;
+import com.devicehive.shim.api.client.RpcClient;
+import com.devicehive.shim.api.server.RequestHandler;
+import com.devicehive.shim.api.server.RpcServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalRpcConfigTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    @AfterEach
+    public void tearDown() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void shouldRoundTripCallThroughLocalServer() throws Exception {
+        context = start(EchoDispatcher.class, LocalRpcConfig.class);
+        RpcClient client = context.getBean(RpcClient.class);
+        Request request = Request.newBuilder()
+                .withBody(new ErrorResponse("ping"))
+                .build();
+        CompletableFuture<Response> future = new CompletableFuture<>();
+
+        client.call(request, future::complete);
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(client.isReady());
+        assertFalse(response.isFailed());
+        assertEquals(request.getCorrelationId(), response.getCorrelationId());
+        assertEquals("echo ping", response.getBody().cast(ErrorResponse.class).getMessage());
+        assertSame(request, context.getBean(EchoDispatcher.class).handled);
+    }
+
+    @Test
+    public void shouldFailCallWhenDispatcherFails() throws Exception {
+        context = start(FailingDispatcher.class, LocalRpcConfig.class);
+        CompletableFuture<Response> future = new CompletableFuture<>();
+
+        context.getBean(RpcClient.class).call(Request.newBuilder()
+                .withBody(new ErrorResponse("ping"))
+                .build(), future::complete);
+
+        Response response = future.get(5, TimeUnit.SECONDS);
+        assertTrue(response.isFailed());
+        assertEquals(500, response.getErrorCode());
+    }
+
+    @Test
+    public void shouldNotBuildServerWithoutDispatcher() {
+        context = start(LocalRpcConfig.class);
+        RpcClient client = context.getBean(RpcClient.class);
+
+        assertTrue(context.getBeansOfType(RpcServer.class).isEmpty());
+        assertFalse(client.isReady());
+        assertThrows(IllegalStateException.class, () -> client.call(Request.newBuilder()
+                .withBody(new ErrorResponse("ping"))
+                .build(), response -> { }));
+    }
+
+    @Test
+    public void shouldNotBuildAnythingWithoutProfile() {
+        context = new AnnotationConfigApplicationContext(EchoDispatcher.class, LocalRpcConfig.class);
+
+        assertTrue(context.getBeansOfType(RpcClient.class).isEmpty());
+        assertTrue(context.getBeansOfType(RpcServer.class).isEmpty());
+        assertNotNull(context.getBean(EchoDispatcher.class));
+    }
+
+    private static AnnotationConfigApplicationContext start(Class<?>... classes) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("rpc-local");
+        context.register(classes);
+        context.refresh();
+        return context;
+    }
+
+    @Component(LocalRpcConfig.REQUEST_DISPATCHER)
+    public static class EchoDispatcher implements RequestHandler {
+
+        private volatile Request handled;
+
+        @Override
+        public Response handle(Request request) {
+            handled = request;
+            String message = request.getBody().cast(ErrorResponse.class).getMessage();
+            return Response.newBuilder()
+                    .withBody(new ErrorResponse("echo " + message))
+                    .buildSuccess();
+        }
+    }
+
+    @Component(LocalRpcConfig.REQUEST_DISPATCHER)
+    public static class FailingDispatcher implements RequestHandler {
+
+        @Override
+        public Response handle(Request request) {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.devicehive.application;
+
+/*
+ * #%L
+ * DeviceHive Single Node
+ * %%
+ * Copyright (C) 2016 DataArt
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs backend and frontend in one application context, they talk through the in-JVM RPC shim of rpc-local profile.
+ */
+public class DeviceHiveSingleNodeApplication {
+
+    public static void main(String... args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder()
+                .sources(DeviceHiveBackendApplication.class, DeviceHiveFrontendApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run(args);
+
+        context.registerShutdownHook();
+    }
+}